@@ -0,0 +1,119 @@
+package sims.controller;
+
+import sims.model.Course;
+import sims.model.Grade;
+import sims.model.Student;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Throw-away embedded Derby database filled with generated data for the benchmarks.
+ * The database lives in its own temporary derby.system.home, so the
+ * application's simsDB is never touched. JMH runs every trial in a fresh
+ * JVM, so each trial gets its own database.
+ *
+ * Logging is limited to warnings so per-row messages do not swamp the
+ * measurements.
+ */
+final class BenchDatabase {
+
+    static final String[] MAJORS = {"CS", "SE", "EE", "Math", "Physics", "Business"};
+
+    private final Path home;
+    final int students;
+    final int courses;
+    final int gradesPerStudent;
+
+    /**
+     * Create the database and load it with generated rows
+     * @param students number of students
+     * @param courses number of courses
+     * @param gradesPerStudent courses each student is graded in
+     */
+    BenchDatabase(int students, int courses, int gradesPerStudent) throws IOException {
+        this.students = students;
+        this.courses = courses;
+        this.gradesPerStudent = Math.min(gradesPerStudent, courses);
+        this.home = Files.createTempDirectory("sims-bench");
+        System.setProperty("derby.system.home", home.toString());
+        Log.setLevel(Log.Level.WARN);
+        populate();
+    }
+
+    private void populate() {
+        StudentManager studentManager = new StudentManager();
+        CourseManager courseManager = new CourseManager();
+        GradeManager gradeManager = new GradeManager();
+
+        List<Course> courseRows = new ArrayList<>(courses);
+        for (int i = 0; i < courses; i++) {
+            courseRows.add(new Course(courseID(i), "Course " + i, 1 + i % 4));
+        }
+        check(courseManager.addAll(courseRows), courses);
+
+        List<Student> studentRows = new ArrayList<>();
+        List<Grade> gradeRows = new ArrayList<>();
+        for (int i = 0; i < students; i++) {
+            studentRows.add(student(i));
+            for (int k = 0; k < gradesPerStudent; k++) {
+                gradeRows.add(new Grade(stuID(i), courseID(courseOf(i, k)), 40 + (i * 31 + k * 17) % 61));
+            }
+            if (studentRows.size() == 10_000) {
+                check(studentManager.addAll(studentRows), studentRows.size());
+                check(gradeManager.addAll(gradeRows), gradeRows.size());
+                studentRows.clear();
+                gradeRows.clear();
+            }
+        }
+        check(studentManager.addAll(studentRows), studentRows.size());
+        check(gradeManager.addAll(gradeRows), gradeRows.size());
+    }
+
+    private static void check(BatchResult result, int expected) {
+        if (result.getSucceeded() != expected) {
+            throw new IllegalStateException("Loading benchmark data failed: " + result.getFailures());
+        }
+    }
+
+    static String stuID(int i) {
+        return String.format("S%07d", i);
+    }
+
+    static String courseID(int i) {
+        return String.format("C%04d", i);
+    }
+
+    static Student student(int i) {
+        return new Student(stuID(i), "Student " + i, i % 2 == 0 ? "Male" : "Female",
+            MAJORS[i % MAJORS.length], String.valueOf(2020 + i % 5));
+    }
+
+    /**
+     * Spread each student's grades over different courses
+     */
+    int courseOf(int student, int k) {
+        return (student * 7 + k * 13) % courses;
+    }
+
+    /**
+     * Shut Derby down and delete the database
+     */
+    void close() throws IOException {
+        DBHelper.closeConnection();
+        try (Stream<Path> files = Files.walk(home)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> {
+                try {
+                    Files.delete(p);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+}
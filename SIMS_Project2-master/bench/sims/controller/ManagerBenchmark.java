@@ -0,0 +1,96 @@
+package sims.controller;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import sims.model.Grade;
+import sims.model.Student;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Single-row Manager operations: add, search, update and delete.
+ * Reports throughput and the latency distribution (SampleTime) for every
+ * data size. cacheSize 0 disables the student/course caches so search()
+ * measures the database round trip.
+ *
+ * Run with: ant bench -Dbench.args=ManagerBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ManagerBenchmark {
+
+    @Param({"1000", "10000", "50000"})
+    public int students;
+
+    @Param({"10000", "0"})
+    public int cacheSize;
+
+    private static final int COURSES = 200;
+    private static final int GRADES_PER_STUDENT = 5;
+
+    private BenchDatabase db;
+    private StudentManager studentManager;
+    private GradeManager gradeManager;
+    private final AtomicInteger nextNewID = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        // Read by the managers' static caches, so it must be set before they load
+        System.setProperty("sims.cache.students", String.valueOf(cacheSize));
+        System.setProperty("sims.cache.courses", String.valueOf(cacheSize));
+        db = new BenchDatabase(students, COURSES, GRADES_PER_STUDENT);
+        studentManager = new StudentManager();
+        gradeManager = new GradeManager();
+        nextNewID.set(students);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        db.close();
+    }
+
+    private int randomStudent() {
+        return ThreadLocalRandom.current().nextInt(students);
+    }
+
+    @Benchmark
+    public Student searchStudent() {
+        return studentManager.search(BenchDatabase.stuID(randomStudent()));
+    }
+
+    @Benchmark
+    public Grade searchGrade() {
+        int i = randomStudent();
+        int k = ThreadLocalRandom.current().nextInt(GRADES_PER_STUDENT);
+        return gradeManager.search(BenchDatabase.stuID(i) + "-" + BenchDatabase.courseID(db.courseOf(i, k)));
+    }
+
+    @Benchmark
+    public void updateStudent() {
+        studentManager.update(BenchDatabase.student(randomStudent()));
+    }
+
+    @Benchmark
+    public void updateGrade() {
+        int i = randomStudent();
+        gradeManager.update(new Grade(BenchDatabase.stuID(i), BenchDatabase.courseID(db.courseOf(i, 0)),
+            ThreadLocalRandom.current().nextInt(101)));
+    }
+
+    /**
+     * add() and delete() as a pair, so the table size stays constant
+     */
+    @Benchmark
+    public void addThenDeleteStudent(Blackhole bh) {
+        Student s = BenchDatabase.student(nextNewID.getAndIncrement());
+        studentManager.add(s);
+        studentManager.delete(s.getStuID());
+        bh.consume(s);
+    }
+}
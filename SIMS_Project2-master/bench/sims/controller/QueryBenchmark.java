@@ -0,0 +1,134 @@
+package sims.controller;
+
+import org.openjdk.jmh.annotations.*;
+import sims.model.Course;
+import sims.model.Grade;
+import sims.model.Student;
+import org.openjdk.jmh.infra.Blackhole;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Multi-row reads: the getAll* methods used to fill the tables, the grade
+ * filters, one keyset page for comparison, and transcripts/GPA.
+ *
+ * Run with: ant bench -Dbench.args=QueryBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryBenchmark {
+
+    /** Rows per page, the same as the tables' default page size */
+    private static final int PAGE_SIZE = 200;
+
+    @Param({"1000", "10000", "50000"})
+    public int students;
+
+    @Param({"200"})
+    public int courses;
+
+    @Param({"5"})
+    public int gradesPerStudent;
+
+    private BenchDatabase db;
+    private StudentManager studentManager;
+    private CourseManager courseManager;
+    private GradeManager gradeManager;
+    private TranscriptService transcripts;
+    private GradeColumnStore columns;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        db = new BenchDatabase(students, courses, gradesPerStudent);
+        studentManager = new StudentManager();
+        courseManager = new CourseManager();
+        gradeManager = new GradeManager();
+        transcripts = new TranscriptService();
+        columns = GradeColumnStore.load();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        db.close();
+    }
+
+    @Benchmark
+    public List<Student> getAllStudents() {
+        return studentManager.getAllStudents();
+    }
+
+    @Benchmark
+    public List<Course> getAllCourses() {
+        return courseManager.getAllCourses();
+    }
+
+    @Benchmark
+    public List<Grade> getAllGrades() {
+        return gradeManager.getAllGrades();
+    }
+
+    @Benchmark
+    public List<Grade> getGradesByStudent() {
+        return gradeManager.getGradesByStudent(BenchDatabase.stuID(ThreadLocalRandom.current().nextInt(students)));
+    }
+
+    @Benchmark
+    public List<Grade> getGradesByCourse() {
+        return gradeManager.getGradesByCourse(BenchDatabase.courseID(ThreadLocalRandom.current().nextInt(courses)));
+    }
+
+    /**
+     * One page as the Students tab loads it, starting at a random student
+     */
+    @Benchmark
+    public List<Student> getStudentsPage() {
+        return studentManager.getStudentsAfter(BenchDatabase.stuID(ThreadLocalRandom.current().nextInt(students)),
+            PAGE_SIZE);
+    }
+
+    @Benchmark
+    public Transcript getTranscript() throws SQLException {
+        return transcripts.getTranscript(BenchDatabase.stuID(ThreadLocalRandom.current().nextInt(students)));
+    }
+
+    /**
+     * GPA of the whole cohort aggregated by the database
+     */
+    @Benchmark
+    public List<TranscriptService.Summary> cohortSummaries() throws SQLException {
+        return transcripts.getSummaries();
+    }
+
+    /**
+     * Full transcripts of the whole cohort, streamed
+     */
+    @Benchmark
+    public long cohortTranscripts(Blackhole bh) throws SQLException {
+        return transcripts.forEachTranscript(bh::consume);
+    }
+
+    @Benchmark
+    public GradeColumnStore columnStoreLoad() throws SQLException {
+        return GradeColumnStore.load();
+    }
+
+    /**
+     * Mean score of one course from the columnar snapshot, for comparison with getGradesByCourse
+     */
+    @Benchmark
+    public double columnStoreCourseAverage() {
+        return columns.courseAverage(ThreadLocalRandom.current().nextInt(columns.courseCount()));
+    }
+
+    @Benchmark
+    public double[] columnStoreAverageByCourse() {
+        return columns.averageByCourse();
+    }
+}
@@ -0,0 +1,62 @@
+package sims.controller;
+
+import org.openjdk.jmh.annotations.*;
+import sims.model.Student;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold start of an existing database under each Derby storage profile:
+ * booting the engine and the database, the schema check, and the first
+ * page of students the GUI shows. Derby is shut down after every
+ * measurement, so each one boots from disk again.
+ *
+ * Run with: ant bench -Dbench.args=StartupBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(2)
+public class StartupBenchmark {
+
+    @Param({"default", "performance", "test"})
+    public String profile;
+
+    @Param({"10000"})
+    public int students;
+
+    private BenchDatabase db;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        // The profile must be in place before the database is created,
+        // since the page size only applies to new tables
+        System.setProperty("sims.db.profile", profile);
+        db = new BenchDatabase(students, 200, 5);
+        DBHelper.closeConnection();
+    }
+
+    @TearDown(Level.Iteration)
+    public void shutDown() {
+        DBHelper.closeConnection();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        db.close();
+    }
+
+    @Benchmark
+    public ConnectionPool openDatabase() throws SQLException {
+        return DBHelper.getPool();
+    }
+
+    @Benchmark
+    public List<Student> openAndFirstPage() {
+        return new StudentManager().getStudentsAfter(null, 200);
+    }
+}
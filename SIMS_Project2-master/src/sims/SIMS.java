@@ -1,5 +1,8 @@
 package sims;
 
+import sims.cli.Cli;
+import sims.controller.Metrics;
+import sims.controller.StartupTimer;
 import sims.view.MainFrame;
 import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
@@ -14,7 +17,25 @@ import javax.swing.UIManager;
  */
 public class SIMS {
     
+    /**
+     * With arguments, run one headless command (see {@link Cli}) and exit;
+     * without, open the GUI
+     */
     public static void main(String[] args) {
+        if (args.length > 0) {
+            System.exit(Cli.run(args));
+        }
+        launchGui();
+    }
+
+    /**
+     * Kept out of main so the headless path never loads AWT or Swing
+     */
+    private static void launchGui() {
+        StartupTimer.mark("GUI launch");
+        // Only the long-running GUI is worth watching over JMX; a command exits before anyone attaches
+        Metrics.registerMBean();
+        
         // Set system look and feel for better appearance
         try {
             UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
@@ -0,0 +1,471 @@
+package sims.cli;
+
+import sims.controller.BatchResult;
+import sims.controller.CourseManager;
+import sims.controller.Criteria;
+import sims.controller.CsvExporter;
+import sims.controller.CsvFormat;
+import sims.controller.CsvImporter;
+import sims.controller.CsvSchema;
+import sims.controller.DBHelper;
+import sims.controller.GradeColumnStore;
+import sims.controller.GradeManager;
+import sims.controller.ImportReport;
+import sims.controller.Log;
+import sims.controller.Manager;
+import sims.controller.Metrics;
+import sims.controller.StudentManager;
+import sims.controller.Transcript;
+import sims.controller.TranscriptService;
+import sims.model.Course;
+import sims.model.Grade;
+import sims.model.GradeRecord;
+import sims.model.Student;
+import sims.model.StudentRecord;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Headless, scriptable front end used when SIMS is started with arguments.
+ * Results go to stdout as CSV (default) or JSON; diagnostics go to stderr.
+ * Only controller and model classes are used, so no AWT or Swing class is
+ * ever loaded and the JVM can run on servers without a display.
+ * The metrics MBean is only registered with -Dsims.metrics.jmx=true.
+ *
+ * Exit codes: 0 success, 1 the operation failed or found nothing, 2 bad usage.
+ */
+public final class Cli {
+
+    static final int OK = 0;
+    static final int FAILED = 1;
+    static final int USAGE = 2;
+
+    private static final String USAGE_TEXT = String.join("\n",
+        "Usage: sims [--format csv|json] <command> [arguments]",
+        "",
+        "  students|courses|grades list                  list all rows",
+        "  students|courses|grades get <id>              show one row (grade id: stuID-courseID)",
+        "  students|courses|grades add <field>...        add one row, fields in CSV column order",
+        "  students|courses|grades delete <id>...        delete rows by id",
+        "  grades list [--student <stuID>] [--course <courseID>] [--min <score>] [--max <score>] [--major <major>]",
+        "  import students|courses|grades <file.csv>",
+        "  export students|courses|grades <file.csv[.gz]|->",
+        "  transcript <stuID>                            per-course rows and GPA",
+        "  report gpa                                    GPA and credits of every student",
+        "  report courses                                grade count and mean score per course",
+        "  metrics                                       operation and SQL timings of this run",
+        "  help");
+
+    private final PrintWriter out;
+    private final PrintStream err;
+    private Output output;
+
+    Cli(PrintWriter out, PrintStream err) {
+        this.out = out;
+        this.err = err;
+    }
+
+    /**
+     * Run one command and exit the JVM with its status
+     */
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    /**
+     * Run one command against the database, then shut the database down
+     * @return process exit code
+     */
+    public static int run(String[] args) {
+        if (System.getProperty("sims.log.level") == null) {
+            // Keep stdout for results; warnings and errors still reach stderr
+            Log.setLevel(Log.Level.WARN);
+        }
+        if (Boolean.getBoolean("sims.metrics.jmx")) {
+            // Opt-in: a command usually exits before a JMX client could attach
+            Metrics.registerMBean();
+        }
+        PrintWriter out = new PrintWriter(new BufferedWriter(
+                new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16));
+        try {
+            return new Cli(out, System.err).execute(args);
+        } finally {
+            out.flush();
+            DBHelper.closeConnection();
+            Log.flush();
+        }
+    }
+
+    int execute(String[] argv) {
+        List<String> args = new ArrayList<>(Arrays.asList(argv));
+        String format = "csv";
+        if (args.size() >= 2 && args.get(0).equals("--format")) {
+            format = args.remove(1);
+            args.remove(0);
+        }
+        if (!format.equals("csv") && !format.equals("json")) {
+            return usage("Unknown format: " + format);
+        }
+        output = format.equals("json") ? new JsonOutput(out) : new CsvOutput(out);
+        if (args.isEmpty()) {
+            return usage(null);
+        }
+
+        String command = args.remove(0);
+        try {
+            switch (command) {
+                case "students":
+                case "courses":
+                case "grades":
+                    return entity(command, args);
+                case "import":
+                    return importCsv(args);
+                case "export":
+                    return exportCsv(args);
+                case "transcript":
+                    return transcript(args);
+                case "report":
+                    return report(args);
+                case "metrics":
+                    return metrics();
+                case "help":
+                case "--help":
+                    out.println(USAGE_TEXT);
+                    return OK;
+                default:
+                    return usage("Unknown command: " + command);
+            }
+        } catch (IllegalArgumentException e) {
+            return usage(e.getMessage());
+        } catch (IOException | SQLException e) {
+            err.println("Error: " + e.getMessage());
+            return FAILED;
+        }
+    }
+
+    private int usage(String problem) {
+        if (problem != null) {
+            err.println(problem);
+        }
+        err.println(USAGE_TEXT);
+        return USAGE;
+    }
+
+    private int entity(String table, List<String> args) throws IOException, SQLException {
+        if (args.isEmpty()) {
+            return usage("Missing action for " + table);
+        }
+        String action = args.remove(0);
+        switch (action) {
+            case "list":
+                return list(table, args);
+            case "get":
+                require(args, 1, "get <id>");
+                return get(table, args.get(0));
+            case "add":
+                return add(table, args);
+            case "delete":
+                require(args, 1, "delete <id>...");
+                return delete(table, args);
+            default:
+                return usage("Unknown action: " + action);
+        }
+    }
+
+    private int list(String table, List<String> args) throws IOException, SQLException {
+        if (table.equals("grades") && !args.isEmpty()) {
+            GradeManager grades = new GradeManager();
+            // Options combine into one query
+            Criteria<Grade> criteria = grades.criteria();
+            for (int i = 0; i < args.size(); i += 2) {
+                if (i + 1 >= args.size()) {
+                    return usage("Missing value for " + args.get(i));
+                }
+                String value = args.get(i + 1);
+                switch (args.get(i)) {
+                    case "--student":
+                        criteria.eq("stuID", value);
+                        break;
+                    case "--course":
+                        criteria.eq("courseID", value);
+                        break;
+                    case "--min":
+                        criteria.ge("score", Double.parseDouble(value));
+                        break;
+                    case "--max":
+                        criteria.le("score", Double.parseDouble(value));
+                        break;
+                    case "--major":
+                        criteria.eq("major", value);
+                        break;
+                    default:
+                        return usage("Unknown option: " + args.get(i));
+                }
+            }
+            output.begin(columns(CsvSchema.GRADES));
+            for (Grade g : grades.find(criteria)) {
+                output.row(g.getStuID(), g.getCourseID(), g.getScore());
+            }
+            output.end();
+            return OK;
+        }
+        if (!args.isEmpty()) {
+            return usage("Unexpected arguments: " + args);
+        }
+        if (output instanceof CsvOutput) {
+            // Same layout as export, streamed straight from the cursor
+            out.flush();
+            new CsvExporter().export(schema(table), new NonClosingStream(System.out), false);
+            return OK;
+        }
+        switch (table) {
+            case "students":
+                output.begin(columns(CsvSchema.STUDENTS));
+                for (StudentRecord s : new StudentManager().getAllStudentRecords()) {
+                    output.row(s.stuID(), s.name(), s.gender(), s.major(), s.year());
+                }
+                break;
+            case "courses":
+                output.begin(columns(CsvSchema.COURSES));
+                for (Course c : new CourseManager().getAllCourses()) {
+                    output.row(c.getCourseID(), c.getCourseName(), c.getCredit());
+                }
+                break;
+            default:
+                output.begin(columns(CsvSchema.GRADES));
+                for (GradeRecord g : new GradeManager().getAllGradeRecords()) {
+                    output.row(g.stuID(), g.courseID(), g.score());
+                }
+                break;
+        }
+        output.end();
+        return OK;
+    }
+
+    private int get(String table, String id) {
+        switch (table) {
+            case "students": {
+                Student s = new StudentManager().search(id);
+                if (s == null) {
+                    break;
+                }
+                output.begin(columns(CsvSchema.STUDENTS));
+                output.row(s.getStuID(), s.getName(), s.getGender(), s.getMajor(), s.getYear());
+                output.end();
+                return OK;
+            }
+            case "courses": {
+                Course c = new CourseManager().search(id);
+                if (c == null) {
+                    break;
+                }
+                output.begin(columns(CsvSchema.COURSES));
+                output.row(c.getCourseID(), c.getCourseName(), c.getCredit());
+                output.end();
+                return OK;
+            }
+            default: {
+                Grade g = new GradeManager().search(id);
+                if (g == null) {
+                    break;
+                }
+                output.begin(columns(CsvSchema.GRADES));
+                output.row(g.getStuID(), g.getCourseID(), g.getScore());
+                output.end();
+                return OK;
+            }
+        }
+        err.println("Not found: " + id);
+        return FAILED;
+    }
+
+    private int add(String table, List<String> fields) {
+        CsvSchema<?> schema = schema(table);
+        require(fields, schema.getColumnCount(), "add " + schema.getHeader());
+        String line = CsvFormat.formatLine(fields.toArray(new String[0]));
+        BatchResult result;
+        switch (table) {
+            case "students":
+                result = new StudentManager().addAll(Collections.singletonList(CsvSchema.STUDENTS.parse(line)));
+                break;
+            case "courses":
+                result = new CourseManager().addAll(Collections.singletonList(CsvSchema.COURSES.parse(line)));
+                break;
+            default:
+                result = new GradeManager().addAll(Collections.singletonList(CsvSchema.GRADES.parse(line)));
+                break;
+        }
+        return outcomes(result);
+    }
+
+    private int delete(String table, List<String> ids) {
+        Manager<?> manager = table.equals("students") ? new StudentManager()
+                : table.equals("courses") ? new CourseManager() : new GradeManager();
+        return outcomes(manager.deleteAll(ids));
+    }
+
+    private int outcomes(BatchResult result) {
+        output.begin("Key", "Status", "Message");
+        for (BatchResult.RowOutcome o : result.getOutcomes()) {
+            output.row(o.getKey(), o.getStatus().name(), o.getMessage());
+        }
+        output.end();
+        return result.getFailed() == 0 ? OK : FAILED;
+    }
+
+    private int importCsv(List<String> args) throws IOException {
+        require(args, 2, "import <table> <file>");
+        Path file = Paths.get(args.get(1));
+        ImportReport report;
+        switch (args.get(0)) {
+            case "students":
+                report = new CsvImporter<>(new StudentManager(), CsvSchema.STUDENTS).importFile(file);
+                break;
+            case "courses":
+                report = new CsvImporter<>(new CourseManager(), CsvSchema.COURSES).importFile(file);
+                break;
+            case "grades":
+                report = new CsvImporter<>(new GradeManager(), CsvSchema.GRADES).importFile(file);
+                break;
+            default:
+                return usage("Unknown table: " + args.get(0));
+        }
+        for (ImportReport.Rejection r : report.getRejections()) {
+            err.println(r);
+        }
+        output.begin("Table", "RowsRead", "Imported", "Rejected", "ElapsedMillis");
+        output.row(report.getTable(), report.getRowsRead(), report.getImported(),
+            report.getRejected(), report.getElapsedMillis());
+        output.end();
+        return report.getRejected() == 0 ? OK : FAILED;
+    }
+
+    private int exportCsv(List<String> args) throws IOException, SQLException {
+        require(args, 2, "export <table> <file>|-");
+        CsvSchema<?> schema = schema(args.get(0));
+        if (args.get(1).equals("-")) {
+            out.flush();
+            new CsvExporter().export(schema, new NonClosingStream(System.out), false);
+        } else {
+            long rows = new CsvExporter().export(schema, Paths.get(args.get(1)));
+            err.println("Exported " + rows + " row(s) to " + args.get(1));
+        }
+        return OK;
+    }
+
+    private int transcript(List<String> args) throws SQLException {
+        require(args, 1, "transcript <stuID>");
+        Transcript t = new TranscriptService().getTranscript(args.get(0));
+        if (t.getLines().isEmpty()) {
+            err.println("No graded courses for " + args.get(0));
+            return FAILED;
+        }
+        output.begin("StudentID", "CourseID", "CourseName", "Credit", "Score", "Letter", "Points");
+        for (Transcript.Line line : t.getLines()) {
+            output.row(t.getStuID(), line.getCourseID(), line.getCourseName(), line.getCredit(),
+                line.getScore(), line.getLetter().getLabel(), line.getLetter().getPoints());
+        }
+        output.end();
+        err.println(t);
+        return OK;
+    }
+
+    private int report(List<String> args) throws SQLException {
+        require(args, 1, "report gpa|courses");
+        switch (args.get(0)) {
+            case "gpa":
+                output.begin("StudentID", "GPA", "CreditsAttempted", "CreditsEarned");
+                for (TranscriptService.Summary s : new TranscriptService().getSummaries()) {
+                    output.row(s.getStuID(), round(s.getGpa()), s.getCreditsAttempted(), s.getCreditsEarned());
+                }
+                output.end();
+                return OK;
+            case "courses": {
+                GradeColumnStore store = GradeColumnStore.load();
+                double[] averages = store.averageByCourse();
+                output.begin("CourseID", "Grades", "MeanScore");
+                for (int c = 0; c < store.courseCount(); c++) {
+                    output.row(store.courseID(c), store.countInCourse(c), round(averages[c]));
+                }
+                output.end();
+                return OK;
+            }
+            default:
+                return usage("Unknown report: " + args.get(0));
+        }
+    }
+
+    private int metrics() {
+        output.begin("Kind", "Name", "Calls", "Errors", "MeanMicros", "P50Micros", "P99Micros", "MaxMicros");
+        for (Metrics.Snapshot s : Metrics.operations()) {
+            metricRow("operation", s);
+        }
+        for (Metrics.Snapshot s : Metrics.statements()) {
+            metricRow("sql", s);
+        }
+        output.end();
+        return OK;
+    }
+
+    private void metricRow(String kind, Metrics.Snapshot s) {
+        output.row(kind, s.getName(), s.getCalls(), s.getErrors(), round(s.getMeanMicros()),
+            round(s.getP50Micros()), round(s.getP99Micros()), round(s.getMaxMicros()));
+    }
+
+    private static double round(double v) {
+        return Math.round(v * 100) / 100.0;
+    }
+
+    private static void require(List<String> args, int count, String usage) {
+        if (args.size() != count) {
+            throw new IllegalArgumentException("Expected: " + usage);
+        }
+    }
+
+    private static String[] columns(CsvSchema<?> schema) {
+        return schema.getHeader().split(",");
+    }
+
+    private static CsvSchema<?> schema(String table) {
+        switch (table) {
+            case "students":
+                return CsvSchema.STUDENTS;
+            case "courses":
+                return CsvSchema.COURSES;
+            case "grades":
+                return CsvSchema.GRADES;
+            default:
+                throw new IllegalArgumentException("Unknown table: " + table);
+        }
+    }
+
+    /**
+     * Lets the exporter write to stdout without closing it
+     */
+    private static final class NonClosingStream extends java.io.FilterOutputStream {
+        NonClosingStream(java.io.OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
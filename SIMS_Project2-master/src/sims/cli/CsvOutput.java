@@ -0,0 +1,33 @@
+package sims.cli;
+
+import sims.controller.CsvFormat;
+import java.io.PrintWriter;
+
+/**
+ * RFC 4180 CSV with a header line, the same dialect the importer reads
+ */
+final class CsvOutput extends Output {
+
+    CsvOutput(PrintWriter out) {
+        super(out);
+    }
+
+    @Override
+    void begin(String... columns) {
+        out.println(CsvFormat.formatLine(columns));
+    }
+
+    @Override
+    void row(Object... values) {
+        String[] fields = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            fields[i] = values[i] == null ? "" : String.valueOf(values[i]);
+        }
+        out.println(CsvFormat.formatLine(fields));
+    }
+
+    @Override
+    void end() {
+        out.flush();
+    }
+}
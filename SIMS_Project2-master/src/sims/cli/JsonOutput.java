@@ -0,0 +1,83 @@
+package sims.cli;
+
+import java.io.PrintWriter;
+
+/**
+ * A JSON array with one object per row, keyed by column name.
+ * Numbers are written bare, null as null, everything else as a string.
+ */
+final class JsonOutput extends Output {
+
+    private String[] columns;
+    private boolean first;
+
+    JsonOutput(PrintWriter out) {
+        super(out);
+    }
+
+    @Override
+    void begin(String... columns) {
+        this.columns = columns;
+        this.first = true;
+        out.print('[');
+    }
+
+    @Override
+    void row(Object... values) {
+        out.print(first ? "\n  {" : ",\n  {");
+        first = false;
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                out.print(", ");
+            }
+            string(columns[i]);
+            out.print(": ");
+            Object v = i < values.length ? values[i] : null;
+            if (v == null) {
+                out.print("null");
+            } else if (v instanceof Number && Double.isFinite(((Number) v).doubleValue())) {
+                out.print(v);
+            } else {
+                string(String.valueOf(v));
+            }
+        }
+        out.print('}');
+    }
+
+    @Override
+    void end() {
+        out.println(first ? "]" : "\n]");
+        out.flush();
+    }
+
+    private void string(String s) {
+        out.print('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    out.print("\\\"");
+                    break;
+                case '\\':
+                    out.print("\\\\");
+                    break;
+                case '\n':
+                    out.print("\\n");
+                    break;
+                case '\r':
+                    out.print("\\r");
+                    break;
+                case '\t':
+                    out.print("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.printf("\\u%04x", (int) c);
+                    } else {
+                        out.print(c);
+                    }
+            }
+        }
+        out.print('"');
+    }
+}
@@ -0,0 +1,22 @@
+package sims.cli;
+
+import java.io.PrintWriter;
+
+/**
+ * Machine-readable result writer of the command line.
+ * A result is a header followed by rows of the same width.
+ */
+abstract class Output {
+
+    protected final PrintWriter out;
+
+    Output(PrintWriter out) {
+        this.out = out;
+    }
+
+    abstract void begin(String... columns);
+
+    abstract void row(Object... values);
+
+    abstract void end();
+}
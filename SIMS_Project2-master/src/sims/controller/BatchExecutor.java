@@ -0,0 +1,272 @@
+package sims.controller;
+
+import sims.controller.BatchResult.RowOutcome;
+import sims.controller.BatchResult.Status;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Runs parameterized statements for many rows with JDBC batching.
+ * All chunks of a call share one transaction; a row that fails is recorded
+ * and the rest of its chunk is resubmitted, so one bad row does not lose
+ * the others. An error that rolls back the whole transaction, such as a
+ * deadlock or lock timeout, fails every row instead.
+ */
+final class BatchExecutor {
+
+    static final int DEFAULT_BATCH_SIZE = 500;
+
+    /**
+     * Binds the parameters for one row
+     */
+    interface Binder<T> {
+        /**
+         * @throws IllegalArgumentException if the row cannot be bound; it is reported as FAILED
+         */
+        void bind(PreparedStatement ps, T item) throws SQLException;
+    }
+
+    private BatchExecutor() {
+    }
+
+    /**
+     * Execute sql once per item
+     * @param sql statement to run
+     * @param items rows to bind
+     * @param batchSize rows per executeBatch call
+     * @param binder sets the statement parameters for a row
+     * @param keyOf key reported in the outcome of a row
+     * @param onSuccess status for rows that changed at least one record
+     * @param onNoRows status for rows that changed nothing
+     * @return outcome for every item, in submission order
+     */
+    static <T> BatchResult execute(String sql, Collection<? extends T> items, int batchSize,
+                                   Binder<T> binder, Function<T, String> keyOf,
+                                   Status onSuccess, Status onNoRows) {
+        return inTransaction(items, batchSize, keyOf, (conn, rows, chunk, outcomes) -> {
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                runChunk(ps, rows, chunk, binder, keyOf, onSuccess, onNoRows, outcomes);
+            }
+        });
+    }
+
+    /**
+     * Insert or update each item, reporting which one happened.
+     * Each chunk runs a batched UPDATE first; rows it did not match are
+     * inserted in a second batch, and rows that another writer inserted in
+     * between (duplicate key) are updated once more.
+     * @return INSERTED or UPDATED per item, or FAILED with a message
+     */
+    static <T> BatchResult upsert(String updateSql, Binder<T> updateBinder,
+                                  String insertSql, Binder<T> insertBinder,
+                                  Collection<? extends T> items, int batchSize,
+                                  Function<T, String> keyOf) {
+        return inTransaction(items, batchSize, keyOf, (conn, rows, chunk, outcomes) -> {
+            try (PreparedStatement update = conn.prepareStatement(updateSql)) {
+                runChunk(update, rows, chunk, updateBinder, keyOf, Status.UPDATED, Status.NOT_FOUND, outcomes);
+            }
+            int[] missing = select(chunk, outcomes, Status.NOT_FOUND);
+            if (missing.length == 0) {
+                return;
+            }
+            try (PreparedStatement insert = conn.prepareStatement(insertSql)) {
+                runChunk(insert, rows, missing, insertBinder, keyOf, Status.INSERTED, Status.FAILED, outcomes);
+            }
+            int[] raced = select(missing, outcomes, Status.DUPLICATE);
+            if (raced.length > 0) {
+                try (PreparedStatement update = conn.prepareStatement(updateSql)) {
+                    runChunk(update, rows, raced, updateBinder, keyOf, Status.UPDATED, Status.FAILED, outcomes);
+                }
+            }
+        });
+    }
+
+    /**
+     * Work done for one chunk of rows inside the shared transaction
+     */
+    private interface ChunkWork<T> {
+        void run(Connection conn, List<T> rows, int[] chunk, RowOutcome[] outcomes) throws SQLException;
+    }
+
+    /**
+     * Split items into chunks and run work for each in one transaction.
+     * If anything fails outside a single row, everything is rolled back
+     * and every row is reported as FAILED.
+     */
+    private static <T> BatchResult inTransaction(Collection<? extends T> items, int batchSize,
+                                                 Function<T, String> keyOf, ChunkWork<T> work) {
+        List<T> rows = new ArrayList<>(items);
+        RowOutcome[] outcomes = new RowOutcome[rows.size()];
+        if (rows.isEmpty()) {
+            return new BatchResult(Arrays.asList(outcomes));
+        }
+
+        try (Connection conn = DBHelper.borrowConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                for (int start = 0; start < rows.size(); start += batchSize) {
+                    int end = Math.min(start + batchSize, rows.size());
+                    int[] chunk = new int[end - start];
+                    for (int i = 0; i < chunk.length; i++) {
+                        chunk[i] = start + i;
+                    }
+                    work.run(conn, rows, chunk, outcomes);
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                failAll(rows, keyOf, outcomes, "Rolled back: " + e.getMessage());
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            failAll(rows, keyOf, outcomes, e.getMessage());
+        }
+        return new BatchResult(Arrays.asList(outcomes));
+    }
+
+    /**
+     * @return the positions in chunk whose outcome has the given status
+     */
+    private static int[] select(int[] chunk, RowOutcome[] outcomes, Status status) {
+        int[] matches = new int[chunk.length];
+        int n = 0;
+        for (int i : chunk) {
+            if (outcomes[i] != null && outcomes[i].getStatus() == status) {
+                matches[n++] = i;
+            }
+        }
+        return Arrays.copyOf(matches, n);
+    }
+
+    /**
+     * Bind and execute the given rows as batches on ps, filling in their outcomes
+     * @param chunk positions (into rows) to run
+     */
+    private static <T> void runChunk(PreparedStatement ps, List<T> rows, int[] chunk,
+                                     Binder<T> binder, Function<T, String> keyOf,
+                                     Status onSuccess, Status onNoRows,
+                                     RowOutcome[] outcomes) throws SQLException {
+        // Positions (into rows) of the rows actually added to the batch
+        int[] queued = new int[chunk.length];
+        int n = 0;
+        for (int i : chunk) {
+            T item = rows.get(i);
+            try {
+                binder.bind(ps, item);
+                ps.addBatch();
+                queued[n++] = i;
+            } catch (IllegalArgumentException e) {
+                outcomes[i] = new RowOutcome(i, keyOf.apply(item), Status.FAILED, e.getMessage());
+            }
+        }
+
+        int from = 0;
+        while (from < n) {
+            try {
+                int[] counts = ps.executeBatch();
+                record(counts, queued, from, rows, keyOf, onSuccess, onNoRows, outcomes);
+                from = n;
+            } catch (BatchUpdateException e) {
+                if (rolledBack(e)) {
+                    // The rows that ran before it were undone too; inTransaction fails them all
+                    throw e;
+                }
+                int[] counts = e.getUpdateCounts();
+                if (counts != null && counts.length >= n - from) {
+                    // Driver kept going after the error and marked failed rows
+                    for (int j = 0; j < n - from; j++) {
+                        int i = queued[from + j];
+                        outcomes[i] = counts[j] == Statement.EXECUTE_FAILED
+                                ? failure(i, keyOf.apply(rows.get(i)), e)
+                                : outcome(i, keyOf.apply(rows.get(i)), counts[j], onSuccess, onNoRows);
+                    }
+                    from = n;
+                } else {
+                    // Driver stopped at the failing row: record what ran, skip the bad row, resubmit the rest
+                    int done = counts == null ? 0 : counts.length;
+                    record(counts == null ? new int[0] : counts, queued, from, rows, keyOf, onSuccess, onNoRows, outcomes);
+                    int bad = queued[from + done];
+                    outcomes[bad] = failure(bad, keyOf.apply(rows.get(bad)), e);
+                    from += done + 1;
+                    ps.clearBatch();
+                    for (int j = from; j < n; j++) {
+                        binder.bind(ps, rows.get(queued[j]));
+                        ps.addBatch();
+                    }
+                }
+            }
+        }
+    }
+
+    private static <T> void record(int[] counts, int[] queued, int from, List<T> rows,
+                                   Function<T, String> keyOf, Status onSuccess, Status onNoRows,
+                                   RowOutcome[] outcomes) {
+        for (int j = 0; j < counts.length; j++) {
+            int i = queued[from + j];
+            outcomes[i] = outcome(i, keyOf.apply(rows.get(i)), counts[j], onSuccess, onNoRows);
+        }
+    }
+
+    private static RowOutcome outcome(int index, String key, int count, Status onSuccess, Status onNoRows) {
+        if (count > 0 || count == Statement.SUCCESS_NO_INFO) {
+            return new RowOutcome(index, key, onSuccess, null);
+        }
+        return new RowOutcome(index, key, onNoRows, onNoRows.isSuccess() ? null : "No matching record");
+    }
+
+    private static RowOutcome failure(int index, String key, SQLException e) {
+        String state = sqlState(e);
+        if ("23505".equals(state)) {
+            return new RowOutcome(index, key, Status.DUPLICATE, "Record already exists");
+        }
+        if ("23503".equals(state)) {
+            return new RowOutcome(index, key, Status.FAILED, "Referenced record does not exist");
+        }
+        return new RowOutcome(index, key, Status.FAILED, e.getMessage());
+    }
+
+    /**
+     * Drivers differ in where they put the cause of a batch failure
+     */
+    private static String sqlState(SQLException e) {
+        for (SQLException cur = e; cur != null; cur = cur.getNextException()) {
+            if (cur.getSQLState() != null) {
+                return cur.getSQLState();
+            }
+        }
+        Throwable cause = e.getCause();
+        return cause instanceof SQLException ? ((SQLException) cause).getSQLState() : null;
+    }
+
+    /**
+     * SQLState class 40 (e.g. 40001 deadlock, 40XL1 lock timeout) means the
+     * database has rolled back the whole transaction, not just the failing row
+     */
+    private static boolean rolledBack(SQLException e) {
+        for (SQLException cur = e; cur != null; cur = cur.getNextException()) {
+            for (Throwable t = cur; t != null; t = t.getCause()) {
+                if (t instanceof SQLException && ((SQLException) t).getSQLState() != null
+                        && ((SQLException) t).getSQLState().startsWith("40")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static <T> void failAll(List<T> rows, Function<T, String> keyOf,
+                                    RowOutcome[] outcomes, String message) {
+        for (int i = 0; i < rows.size(); i++) {
+            outcomes[i] = new RowOutcome(i, keyOf.apply(rows.get(i)), Status.FAILED, message);
+        }
+    }
+}
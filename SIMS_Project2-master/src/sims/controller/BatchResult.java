@@ -0,0 +1,121 @@
+package sims.controller;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-row outcome of a batch operation on a Manager
+ */
+public class BatchResult {
+
+    /**
+     * What happened to one row
+     */
+    public enum Status {
+        INSERTED, UPDATED, DELETED, DUPLICATE, NOT_FOUND, FAILED;
+
+        /**
+         * @return true if the row was written
+         */
+        public boolean isSuccess() {
+            return this == INSERTED || this == UPDATED || this == DELETED;
+        }
+    }
+
+    /**
+     * Outcome for the row at a given position in the submitted collection
+     */
+    public static class RowOutcome {
+        private final int index;
+        private final String key;
+        private final Status status;
+        private final String message;
+
+        public RowOutcome(int index, String key, Status status, String message) {
+            this.index = index;
+            this.key = key;
+            this.status = status;
+            this.message = message;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        /**
+         * @return error detail, or null for successful rows
+         */
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return index + "," + key + "," + status + (message == null ? "" : "," + message);
+        }
+    }
+
+    private final List<RowOutcome> outcomes;
+    private final Map<Status, Integer> counts = new EnumMap<>(Status.class);
+
+    public BatchResult(List<RowOutcome> outcomes) {
+        this.outcomes = Collections.unmodifiableList(new ArrayList<>(outcomes));
+        for (RowOutcome o : outcomes) {
+            counts.merge(o.getStatus(), 1, Integer::sum);
+        }
+    }
+
+    /**
+     * @return outcomes in the order the rows were submitted
+     */
+    public List<RowOutcome> getOutcomes() {
+        return outcomes;
+    }
+
+    public int count(Status status) {
+        return counts.getOrDefault(status, 0);
+    }
+
+    public int getSucceeded() {
+        int n = 0;
+        for (Map.Entry<Status, Integer> e : counts.entrySet()) {
+            if (e.getKey().isSuccess()) {
+                n += e.getValue();
+            }
+        }
+        return n;
+    }
+
+    public int getFailed() {
+        return outcomes.size() - getSucceeded();
+    }
+
+    /**
+     * @return only the rows that were not written
+     */
+    public List<RowOutcome> getFailures() {
+        List<RowOutcome> failures = new ArrayList<>();
+        for (RowOutcome o : outcomes) {
+            if (!o.getStatus().isSuccess()) {
+                failures.add(o);
+            }
+        }
+        return failures;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResult" + counts + " of " + outcomes.size() + " rows";
+    }
+}
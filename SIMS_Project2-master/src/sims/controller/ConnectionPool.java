@@ -0,0 +1,373 @@
+package sims.controller;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, thread-safe pool of embedded Derby connections.
+ * Connections are borrowed with {@link #borrow()} and handed back by
+ * calling {@code close()} on the returned connection, so callers can
+ * use ordinary try-with-resources blocks.
+ * Each physical connection keeps a {@link StatementCache}, so
+ * {@code prepareStatement(sql)} reuses compiled statements across borrows.
+ * Every statement is timed per SQL text in {@link Metrics}.
+ */
+public class ConnectionPool {
+
+    private final String url;
+    private final int maxSize;
+    private final long borrowTimeoutMillis;
+    private final long validateAfterMillis;
+    private final long leakThresholdMillis;
+    private final int statementCacheSize;
+    private final AtomicLong statementHits = new AtomicLong();
+    private final AtomicLong statementMisses = new AtomicLong();
+
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Map<PooledConnection, Lease> leased = new ConcurrentHashMap<>();
+    private final AtomicInteger physicalCount = new AtomicInteger();
+    private final ScheduledExecutorService leakDetector;
+    private volatile boolean closed = false;
+
+    /**
+     * Create a pool
+     * @param url JDBC URL used for every physical connection
+     * @param minIdle connections opened eagerly
+     * @param maxSize maximum number of connections borrowed at the same time
+     * @param borrowTimeoutMillis how long borrow() waits for a free connection
+     * @param leakThresholdMillis a connection held longer than this is reported as a leak (0 disables)
+     * @param statementCacheSize prepared statements cached per connection (0 disables)
+     * @throws SQLException if the initial connections cannot be opened
+     */
+    public ConnectionPool(String url, int minIdle, int maxSize,
+                          long borrowTimeoutMillis, long leakThresholdMillis,
+                          int statementCacheSize) throws SQLException {
+        if (maxSize < 1 || minIdle < 0 || minIdle > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: minIdle=" + minIdle + ", maxSize=" + maxSize);
+        }
+        this.url = url;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.validateAfterMillis = 30_000;
+        this.leakThresholdMillis = leakThresholdMillis;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+
+        for (int i = 0; i < minIdle; i++) {
+            idle.offer(openPhysical());
+        }
+
+        if (leakThresholdMillis > 0) {
+            leakDetector = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "sims-pool-leak-detector");
+                t.setDaemon(true);
+                return t;
+            });
+            long period = Math.max(1000, leakThresholdMillis / 2);
+            leakDetector.scheduleAtFixedRate(this::detectLeaks, period, period, TimeUnit.MILLISECONDS);
+        } else {
+            leakDetector = null;
+        }
+    }
+
+    /**
+     * Borrow a connection from the pool, opening a new one if none is idle
+     * @return connection that returns itself to the pool on close()
+     * @throws SQLException if the pool is closed, exhausted past the timeout, or the connection fails
+     */
+    public Connection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed", "08003");
+        }
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out after " + borrowTimeoutMillis
+                        + " ms waiting for a database connection (pool size " + maxSize + ")", "08004");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", "08004", e);
+        }
+
+        try {
+            PooledConnection pc = takeValidIdle();
+            if (pc == null) {
+                pc = openPhysical();
+            }
+            leased.put(pc, new Lease());
+            return pc.newHandle();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Poll idle connections until a usable one is found
+     */
+    private PooledConnection takeValidIdle() {
+        PooledConnection pc;
+        while ((pc = idle.pollFirst()) != null) {
+            if (isUsable(pc)) {
+                return pc;
+            }
+            discard(pc);
+        }
+        return null;
+    }
+
+    private boolean isUsable(PooledConnection pc) {
+        try {
+            if (pc.physical.isClosed()) {
+                return false;
+            }
+            // Only pay for a validation round-trip when the connection has been idle a while
+            if (System.currentTimeMillis() - pc.lastReturned > validateAfterMillis) {
+                return pc.physical.isValid(2);
+            }
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PooledConnection openPhysical() throws SQLException {
+        Connection c = DriverManager.getConnection(url);
+        physicalCount.incrementAndGet();
+        return new PooledConnection(c);
+    }
+
+    private void discard(PooledConnection pc) {
+        physicalCount.decrementAndGet();
+        pc.statements.clear();
+        try {
+            pc.physical.close();
+        } catch (SQLException e) {
+            // Connection is being thrown away anyway
+        }
+    }
+
+    /**
+     * Hand a connection back; called from the handle's close()
+     */
+    private void release(PooledConnection pc) {
+        if (leased.remove(pc) == null) {
+            return;
+        }
+        try {
+            boolean reusable = !closed && !pc.physical.isClosed();
+            if (reusable) {
+                reusable = reset(pc.physical);
+            }
+            if (reusable) {
+                pc.lastReturned = System.currentTimeMillis();
+                // LIFO keeps the most recently used (warmest) connections in circulation
+                idle.offerFirst(pc);
+            } else {
+                discard(pc);
+            }
+        } catch (SQLException e) {
+            discard(pc);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Undo any per-borrow state so the next borrower gets a clean connection
+     */
+    private boolean reset(Connection c) {
+        try {
+            if (!c.getAutoCommit()) {
+                c.rollback();
+                c.setAutoCommit(true);
+            }
+            if (c.isReadOnly()) {
+                c.setReadOnly(false);
+            }
+            if (c.getTransactionIsolation() != Connection.TRANSACTION_READ_COMMITTED) {
+                c.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+            }
+            c.clearWarnings();
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void detectLeaks() {
+        long now = System.currentTimeMillis();
+        for (Lease lease : leased.values()) {
+            if (!lease.reported && now - lease.borrowedAt > leakThresholdMillis) {
+                lease.reported = true;
+                Log.warn("✗ Possible connection leak: held by " + lease.threadName
+                        + " for " + (now - lease.borrowedAt) + " ms", lease.origin);
+            }
+        }
+    }
+
+    /**
+     * @return number of connections currently borrowed
+     */
+    public int getActiveCount() {
+        return leased.size();
+    }
+
+    /**
+     * @return number of connections waiting in the pool
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * @return number of open physical connections
+     */
+    public int getTotalCount() {
+        return physicalCount.get();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return prepareStatement calls served from a statement cache
+     */
+    public long getStatementCacheHits() {
+        return statementHits.get();
+    }
+
+    /**
+     * @return prepareStatement calls that had to compile a new statement
+     */
+    public long getStatementCacheMisses() {
+        return statementMisses.get();
+    }
+
+    /**
+     * Close all idle connections and refuse further borrows.
+     * Borrowed connections are closed when they are returned.
+     */
+    public void close() {
+        closed = true;
+        if (leakDetector != null) {
+            leakDetector.shutdownNow();
+        }
+        PooledConnection pc;
+        while ((pc = idle.pollFirst()) != null) {
+            discard(pc);
+        }
+    }
+
+    /**
+     * Bookkeeping for one borrowed connection
+     */
+    private static final class Lease {
+        final long borrowedAt = System.currentTimeMillis();
+        final String threadName = Thread.currentThread().getName();
+        final Throwable origin = new Throwable("Connection borrowed here");
+        volatile boolean reported = false;
+    }
+
+    /**
+     * A physical connection owned by the pool
+     */
+    private final class PooledConnection {
+        final Connection physical;
+        final StatementCache statements;
+        volatile long lastReturned = System.currentTimeMillis();
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.statements = new StatementCache(physical, statementCacheSize, statementHits, statementMisses);
+        }
+
+        /**
+         * Create a fresh logical handle; each borrow gets its own so a stale
+         * handle kept by a caller cannot close a connection that was re-borrowed.
+         */
+        Connection newHandle() {
+            return (Connection) Proxy.newProxyInstance(
+                    ConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new Handle(this));
+        }
+    }
+
+    /**
+     * Forwards calls to the physical connection; close() returns it to the pool
+     */
+    private final class Handle implements InvocationHandler {
+        private final PooledConnection owner;
+        private boolean released = false;
+
+        Handle(PooledConnection owner) {
+            this.owner = owner;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!released) {
+                        released = true;
+                        release(owner);
+                    }
+                    return null;
+                case "isClosed":
+                    return released || owner.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + owner.physical + "]";
+                default:
+                    break;
+            }
+            if (released) {
+                throw new SQLException("Connection has already been returned to the pool", "08003");
+            }
+            if (args != null && args.length == 1 && method.getName().equals("prepareStatement")) {
+                // The cache times its statements itself
+                return owner.statements.prepare((String) args[0], (Connection) proxy);
+            }
+            Object result;
+            try {
+                result = method.invoke(owner.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            // Time every other statement handed out, under the SQL it was prepared with
+            switch (method.getName()) {
+                case "createStatement":
+                    return Metrics.timed((Statement) result, Statement.class, null);
+                case "prepareStatement":
+                    return Metrics.timed((PreparedStatement) result, PreparedStatement.class, (String) args[0]);
+                case "prepareCall":
+                    return Metrics.timed((CallableStatement) result, CallableStatement.class, (String) args[0]);
+                default:
+                    return result;
+            }
+        }
+    }
+}
@@ -1,71 +1,172 @@
 package sims.controller;
 
 import sims.model.Course;
+import sims.controller.BatchResult.Status;
+import sims.controller.EntityEventBus.Kind;
+import sims.controller.EntityEventBus.Topic;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Course Manager with Database operations
  */
+@SuppressWarnings("try") // the Metrics.Timer of each operation is only ever closed
 public class CourseManager implements Manager<Course> {
+
+    /** Shared by all CourseManager instances so every panel sees the same invalidations */
+    private static final EntityCache<Course> CACHE = new EntityCache<>(
+        Integer.getInteger("sims.cache.courses", 2_000), CourseManager::copy);
+
+    /** Course IDs and names for type-ahead, read on first use and then kept current by change events */
+    private static final PrefixIndex ID_INDEX = new PrefixIndex();
+    /** Full-text index, loaded and kept current together with ID_INDEX */
+    private static final TextIndex<Course> TEXT_INDEX = new TextIndex<>(Course::getCourseID,
+        CourseManager::copy,
+        TextIndex.Field.of("courseName", Course::getCourseName, 1));
+    private static volatile boolean indexesLoaded = false;
+    /** Guards the indexes' writers, so loadIndexes can replay what it missed */
+    private static final Object INDEX_WRITES = new Object();
+    /** Changes published while loadIndexes reads the table; null when no load is running */
+    private static List<EntityEventBus.Event<Course>> changesWhileLoading = null;
+
+    static {
+        EntityEventBus bus = EntityEventBus.shared();
+        CACHE.invalidateOn(bus, Topic.COURSES);
+        bus.subscribe(Topic.COURSES, Runnable::run, events -> {
+            synchronized (INDEX_WRITES) {
+                if (changesWhileLoading != null) {
+                    // Applied by loadIndexes once it has replaced the indexes
+                    changesWhileLoading.addAll(events);
+                } else if (!applyToIndexes(events)) {
+                    indexesLoaded = false;
+                }
+            }
+        });
+    }
+
+    /**
+     * Apply change events to the search indexes
+     * @return false if an event carries no row, so the indexes must be read again
+     */
+    private static boolean applyToIndexes(List<EntityEventBus.Event<Course>> events) {
+        boolean complete = true;
+        for (EntityEventBus.Event<Course> e : events) {
+            switch (e.getKind()) {
+                case CREATED:
+                case UPDATED:
+                    if (e.getValue() == null) {
+                        complete = false;
+                        break;
+                    }
+                    ID_INDEX.put(e.getKey(), e.getValue().getCourseName());
+                    TEXT_INDEX.put(e.getValue());
+                    break;
+                case DELETED:
+                    ID_INDEX.remove(e.getKey());
+                    TEXT_INDEX.remove(e.getKey());
+                    break;
+                default:
+                    complete = false;
+                    break;
+            }
+        }
+        return complete;
+    }
+
+    /** Fields criteria may filter and sort courses on */
+    private static final Criteria.Table<Course> TABLE = new Criteria.Table<Course>("Courses",
+            rs -> new Course(rs.getString("courseID"), rs.getString("courseName"), rs.getDouble("credit")),
+            "courseID")
+        .column("courseID", Course::getCourseID, false)
+        .column("courseName", Course::getCourseName, false)
+        .column("credit", Course::getCredit, true);
+
+    private static final String INSERT_SQL =
+        "INSERT INTO Courses (courseID, courseName, credit) VALUES (?, ?, ?)";
+    private static final String UPDATE_SQL =
+        "UPDATE Courses SET courseName=?, credit=? WHERE courseID=?";
+
+    private int batchSize = BatchExecutor.DEFAULT_BATCH_SIZE;
     
     @Override
     public void add(Course c) {
-        if (search(c.getCourseID()) != null) {
-            System.out.println("Add failed! Course ID already exists: " + c.getCourseID());
-            return;
-        }
-        
-        String sql = "INSERT INTO Courses (courseID, courseName, credit) VALUES (?, ?, ?)";
-        try (PreparedStatement pstmt = DBHelper.prepareStatement(sql)) {
-            pstmt.setString(1, c.getCourseID());
-            pstmt.setString(2, c.getCourseName());
-            pstmt.setDouble(3, c.getCredit());
-            pstmt.executeUpdate();
-            System.out.println("Course added successfully: " + c);
-        } catch (SQLException e) {
-            System.err.println("Error adding course: " + e.getMessage());
+        try (Metrics.Timer timer = Metrics.time("CourseManager.add")) {
+            try (Connection conn = DBHelper.borrowConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(INSERT_SQL)) {
+                bindInsert(pstmt, c);
+                pstmt.executeUpdate();
+                EntityEventBus.shared().publish(Topic.COURSES, Kind.CREATED, c.getCourseID(), c);
+                Log.debug(() -> "Course added successfully: " + c);
+            } catch (SQLException e) {
+                if ("23505".equals(e.getSQLState())) {
+                    Log.warn("Add failed! Course ID already exists: " + c.getCourseID());
+                } else {
+                    Log.error("Error adding course: " + e.getMessage());
+                }
+            }
         }
     }
 
     @Override
     public void delete(String id) {
-        String sql = "DELETE FROM Courses WHERE courseID = ?";
-        try (PreparedStatement pstmt = DBHelper.prepareStatement(sql)) {
-            pstmt.setString(1, id);
-            int rows = pstmt.executeUpdate();
-            if (rows > 0) {
-                System.out.println("Deleted successfully! CourseID: " + id);
-            } else {
-                System.out.println("Delete failed! Course ID not found: " + id);
+        try (Metrics.Timer timer = Metrics.time("CourseManager.delete")) {
+            String sql = "DELETE FROM Courses WHERE courseID = ?";
+            try (Connection conn = DBHelper.borrowConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, id);
+                int rows = pstmt.executeUpdate();
+                if (rows > 0) {
+                    EntityEventBus.shared().publish(Topic.COURSES, Kind.DELETED, id, null);
+                    // ON DELETE CASCADE removed their grades as well
+                    EntityEventBus.shared().invalidate(Topic.GRADES);
+                    Log.debug(() -> "Deleted successfully! CourseID: " + id);
+                } else {
+                    Log.warn("Delete failed! Course ID not found: " + id);
+                }
+            } catch (SQLException e) {
+                Log.error("Error deleting course: " + e.getMessage());
             }
-        } catch (SQLException e) {
-            System.err.println("Error deleting course: " + e.getMessage());
         }
     }
 
     @Override
     public void update(Course c) {
-        String sql = "UPDATE Courses SET courseName=?, credit=? WHERE courseID=?";
-        try (PreparedStatement pstmt = DBHelper.prepareStatement(sql)) {
-            pstmt.setString(1, c.getCourseName());
-            pstmt.setDouble(2, c.getCredit());
-            pstmt.setString(3, c.getCourseID());
-            int rows = pstmt.executeUpdate();
-            if (rows > 0) {
-                System.out.println("Updated successfully: " + c);
-            } else {
-                System.out.println("Update failed! Course ID not found: " + c.getCourseID());
+        try (Metrics.Timer timer = Metrics.time("CourseManager.update")) {
+            try (Connection conn = DBHelper.borrowConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(UPDATE_SQL)) {
+                bindUpdate(pstmt, c);
+                int rows = pstmt.executeUpdate();
+                if (rows > 0) {
+                    EntityEventBus.shared().publish(Topic.COURSES, Kind.UPDATED, c.getCourseID(), c);
+                    Log.debug(() -> "Updated successfully: " + c);
+                } else {
+                    Log.warn("Update failed! Course ID not found: " + c.getCourseID());
+                }
+            } catch (SQLException e) {
+                Log.error("Error updating course: " + e.getMessage());
             }
-        } catch (SQLException e) {
-            System.err.println("Error updating course: " + e.getMessage());
         }
     }
 
     @Override
     public Course search(String id) {
+        try (Metrics.Timer timer = Metrics.time("CourseManager.search")) {
+            return CACHE.get(id, this::load);
+        }
+    }
+
+    /**
+     * Read one course from the database, bypassing the cache
+     */
+    private Course load(String id) {
         String sql = "SELECT * FROM Courses WHERE courseID = ?";
-        try (PreparedStatement pstmt = DBHelper.prepareStatement(sql)) {
+        try (Connection conn = DBHelper.borrowConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, id);
             ResultSet rs = pstmt.executeQuery();
             if (rs.next()) {
@@ -76,11 +177,77 @@ public class CourseManager implements Manager<Course> {
                 );
             }
         } catch (SQLException e) {
-            System.err.println("Error searching course: " + e.getMessage());
+            Log.error("Error searching course: " + e.getMessage());
         }
         return null;
     }
 
+    @Override
+    public BatchResult addAll(Collection<? extends Course> courses) {
+        try (Metrics.Timer timer = Metrics.time("CourseManager.addAll")) {
+            BatchResult result = BatchExecutor.execute(INSERT_SQL, courses, batchSize,
+                CourseManager::bindInsert, Course::getCourseID, Status.INSERTED, Status.FAILED);
+            EntityEventBus.shared().publish(Topic.COURSES, result, courses);
+            return result;
+        }
+    }
+
+    @Override
+    public BatchResult updateAll(Collection<? extends Course> courses) {
+        try (Metrics.Timer timer = Metrics.time("CourseManager.updateAll")) {
+            BatchResult result = BatchExecutor.execute(UPDATE_SQL, courses, batchSize,
+                CourseManager::bindUpdate, Course::getCourseID, Status.UPDATED, Status.NOT_FOUND);
+            EntityEventBus.shared().publish(Topic.COURSES, result, courses);
+            return result;
+        }
+    }
+
+    /**
+     * Insert the course, or update it if it already exists
+     * @return INSERTED, UPDATED or FAILED
+     */
+    @Override
+    public Status upsert(Course c) {
+        BatchResult.RowOutcome outcome = upsertAll(Collections.singletonList(c)).getOutcomes().get(0);
+        if (outcome.getStatus() == Status.FAILED) {
+            Log.error("Error saving course: " + outcome.getMessage());
+        }
+        return outcome.getStatus();
+    }
+
+    @Override
+    public BatchResult upsertAll(Collection<? extends Course> courses) {
+        try (Metrics.Timer timer = Metrics.time("CourseManager.upsertAll")) {
+            BatchResult result = BatchExecutor.upsert(UPDATE_SQL, CourseManager::bindUpdate,
+                INSERT_SQL, CourseManager::bindInsert, courses, batchSize, Course::getCourseID);
+            EntityEventBus.shared().publish(Topic.COURSES, result, courses);
+            return result;
+        }
+    }
+
+    @Override
+    public BatchResult deleteAll(Collection<String> ids) {
+        try (Metrics.Timer timer = Metrics.time("CourseManager.deleteAll")) {
+            String sql = "DELETE FROM Courses WHERE courseID = ?";
+            BatchResult result = BatchExecutor.<String>execute(sql, ids, batchSize,
+                (pstmt, id) -> pstmt.setString(1, id),
+                id -> id, Status.DELETED, Status.NOT_FOUND);
+            EntityEventBus.shared().publish(Topic.COURSES, result, null);
+            if (result.getSucceeded() > 0) {
+                EntityEventBus.shared().invalidate(Topic.GRADES);
+            }
+            return result;
+        }
+    }
+
+    @Override
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.batchSize = batchSize;
+    }
+
     @Override
     public void displayAll() {
         ArrayList<Course> courses = getAllCourses();
@@ -99,21 +266,233 @@ public class CourseManager implements Manager<Course> {
      * Get all courses from database
      */
     public ArrayList<Course> getAllCourses() {
-        ArrayList<Course> courses = new ArrayList<>();
-        String sql = "SELECT * FROM Courses ORDER BY courseID";
-        try (Statement stmt = DBHelper.getConnection().createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+        try (Metrics.Timer timer = Metrics.time("CourseManager.getAllCourses")) {
+            ArrayList<Course> courses = new ArrayList<>();
+            String sql = "SELECT * FROM Courses ORDER BY courseID";
+            try (Connection conn = DBHelper.borrowConnection();
+                 Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery(sql)) {
+                while (rs.next()) {
+                    Course c = new Course(
+                        rs.getString("courseID"),
+                        rs.getString("courseName"),
+                        rs.getDouble("credit")
+                    );
+                    courses.add(c);
+                }
+            } catch (SQLException e) {
+                Log.error("Error retrieving courses: " + e.getMessage());
+            }
+            return courses;
+        }
+    }
+
+    /**
+     * Get the next page of courses in courseID order (keyset pagination)
+     * @param afterCourseID last courseID of the previous page, or null for the first page
+     * @param limit maximum number of courses to return
+     */
+    public ArrayList<Course> getCoursesAfter(String afterCourseID, int limit) {
+        try (Metrics.Timer timer = Metrics.time("CourseManager.getCoursesAfter")) {
+            String sql = afterCourseID == null
+                ? "SELECT * FROM Courses ORDER BY courseID FETCH FIRST ? ROWS ONLY"
+                : "SELECT * FROM Courses WHERE courseID > ? ORDER BY courseID FETCH FIRST ? ROWS ONLY";
+            ArrayList<Course> courses = new ArrayList<>();
+            try (Connection conn = DBHelper.borrowConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                int i = 1;
+                if (afterCourseID != null) {
+                    pstmt.setString(i++, afterCourseID);
+                }
+                pstmt.setInt(i, limit);
+                readCourses(pstmt, courses);
+            } catch (SQLException e) {
+                Log.error("Error retrieving courses: " + e.getMessage());
+            }
+            return courses;
+        }
+    }
+
+    /**
+     * Get a page of courses by position in courseID order
+     * @param offset number of courses to skip
+     * @param limit maximum number of courses to return
+     */
+    public ArrayList<Course> getCoursesPage(int offset, int limit) {
+        try (Metrics.Timer timer = Metrics.time("CourseManager.getCoursesPage")) {
+            String sql = "SELECT * FROM Courses ORDER BY courseID OFFSET ? ROWS FETCH NEXT ? ROWS ONLY";
+            ArrayList<Course> courses = new ArrayList<>();
+            try (Connection conn = DBHelper.borrowConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setInt(1, offset);
+                pstmt.setInt(2, limit);
+                readCourses(pstmt, courses);
+            } catch (SQLException e) {
+                Log.error("Error retrieving courses: " + e.getMessage());
+            }
+            return courses;
+        }
+    }
+
+    @Override
+    public Criteria<Course> criteria() {
+        return new Criteria<>(TABLE);
+    }
+
+    /**
+     * Get the courses matching the criteria, in its order
+     */
+    @Override
+    public ArrayList<Course> find(Criteria<Course> criteria) {
+        try (Metrics.Timer timer = Metrics.time("CourseManager.find")) {
+            return TABLE.find(criteria);
+        }
+    }
+
+    /**
+     * @return number of courses matching the criteria, ignoring its order and limits, or 0 if the query fails
+     */
+    @Override
+    public int count(Criteria<Course> criteria) {
+        try (Metrics.Timer timer = Metrics.time("CourseManager.count")) {
+            return TABLE.count(criteria);
+        }
+    }
+
+    /**
+     * @return number of courses, or 0 if the query fails
+     */
+    public int countCourses() {
+        try (Metrics.Timer timer = Metrics.time("CourseManager.countCourses")) {
+            return DBHelper.count("Courses");
+        }
+    }
+
+    private static void readCourses(PreparedStatement pstmt, ArrayList<Course> courses) throws SQLException {
+        try (ResultSet rs = pstmt.executeQuery()) {
             while (rs.next()) {
-                Course c = new Course(
+                courses.add(new Course(
                     rs.getString("courseID"),
                     rs.getString("courseName"),
                     rs.getDouble("credit")
-                );
-                courses.add(c);
+                ));
             }
-        } catch (SQLException e) {
-            System.err.println("Error retrieving courses: " + e.getMessage());
         }
-        return courses;
+    }
+
+    /**
+     * Get all course IDs in order, without loading the other columns
+     */
+    public ArrayList<String> getCourseIDs() {
+        try (Metrics.Timer timer = Metrics.time("CourseManager.getCourseIDs")) {
+            ArrayList<String> ids = new ArrayList<>();
+            try (Connection conn = DBHelper.borrowConnection();
+                 PreparedStatement pstmt = conn.prepareStatement("SELECT courseID FROM Courses ORDER BY courseID");
+                 ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getString(1));
+                }
+            } catch (SQLException e) {
+                Log.error("Error retrieving course IDs: " + e.getMessage());
+            }
+            return ids;
+        }
+    }
+
+    /**
+     * Get the type-ahead index of course IDs and names, reading it from the
+     * database on first use. Later changes are applied from change events.
+     */
+    public PrefixIndex getIdIndex() {
+        try (Metrics.Timer timer = Metrics.time("CourseManager.getIdIndex")) {
+            loadIndexes();
+            return ID_INDEX;
+        }
+    }
+
+    /**
+     * Full-text search over course names, tolerating prefixes and small typing mistakes
+     * @param text words to find, e.g. "li computer science"
+     * @param limit maximum number of results
+     * @return matching courses, best match first
+     */
+    public ArrayList<Course> searchByText(String text, int limit) {
+        try (Metrics.Timer timer = Metrics.time("CourseManager.searchByText")) {
+            loadIndexes();
+            ArrayList<Course> found = new ArrayList<>();
+            for (TextIndex.Hit<Course> hit : TEXT_INDEX.search(text, limit)) {
+                found.add(hit.getValue());
+            }
+            return found;
+        }
+    }
+
+    /**
+     * Read the search indexes from the database unless they are current
+     */
+    private static void loadIndexes() {
+        if (indexesLoaded) {
+            return;
+        }
+        synchronized (ID_INDEX) {
+            // Read again if a replayed change carries no row
+            while (!indexesLoaded) {
+                synchronized (INDEX_WRITES) {
+                    changesWhileLoading = new ArrayList<>();
+                }
+                Map<String, String> names = new HashMap<>();
+                ArrayList<Course> rows = new ArrayList<>();
+                boolean read = false;
+                try (Connection conn = DBHelper.borrowConnection();
+                     PreparedStatement pstmt = conn.prepareStatement("SELECT * FROM Courses");
+                     ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        Course row = new Course(rs.getString("courseID"), rs.getString("courseName"), rs.getDouble("credit"));
+                        rows.add(row);
+                        names.put(row.getCourseID(), row.getCourseName());
+                    }
+                    read = true;
+                } catch (SQLException e) {
+                    Log.error("✗ Error loading course search index: " + e.getMessage());
+                } finally {
+                    synchronized (INDEX_WRITES) {
+                        if (read) {
+                            ID_INDEX.replaceAll(names);
+                            TEXT_INDEX.replaceAll(rows);
+                        }
+                        // Changes committed while reading may be missing from the rows
+                        List<EntityEventBus.Event<Course>> missed = changesWhileLoading;
+                        changesWhileLoading = null;
+                        indexesLoaded = applyToIndexes(missed) && read;
+                    }
+                }
+                if (!read) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the shared search cache, for hit-rate statistics and sizing
+     */
+    public static EntityCache<Course> getCache() {
+        return CACHE;
+    }
+
+    private static Course copy(Course c) {
+        return new Course(c.getCourseID(), c.getCourseName(), c.getCredit());
+    }
+
+    private static void bindInsert(PreparedStatement pstmt, Course c) throws SQLException {
+        pstmt.setString(1, c.getCourseID());
+        pstmt.setString(2, c.getCourseName());
+        pstmt.setDouble(3, c.getCredit());
+    }
+
+    private static void bindUpdate(PreparedStatement pstmt, Course c) throws SQLException {
+        pstmt.setString(1, c.getCourseName());
+        pstmt.setDouble(2, c.getCredit());
+        pstmt.setString(3, c.getCourseID());
     }
 }
\ No newline at end of file
@@ -0,0 +1,625 @@
+package sims.controller;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Specification of a query on one table: conditions, sort order and limits,
+ * combined into a single parameterized SELECT. Get one from a manager's
+ * criteria() method and pass it back to its find() and count():
+ *
+ * <pre>
+ * Criteria&lt;Grade&gt; c = gradeManager.criteria()
+ *     .eq("courseID", "CS101").between("score", 60, 90).eq("major", "Physics")
+ *     .orderBy("score", false).limit(50);
+ * List&lt;Grade&gt; grades = gradeManager.find(c);
+ * </pre>
+ *
+ * Conditions are ANDed. Values are always bound as parameters, never pasted
+ * into the SQL, so the SQL text depends only on which fields and operators
+ * are used and the pooled connection's statement cache reuses the compiled
+ * plan. Conditions compare columns directly, without functions around
+ * them, and startsWith becomes LIKE 'prefix%', so Derby can use the
+ * indexes on the filtered and sorted columns.
+ *
+ * Rows are always ordered in full: the primary key follows the requested
+ * sort columns. That makes {@link #after} keyset paging exact.
+ *
+ * Field names are checked against the table when they are added; an
+ * unknown field throws IllegalArgumentException.
+ */
+public final class Criteria<T> {
+
+    /**
+     * Comparison of a field with its values
+     */
+    public enum Op {
+        EQ("="), NE("<>"), LT("<"), LE("<="), GT(">"), GE(">="),
+        /** Text starts with the value */
+        STARTS_WITH("LIKE"),
+        /** Equals one of the values */
+        IN("IN"),
+        IS_NULL("IS NULL");
+
+        private final String sql;
+
+        Op(String sql) {
+            this.sql = sql;
+        }
+    }
+
+    /**
+     * One condition on one field
+     */
+    public static final class Condition {
+        private final String field;
+        private final Op op;
+        private final List<Object> values;
+
+        Condition(String field, Op op, List<Object> values) {
+            this.field = field;
+            this.op = op;
+            this.values = values;
+        }
+
+        public String getField() {
+            return field;
+        }
+
+        public Op getOp() {
+            return op;
+        }
+
+        public List<Object> getValues() {
+            return values;
+        }
+
+        @Override
+        public String toString() {
+            return field + " " + op + " " + values;
+        }
+    }
+
+    /**
+     * One sort column
+     */
+    public static final class Order {
+        private final String field;
+        private final boolean ascending;
+
+        Order(String field, boolean ascending) {
+            this.field = field;
+            this.ascending = ascending;
+        }
+
+        public String getField() {
+            return field;
+        }
+
+        public boolean isAscending() {
+            return ascending;
+        }
+
+        @Override
+        public String toString() {
+            return field + (ascending ? " ASC" : " DESC");
+        }
+    }
+
+    private final Table<T> table;
+    private final List<Condition> conditions = new ArrayList<>();
+    private final List<Order> orders = new ArrayList<>();
+    private T after;
+    private int offset = 0;
+    private int limit = -1;
+
+    Criteria(Table<T> table) {
+        this.table = table;
+    }
+
+    /**
+     * @return an independent copy, e.g. to add paging to a shared filter
+     */
+    public Criteria<T> copy() {
+        Criteria<T> c = new Criteria<>(table);
+        c.conditions.addAll(conditions);
+        c.orders.addAll(orders);
+        c.after = after;
+        c.offset = offset;
+        c.limit = limit;
+        return c;
+    }
+
+    public Criteria<T> eq(String field, Object value) {
+        return add(field, Op.EQ, value);
+    }
+
+    public Criteria<T> ne(String field, Object value) {
+        return add(field, Op.NE, value);
+    }
+
+    public Criteria<T> lt(String field, Object value) {
+        return add(field, Op.LT, value);
+    }
+
+    public Criteria<T> le(String field, Object value) {
+        return add(field, Op.LE, value);
+    }
+
+    public Criteria<T> gt(String field, Object value) {
+        return add(field, Op.GT, value);
+    }
+
+    public Criteria<T> ge(String field, Object value) {
+        return add(field, Op.GE, value);
+    }
+
+    /**
+     * Field between low and high, both inclusive
+     */
+    public Criteria<T> between(String field, Object low, Object high) {
+        return ge(field, low).le(field, high);
+    }
+
+    /**
+     * Text field starts with the prefix (case-sensitive, like the stored data)
+     */
+    public Criteria<T> startsWith(String field, String prefix) {
+        return add(field, Op.STARTS_WITH, prefix);
+    }
+
+    /**
+     * Field equals one of the values; no values matches no rows
+     */
+    public Criteria<T> in(String field, Collection<?> values) {
+        table.column(field);
+        conditions.add(new Condition(field, Op.IN, Collections.unmodifiableList(new ArrayList<>(values))));
+        return this;
+    }
+
+    public Criteria<T> isNull(String field) {
+        table.column(field);
+        conditions.add(new Condition(field, Op.IS_NULL, Collections.emptyList()));
+        return this;
+    }
+
+    /**
+     * Sort by the field, after any sort fields added before
+     */
+    public Criteria<T> orderBy(String field, boolean ascending) {
+        if (table.column(field).accessor == null) {
+            throw new IllegalArgumentException("Cannot sort " + table.name + " by " + field);
+        }
+        orders.add(new Order(field, ascending));
+        return this;
+    }
+
+    /**
+     * Only rows that sort after the given row (keyset paging); not combined with offset
+     * @param row last row of the previous page, or null to start at the beginning
+     */
+    public Criteria<T> after(T row) {
+        this.after = row;
+        return this;
+    }
+
+    /**
+     * Skip the first rows; prefer {@link #after}, which does not read the skipped rows
+     */
+    public Criteria<T> offset(int offset) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("offset must not be negative: " + offset);
+        }
+        this.offset = offset;
+        return this;
+    }
+
+    /**
+     * @param limit maximum number of rows, or -1 for all
+     */
+    public Criteria<T> limit(int limit) {
+        if (limit < -1) {
+            throw new IllegalArgumentException("limit must be -1 or more: " + limit);
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    public List<Condition> getConditions() {
+        return Collections.unmodifiableList(conditions);
+    }
+
+    /**
+     * @return the requested sort columns, without the primary key added at the end
+     */
+    public List<Order> getOrders() {
+        return Collections.unmodifiableList(orders);
+    }
+
+    @Override
+    public String toString() {
+        return table.name + " WHERE " + conditions + " ORDER BY " + orders
+            + (after == null ? "" : " AFTER " + table.keyOf(after))
+            + (offset > 0 ? " OFFSET " + offset : "") + (limit >= 0 ? " LIMIT " + limit : "");
+    }
+
+    private Criteria<T> add(String field, Op op, Object value) {
+        table.column(field);
+        if (value == null) {
+            throw new IllegalArgumentException("null value for " + field + "; use isNull");
+        }
+        conditions.add(new Condition(field, op, Collections.singletonList(value)));
+        return this;
+    }
+
+    boolean isFor(Table<?> t) {
+        return table == t;
+    }
+
+    /**
+     * @param keyset one of {@link #keysetParts()}, or null for no keyset
+     * @param fetch maximum number of rows, or -1 for all
+     * @return SELECT for the matching rows, with its parameters
+     */
+    Statement select(Statement keyset, int fetch) {
+        if (keyset != null && offset > 0) {
+            throw new IllegalStateException("offset cannot be combined with after");
+        }
+        StringBuilder sql = new StringBuilder("SELECT * FROM ").append(table.name);
+        List<Object> params = new ArrayList<>();
+        List<String> where = whereClauses(params);
+        if (keyset != null) {
+            where.add(keyset.sql);
+            params.addAll(keyset.params);
+        }
+        appendWhere(sql, where);
+        sql.append(" ORDER BY ");
+        List<Order> full = fullOrder();
+        for (int i = 0; i < full.size(); i++) {
+            Order o = full.get(i);
+            sql.append(i == 0 ? "" : ", ").append(table.column(o.field).name).append(o.ascending ? " ASC" : " DESC");
+        }
+        if (offset > 0) {
+            sql.append(" OFFSET ? ROWS");
+            params.add(offset);
+        }
+        if (fetch >= 0) {
+            sql.append(" FETCH NEXT ? ROWS ONLY");
+            params.add(fetch);
+        }
+        return new Statement(sql.toString(), params);
+    }
+
+    /**
+     * @return COUNT(*) of the matching rows, ignoring order, keyset and limits
+     */
+    Statement count() {
+        StringBuilder sql = new StringBuilder("SELECT COUNT(*) FROM ").append(table.name);
+        List<Object> params = new ArrayList<>();
+        appendWhere(sql, whereClauses(params));
+        return new Statement(sql.toString(), params);
+    }
+
+    private static void appendWhere(StringBuilder sql, List<String> where) {
+        for (int i = 0; i < where.size(); i++) {
+            sql.append(i == 0 ? " WHERE " : " AND ").append(where.get(i));
+        }
+    }
+
+    private List<String> whereClauses(List<Object> params) {
+        List<String> where = new ArrayList<>();
+        for (Condition c : conditions) {
+            Column<T> column = table.column(c.field);
+            String test;
+            switch (c.op) {
+                case IS_NULL:
+                    test = column.name + " IS NULL";
+                    break;
+                case IN:
+                    if (c.values.isEmpty()) {
+                        test = "1 = 0";
+                        break;
+                    }
+                    test = column.name + " IN (" + String.join(", ", Collections.nCopies(c.values.size(), "?")) + ")";
+                    params.addAll(c.values);
+                    break;
+                case STARTS_WITH:
+                    test = column.name + " LIKE ? ESCAPE '\\'";
+                    params.add(escapeLike(c.values.get(0).toString()) + "%");
+                    break;
+                default:
+                    test = column.name + " " + c.op.sql + " ?";
+                    params.add(c.values.get(0));
+                    break;
+            }
+            // A field of a related table becomes a subquery on that table's own indexes
+            where.add(column.lookup == null ? test : column.lookup + test + ")");
+        }
+        return where;
+    }
+
+    /**
+     * Sort columns followed by whichever primary key columns they do not
+     * already include, in the direction of the last sort column so that one
+     * index on (column, key) serves both directions
+     */
+    private List<Order> fullOrder() {
+        List<Order> full = new ArrayList<>(orders);
+        boolean ascending = orders.isEmpty() || orders.get(orders.size() - 1).ascending;
+        for (String key : table.key) {
+            boolean present = false;
+            for (Order o : orders) {
+                present |= o.field.equals(key);
+            }
+            if (!present) {
+                full.add(new Order(key, ascending));
+            }
+        }
+        return full;
+    }
+
+    /**
+     * Conditions for the rows after the keyset row, as parts to read one
+     * after the other. Each part starts with a plain range or IS NULL test
+     * on the first sort column, so Derby starts the index scan at the right
+     * place instead of testing every row. Derby sorts NULL after every value
+     * ascending and before every value descending, so a nullable first
+     * column needs a second part for the rows on the other side of the NULLs.
+     * @return the parts in order, possibly none; a single null without a keyset row
+     */
+    List<Statement> keysetParts() {
+        if (after == null) {
+            return Collections.singletonList(null);
+        }
+        List<Order> full = fullOrder();
+        Order first = full.get(0);
+        Column<T> column = table.column(first.field);
+        Object value = column.accessor.apply(after);
+        List<Object> restParams = new ArrayList<>();
+        String rest = rowsAfter(full, 1, restParams);
+        List<Statement> parts = new ArrayList<>();
+        String f = column.name;
+        if (value != null) {
+            List<Object> params = new ArrayList<>();
+            params.add(value);
+            String sql;
+            if (rest == null) {
+                sql = f + (first.ascending ? " > ?" : " < ?");
+            } else {
+                sql = f + (first.ascending ? " >= ?" : " <= ?") + " AND (" + f + (first.ascending ? " > ?" : " < ?")
+                    + " OR (" + f + " = ? AND " + rest + "))";
+                params.add(value);
+                params.add(value);
+                params.addAll(restParams);
+            }
+            parts.add(new Statement(sql, params));
+            if (first.ascending && column.nullable) {
+                parts.add(new Statement(f + " IS NULL", Collections.emptyList()));
+            }
+        } else {
+            if (rest != null) {
+                parts.add(new Statement(f + " IS NULL AND " + rest, restParams));
+            }
+            if (!first.ascending) {
+                parts.add(new Statement(f + " IS NOT NULL", Collections.emptyList()));
+            }
+        }
+        return parts;
+    }
+
+    /**
+     * Rows after the keyset row among those equal to it on the sort columns
+     * before from: (b > ?) OR (b = ? AND c > ?) OR ...
+     * @return the condition, or null if no such row can exist
+     */
+    private String rowsAfter(List<Order> full, int from, List<Object> params) {
+        List<String> alternatives = new ArrayList<>();
+        for (int i = from; i < full.size(); i++) {
+            List<String> terms = new ArrayList<>();
+            List<Object> termParams = new ArrayList<>();
+            for (int j = from; j < i; j++) {
+                Column<T> equal = table.column(full.get(j).field);
+                Object v = equal.accessor.apply(after);
+                if (v == null) {
+                    terms.add(equal.name + " IS NULL");
+                } else {
+                    terms.add(equal.name + " = ?");
+                    termParams.add(v);
+                }
+            }
+            Order o = full.get(i);
+            Column<T> column = table.column(o.field);
+            String f = column.name;
+            Object v = column.accessor.apply(after);
+            if (v == null) {
+                if (o.ascending) {
+                    continue; // Nothing sorts after NULL ascending
+                }
+                terms.add(f + " IS NOT NULL");
+            } else if (o.ascending) {
+                terms.add(column.nullable ? "(" + f + " > ? OR " + f + " IS NULL)" : f + " > ?");
+                termParams.add(v);
+            } else {
+                terms.add(f + " < ?");
+                termParams.add(v);
+            }
+            alternatives.add("(" + String.join(" AND ", terms) + ")");
+            params.addAll(termParams);
+        }
+        return alternatives.isEmpty() ? null : "(" + String.join(" OR ", alternatives) + ")";
+    }
+
+    private static String escapeLike(String s) {
+        return s.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    /**
+     * SQL text and the values of its parameters, in order
+     */
+    static final class Statement {
+        final String sql;
+        final List<Object> params;
+
+        Statement(String sql, List<Object> params) {
+            this.sql = sql;
+            this.params = params;
+        }
+
+        void bind(PreparedStatement pstmt) throws SQLException {
+            for (int i = 0; i < params.size(); i++) {
+                pstmt.setObject(i + 1, params.get(i));
+            }
+        }
+
+        @Override
+        public String toString() {
+            return sql + " " + params;
+        }
+    }
+
+    /**
+     * Reads one row of a result set
+     */
+    interface RowReader<T> {
+        T read(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * The fields of one table that criteria may use
+     */
+    static final class Table<T> {
+        final String name;
+        final List<String> key;
+        private final RowReader<T> reader;
+        private final Map<String, Column<T>> columns = new LinkedHashMap<>();
+
+        /**
+         * @param key primary key columns, which must also be added as columns
+         */
+        Table(String name, RowReader<T> reader, String... key) {
+            this.name = name;
+            this.reader = reader;
+            this.key = Collections.unmodifiableList(Arrays.asList(key));
+        }
+
+        /**
+         * A column of this table; it can be filtered and sorted on
+         * @param nullable whether the column may hold NULL
+         */
+        Table<T> column(String field, Function<T, Object> accessor, boolean nullable) {
+            return column(field, field, accessor, nullable);
+        }
+
+        /**
+         * A column whose name in SQL differs from the field name, e.g. a quoted reserved word
+         */
+        Table<T> column(String field, String sqlName, Function<T, Object> accessor, boolean nullable) {
+            columns.put(field, new Column<>(sqlName, accessor, nullable, null));
+            return this;
+        }
+
+        /**
+         * A column of a related table, reached by key; it can be filtered on but not sorted
+         */
+        Table<T> lookup(String field, String localKey, String otherTable, String otherKey) {
+            columns.put(field, new Column<>(field, null, true,
+                localKey + " IN (SELECT " + otherKey + " FROM " + otherTable + " WHERE "));
+            return this;
+        }
+
+        Column<T> column(String field) {
+            Column<T> c = columns.get(field);
+            if (c == null) {
+                throw new IllegalArgumentException("Unknown field of " + name + ": " + field);
+            }
+            return c;
+        }
+
+        String keyOf(T row) {
+            List<String> values = new ArrayList<>();
+            for (String k : key) {
+                values.add(String.valueOf(column(k).accessor.apply(row)));
+            }
+            return String.join("-", values);
+        }
+
+        /**
+         * @return the matching rows, or the rows read before an error
+         */
+        ArrayList<T> find(Criteria<T> criteria) {
+            check(criteria);
+            ArrayList<T> rows = new ArrayList<>();
+            try (Connection conn = DBHelper.borrowConnection()) {
+                for (Statement part : criteria.keysetParts()) {
+                    int fetch = criteria.limit < 0 ? -1 : criteria.limit - rows.size();
+                    if (fetch == 0) {
+                        break;
+                    }
+                    Statement st = criteria.select(part, fetch);
+                    try (PreparedStatement pstmt = conn.prepareStatement(st.sql)) {
+                        st.bind(pstmt);
+                        try (ResultSet rs = pstmt.executeQuery()) {
+                            while (rs.next()) {
+                                rows.add(reader.read(rs));
+                            }
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                Log.error("✗ Error querying " + name + ": " + e.getMessage());
+            }
+            return rows;
+        }
+
+        /**
+         * @return number of matching rows, or 0 if the query fails
+         */
+        int count(Criteria<T> criteria) {
+            check(criteria);
+            Statement st = criteria.count();
+            try (Connection conn = DBHelper.borrowConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(st.sql)) {
+                st.bind(pstmt);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return rs.next() ? rs.getInt(1) : 0;
+                }
+            } catch (SQLException e) {
+                Log.error("✗ Error counting " + name + ": " + e.getMessage());
+                return 0;
+            }
+        }
+
+        private void check(Criteria<T> criteria) {
+            if (!criteria.isFor(this)) {
+                throw new IllegalArgumentException("Criteria of " + criteria.table.name + " used on " + name);
+            }
+        }
+    }
+
+    private static final class Column<T> {
+        /** Name in SQL */
+        final String name;
+        /** Reads the field from a row; null for lookups, which cannot be sorted */
+        final Function<T, Object> accessor;
+        final boolean nullable;
+        /** Start of the subquery for a field of another table, else null */
+        final String lookup;
+
+        Column(String name, Function<T, Object> accessor, boolean nullable, String lookup) {
+            this.name = name;
+            this.accessor = accessor;
+            this.nullable = nullable;
+            this.lookup = lookup;
+        }
+    }
+}
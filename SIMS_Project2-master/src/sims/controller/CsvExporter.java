@@ -0,0 +1,102 @@
+package sims.controller;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams a whole table to CSV through a forward-only, read-only cursor.
+ * Rows go straight from the result set to a buffered (optionally gzip)
+ * stream, so memory use stays flat regardless of table size.
+ */
+public class CsvExporter {
+
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private int fetchSize = DEFAULT_FETCH_SIZE;
+
+    /**
+     * Set the number of rows the driver fetches per round trip
+     */
+    public CsvExporter setFetchSize(int fetchSize) {
+        if (fetchSize < 1) {
+            throw new IllegalArgumentException("Fetch size must be positive: " + fetchSize);
+        }
+        this.fetchSize = fetchSize;
+        return this;
+    }
+
+    /**
+     * Export a table to a file, gzip-compressed when the name ends with .gz
+     * @return number of rows written
+     */
+    public long export(CsvSchema<?> schema, Path file) throws IOException, SQLException {
+        boolean gzip = file.getFileName().toString().toLowerCase().endsWith(".gz");
+        try (OutputStream out = Files.newOutputStream(file)) {
+            return export(schema, out, gzip);
+        }
+    }
+
+    /**
+     * Export a table to a stream. The stream is flushed but not closed.
+     * @param gzip compress the output
+     * @return number of rows written
+     */
+    public long export(CsvSchema<?> schema, OutputStream out, boolean gzip) throws IOException, SQLException {
+        OutputStream sink = gzip
+                ? new GZIPOutputStream(new NonClosingStream(out), BUFFER_SIZE)
+                : new BufferedOutputStream(new NonClosingStream(out), BUFFER_SIZE);
+        long rows = 0;
+        try (Writer writer = new OutputStreamWriter(sink, StandardCharsets.UTF_8);
+             Connection conn = DBHelper.borrowConnection();
+             PreparedStatement pstmt = conn.prepareStatement(schema.getSelectSql(),
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            pstmt.setFetchSize(fetchSize);
+            writer.write(schema.getHeader());
+            writer.write('\n');
+            StringBuilder line = new StringBuilder(128);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    line.setLength(0);
+                    schema.appendRow(rs, line);
+                    line.append('\n');
+                    writer.append(line);
+                    rows++;
+                }
+            }
+        }
+        out.flush();
+        return rows;
+    }
+
+    /**
+     * Lets the compressor/buffer be closed (to write trailers) without closing the caller's stream
+     */
+    private static final class NonClosingStream extends FilterOutputStream {
+        NonClosingStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
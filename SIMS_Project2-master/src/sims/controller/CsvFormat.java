@@ -0,0 +1,185 @@
+package sims.controller;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal CSV line codec for the entity formats used by toString().
+ * Plain values are written unquoted, so a row for a simple record is
+ * identical to its toString(); values containing commas or quotes are
+ * quoted with doubled quotes. A quoted value may contain line breaks, so
+ * one record can span several lines; {@link RecordReader} reads it whole.
+ */
+public final class CsvFormat {
+
+    private CsvFormat() {
+    }
+
+    /**
+     * Reads CSV records one at a time. Line breaks inside a quoted value are
+     * kept as they are; the others end the record and may be LF, CRLF or CR.
+     * Quotes are recognised the way {@link #parseLine} does, so the text of
+     * a record parses to exactly the fields that were written.
+     */
+    public static final class RecordReader {
+        private final Reader in;
+        private final StringBuilder record = new StringBuilder(128);
+        /** Lines started so far */
+        private long lines = 0;
+        private long recordLine = 0;
+        /** Next character, read ahead after a CR; -2 when there is none */
+        private int ahead = -2;
+
+        public RecordReader(Reader in) {
+            this.in = in instanceof BufferedReader ? in : new BufferedReader(in, 1 << 16);
+        }
+
+        /**
+         * @return the next record without its terminator, or null at the end of input.
+         *         An unterminated quoted value runs to the end of input.
+         */
+        public String next() throws IOException {
+            int ch = read();
+            if (ch < 0) {
+                return null;
+            }
+            recordLine = ++lines;
+            record.setLength(0);
+            boolean quoted = false;
+            boolean fieldStart = true;
+            boolean closed = false; // A quoted value just ended; a quote next is an escaped quote
+            for (; ch >= 0; ch = read()) {
+                if (quoted) {
+                    if (ch == '"') {
+                        quoted = false;
+                        closed = true;
+                    } else if (ch == '\n' || ch == '\r' && peek() != '\n') {
+                        lines++;
+                    }
+                } else if (ch == '\n') {
+                    break;
+                } else if (ch == '\r') {
+                    if (peek() == '\n') {
+                        ahead = -2;
+                    }
+                    break;
+                } else {
+                    quoted = ch == '"' && (fieldStart || closed);
+                    fieldStart = ch == ',';
+                    closed = false;
+                }
+                record.append((char) ch);
+            }
+            return record.toString();
+        }
+
+        /**
+         * @return 1-based line on which the record last returned by {@link #next} starts
+         */
+        public long getLineNumber() {
+            return recordLine;
+        }
+
+        private int read() throws IOException {
+            if (ahead != -2) {
+                int ch = ahead;
+                ahead = -2;
+                return ch;
+            }
+            return in.read();
+        }
+
+        private int peek() throws IOException {
+            if (ahead == -2) {
+                ahead = in.read();
+            }
+            return ahead;
+        }
+    }
+
+    /**
+     * Split one CSV line into fields
+     * @param line record without its line terminator
+     * @return fields with quotes removed
+     * @throws IllegalArgumentException if a quoted field is not terminated
+     */
+    public static String[] parseLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder cur = new StringBuilder();
+        boolean quoted = false;
+        int i = 0;
+        while (i < line.length()) {
+            char ch = line.charAt(i);
+            if (quoted) {
+                if (ch == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        cur.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    cur.append(ch);
+                }
+            } else if (ch == '"' && cur.length() == 0) {
+                quoted = true;
+            } else if (ch == ',') {
+                fields.add(cur.toString());
+                cur.setLength(0);
+            } else {
+                cur.append(ch);
+            }
+            i++;
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(cur.toString());
+        return fields.toArray(new String[0]);
+    }
+
+    /**
+     * Join fields into one CSV line, quoting only where needed
+     */
+    public static String formatLine(String... fields) {
+        StringBuilder sb = new StringBuilder();
+        appendLine(sb, fields);
+        return sb.toString();
+    }
+
+    /**
+     * Append fields as one CSV line (without terminator) to sb
+     */
+    public static void appendLine(StringBuilder sb, String... fields) {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            appendField(sb, fields[i]);
+        }
+    }
+
+    private static void appendField(StringBuilder sb, String value) {
+        if (value == null) {
+            return;
+        }
+        boolean needsQuotes = value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+        if (!needsQuotes) {
+            sb.append(value);
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch == '"') {
+                sb.append('"');
+            }
+            sb.append(ch);
+        }
+        sb.append('"');
+    }
+}
@@ -0,0 +1,192 @@
+package sims.controller;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Streaming CSV importer.
+ * The calling thread reads the file and hands chunks of records to a worker
+ * pool; a record is one line unless a quoted value spans several. Each
+ * worker parses and validates its chunk and writes the valid rows with
+ * {@link Manager#addAll}. At most two chunks per worker are in flight, so
+ * memory use does not grow with the file size.
+ */
+public class CsvImporter<T> {
+
+    /** Rejected rows kept in the report; further rejections are only counted */
+    private static final int MAX_REPORTED_REJECTIONS = 1000;
+
+    private final Manager<T> manager;
+    private final CsvSchema<T> schema;
+    private int workers = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    private int chunkSize = BatchExecutor.DEFAULT_BATCH_SIZE;
+
+    public CsvImporter(Manager<T> manager, CsvSchema<T> schema) {
+        this.manager = manager;
+        this.schema = schema;
+    }
+
+    /**
+     * Set the number of parse/write worker threads
+     */
+    public CsvImporter<T> setWorkers(int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("Workers must be positive: " + workers);
+        }
+        this.workers = workers;
+        return this;
+    }
+
+    /**
+     * Set the number of records per chunk; each chunk is one addAll call
+     */
+    public CsvImporter<T> setChunkSize(int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    /**
+     * Import a UTF-8 CSV file
+     */
+    public ImportReport importFile(Path file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return importFrom(reader);
+        }
+    }
+
+    /**
+     * Import CSV rows from a reader. A first record equal to the schema header is skipped.
+     */
+    public ImportReport importFrom(Reader source) throws IOException {
+        long started = System.nanoTime();
+        AtomicLong rowsRead = new AtomicLong();
+        AtomicLong imported = new AtomicLong();
+        AtomicLong rejected = new AtomicLong();
+        List<ImportReport.Rejection> rejections = Collections.synchronizedList(new ArrayList<>());
+        AtomicReference<RuntimeException> workerError = new AtomicReference<>();
+
+        AtomicInteger threadNo = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(workers, r -> {
+            Thread t = new Thread(r, "sims-import-" + threadNo.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        Semaphore inFlight = new Semaphore(workers * 2);
+
+        CsvFormat.RecordReader reader = new CsvFormat.RecordReader(source);
+        try {
+            String record;
+            List<String> chunk = new ArrayList<>(chunkSize);
+            long[] lineNos = new long[chunkSize];
+            while ((record = reader.next()) != null && workerError.get() == null) {
+                if (reader.getLineNumber() == 1 && schema.isHeader(record)) {
+                    continue;
+                }
+                lineNos[chunk.size()] = reader.getLineNumber();
+                chunk.add(record);
+                if (chunk.size() == chunkSize) {
+                    submit(pool, inFlight, chunk, lineNos, rowsRead, imported, rejected, rejections, workerError);
+                    chunk = new ArrayList<>(chunkSize);
+                    lineNos = new long[chunkSize];
+                }
+            }
+            if (!chunk.isEmpty()) {
+                submit(pool, inFlight, chunk, lineNos, rowsRead, imported, rejected, rejections, workerError);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted", e);
+        } finally {
+            pool.shutdown();
+            try {
+                pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                pool.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (workerError.get() != null) {
+            throw workerError.get();
+        }
+
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        return new ImportReport(schema.getTable(), rowsRead.get(), imported.get(), rejected.get(),
+                elapsed, rejections);
+    }
+
+    private void submit(ExecutorService pool, Semaphore inFlight, List<String> records, long[] lineNos,
+                        AtomicLong rowsRead, AtomicLong imported, AtomicLong rejected,
+                        List<ImportReport.Rejection> rejections,
+                        AtomicReference<RuntimeException> workerError) throws InterruptedException {
+        inFlight.acquire();
+        pool.execute(() -> {
+            try {
+                processChunk(records, lineNos, rowsRead, imported, rejected, rejections);
+            } catch (RuntimeException e) {
+                workerError.compareAndSet(null, e);
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    /**
+     * Parse, validate and write one chunk; runs on a worker thread
+     * @param lineNos line each record starts on
+     */
+    private void processChunk(List<String> records, long[] lineNos, AtomicLong rowsRead,
+                              AtomicLong imported, AtomicLong rejected,
+                              List<ImportReport.Rejection> rejections) {
+        List<T> valid = new ArrayList<>(records.size());
+        int[] validRecords = new int[records.size()];
+        for (int i = 0; i < records.size(); i++) {
+            String record = records.get(i);
+            if (record.trim().isEmpty()) {
+                continue;
+            }
+            rowsRead.incrementAndGet();
+            try {
+                validRecords[valid.size()] = i;
+                valid.add(schema.parse(record));
+            } catch (IllegalArgumentException e) {
+                reject(rejected, rejections, lineNos[i], e.getMessage(), record);
+            }
+        }
+        if (valid.isEmpty()) {
+            return;
+        }
+
+        BatchResult result = manager.addAll(valid);
+        imported.addAndGet(result.getSucceeded());
+        for (BatchResult.RowOutcome o : result.getFailures()) {
+            int i = validRecords[o.getIndex()];
+            reject(rejected, rejections, lineNos[i],
+                    o.getStatus() + (o.getMessage() == null ? "" : ": " + o.getMessage()),
+                    records.get(i));
+        }
+    }
+
+    private static void reject(AtomicLong rejected, List<ImportReport.Rejection> rejections,
+                               long lineNo, String reason, String line) {
+        rejected.incrementAndGet();
+        if (rejections.size() < MAX_REPORTED_REJECTIONS) {
+            rejections.add(new ImportReport.Rejection(lineNo, reason, line));
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package sims.controller;
+
+import sims.model.Course;
+import sims.model.Grade;
+import sims.model.Student;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.function.Function;
+
+/**
+ * Column layout of an entity in CSV files.
+ * The layouts follow Student.toString(), Course.toString() and Grade.toString(),
+ * and the headers printed by the managers' displayAll().
+ */
+public final class CsvSchema<T> {
+
+    public static final CsvSchema<Student> STUDENTS = new CsvSchema<>(
+        "Students", "StudentID,Name,Gender,Major,Year",
+        "stuID, name, gender, major, \"YEAR\"", "stuID", "SSSSS",
+        f -> new Student(
+            required(f[0], "StudentID", 20),
+            required(f[1], "Name", 50),
+            optional(f[2], "Gender", 10),
+            optional(f[3], "Major", 50),
+            optional(f[4], "Year", 10)),
+        s -> new String[]{s.getStuID(), s.getName(), s.getGender(), s.getMajor(), s.getYear()});
+
+    public static final CsvSchema<Course> COURSES = new CsvSchema<>(
+        "Courses", "CourseID,CourseName,Credit",
+        "courseID, courseName, credit", "courseID", "SSD",
+        f -> new Course(
+            required(f[0], "CourseID", 20),
+            required(f[1], "CourseName", 100),
+            positive(number(f[2], "Credit"), "Credit")),
+        c -> new String[]{c.getCourseID(), c.getCourseName(), String.valueOf(c.getCredit())});
+
+    public static final CsvSchema<Grade> GRADES = new CsvSchema<>(
+        "Grades", "StudentID,CourseID,Score",
+        "stuID, courseID, score", "stuID, courseID", "SSD",
+        f -> new Grade(
+            required(f[0], "StudentID", 20),
+            required(f[1], "CourseID", 20),
+            number(f[2], "Score")),
+        g -> new String[]{g.getStuID(), g.getCourseID(), String.valueOf(g.getScore())});
+
+    private final String table;
+    private final String header;
+    private final String selectSql;
+    private final String columnTypes;
+    private final int columnCount;
+    private final Function<String[], T> parser;
+    private final Function<T, String[]> formatter;
+
+    /**
+     * @param columns table columns in CSV order
+     * @param orderBy primary key columns, so exports come out in key order
+     * @param columnTypes one letter per column: S for VARCHAR, D for DOUBLE
+     */
+    private CsvSchema(String table, String header, String columns, String orderBy, String columnTypes,
+                      Function<String[], T> parser, Function<T, String[]> formatter) {
+        this.table = table;
+        this.header = header;
+        this.selectSql = "SELECT " + columns + " FROM " + table + " ORDER BY " + orderBy;
+        this.columnTypes = columnTypes;
+        this.columnCount = columnTypes.length();
+        this.parser = parser;
+        this.formatter = formatter;
+    }
+
+    /**
+     * @return database table the rows belong to
+     */
+    public String getTable() {
+        return table;
+    }
+
+    public String getHeader() {
+        return header;
+    }
+
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    /**
+     * @return true if line is this schema's header row
+     */
+    public boolean isHeader(String line) {
+        return line.replace(" ", "").equalsIgnoreCase(header);
+    }
+
+    /**
+     * Parse and validate one CSV line
+     * @throws IllegalArgumentException describing why the row is rejected
+     */
+    public T parse(String line) {
+        String[] fields = CsvFormat.parseLine(line);
+        if (fields.length != columnCount) {
+            throw new IllegalArgumentException("Expected " + columnCount + " columns but found " + fields.length);
+        }
+        return parser.apply(fields);
+    }
+
+    /**
+     * Format an entity as one CSV line
+     */
+    public String format(T item) {
+        return CsvFormat.formatLine(formatter.apply(item));
+    }
+
+    /**
+     * @return SELECT of all rows in CSV column order
+     */
+    String getSelectSql() {
+        return selectSql;
+    }
+
+    /**
+     * Append the current row of rs (selected with getSelectSql) as one CSV line,
+     * without creating an entity object
+     */
+    void appendRow(ResultSet rs, StringBuilder sb) throws SQLException {
+        String[] fields = new String[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            if (columnTypes.charAt(i) == 'D') {
+                double d = rs.getDouble(i + 1);
+                fields[i] = rs.wasNull() ? null : String.valueOf(d);
+            } else {
+                fields[i] = rs.getString(i + 1);
+            }
+        }
+        CsvFormat.appendLine(sb, fields);
+    }
+
+    private static String required(String value, String column, int maxLength) {
+        String v = value.trim();
+        if (v.isEmpty()) {
+            throw new IllegalArgumentException(column + " cannot be empty");
+        }
+        return checkLength(v, column, maxLength);
+    }
+
+    private static String optional(String value, String column, int maxLength) {
+        String v = value.trim();
+        return v.isEmpty() ? null : checkLength(v, column, maxLength);
+    }
+
+    private static String checkLength(String v, String column, int maxLength) {
+        if (v.length() > maxLength) {
+            throw new IllegalArgumentException(column + " is longer than " + maxLength + " characters");
+        }
+        return v;
+    }
+
+    private static double number(String value, String column) {
+        try {
+            double d = Double.parseDouble(value.trim());
+            if (Double.isNaN(d) || Double.isInfinite(d)) {
+                throw new NumberFormatException();
+            }
+            return d;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(column + " must be a valid number: " + value);
+        }
+    }
+
+    private static double positive(double value, String column) {
+        if (value <= 0) {
+            throw new IllegalArgumentException(column + " must be a positive number");
+        }
+        return value;
+    }
+}
@@ -1,152 +1,153 @@
 package sims.controller;
 
+import java.io.IOException;
 import java.sql.*;
 
 /**
  * Database Helper class for Derby Embedded mode
  * Manages database connections and initialization
- * Implements Singleton pattern
+ * The schema is created and upgraded by {@link SchemaMigrator} on first use
+ * Connections come from a shared {@link ConnectionPool}; pool limits can be
+ * tuned with the system properties sims.pool.minIdle, sims.pool.maxSize,
+ * sims.pool.timeoutMs, sims.pool.leakMs and sims.pool.statementCacheSize
+ * Derby's storage settings come from the {@link DerbyProfile} named by sims.db.profile
+ * The database itself is named by sims.db.name, e.g. memory:simsTest for tests
  */
 public class DBHelper {
     // Database will be created in project directory
     private static final String DB_NAME = "simsDB";
-    private static final String DB_URL = "jdbc:derby:" + DB_NAME + ";create=true";
-    private static Connection connection = null;
+    private static volatile ConnectionPool pool = null;
 
     /**
-     * Get database connection (Singleton pattern)
-     * @return Connection object or null if failed
+     * Get the connection pool, starting Derby and creating tables on first use
+     * @return the shared pool
+     * @throws SQLException if the database cannot be opened
      */
-    public static Connection getConnection() {
-        try {
-            if (connection == null || connection.isClosed()) {
-                // Load Derby embedded driver
-                Class.forName("org.apache.derby.jdbc.EmbeddedDriver");
-                connection = DriverManager.getConnection(DB_URL);
-                System.out.println("✓ Database connected successfully!");
-                initializeTables();
-            }
-            return connection;
-        } catch (ClassNotFoundException e) {
-            System.err.println("✗ Derby driver not found: " + e.getMessage());
-            System.err.println("Please add Derby library (Java DB Driver) to project!");
-            return null;
-        } catch (SQLException e) {
-            System.err.println("✗ Database connection error: " + e.getMessage());
-            return null;
+    public static ConnectionPool getPool() throws SQLException {
+        ConnectionPool p = pool;
+        if (p != null) {
+            return p;
         }
-    }
-
-    /**
-     * Initialize database tables if they don't exist
-     */
-    private static void initializeTables() {
-        try (Statement stmt = connection.createStatement()) {
-            // Create Students table
-            try {
-                String createStudents = "CREATE TABLE Students (" +
-                        "stuID VARCHAR(20) PRIMARY KEY, " +
-                        "name VARCHAR(50) NOT NULL, " +
-                        "gender VARCHAR(10), " +
-                        "major VARCHAR(50), " +
-                        "year VARCHAR(10))";
-                stmt.execute(createStudents);
-                System.out.println("✓ Students table created");
-            } catch (SQLException e) {
-                if (!e.getSQLState().equals("X0Y32")) { // Table already exists
-                    throw e;
-                }
-            }
-
-            // Create Courses table
-            try {
-                String createCourses = "CREATE TABLE Courses (" +
-                        "courseID VARCHAR(20) PRIMARY KEY, " +
-                        "courseName VARCHAR(100) NOT NULL, " +
-                        "credit DOUBLE)";
-                stmt.execute(createCourses);
-                System.out.println("✓ Courses table created");
-            } catch (SQLException e) {
-                if (!e.getSQLState().equals("X0Y32")) {
-                    throw e;
+        synchronized (DBHelper.class) {
+            if (pool == null) {
+                long boot = StartupTimer.start();
+                applyProfile();
+                try {
+                    // Load Derby embedded driver; instantiating it boots the
+                    // engine again after an earlier closeConnection()
+                    Class.forName("org.apache.derby.jdbc.EmbeddedDriver").getDeclaredConstructor().newInstance();
+                } catch (ReflectiveOperationException e) {
+                    Log.error("✗ Derby driver not found: " + e.getMessage());
+                    Log.error("Please add Derby library (Java DB Driver) to project!");
+                    throw new SQLException("Derby driver not found", "08001", e);
                 }
-            }
-
-            // Create Grades table with foreign key constraints
-            try {
-                String createGrades = "CREATE TABLE Grades (" +
-                        "stuID VARCHAR(20), " +
-                        "courseID VARCHAR(20), " +
-                        "score DOUBLE, " +
-                        "PRIMARY KEY (stuID, courseID), " +
-                        "FOREIGN KEY (stuID) REFERENCES Students(stuID) ON DELETE CASCADE, " +
-                        "FOREIGN KEY (courseID) REFERENCES Courses(courseID) ON DELETE CASCADE)";
-                stmt.execute(createGrades);
-                System.out.println("✓ Grades table created");
-            } catch (SQLException e) {
-                if (!e.getSQLState().equals("X0Y32")) {
+                int maxSize = Integer.getInteger("sims.pool.maxSize",
+                        Math.max(4, Runtime.getRuntime().availableProcessors()));
+                int minIdle = Math.min(Integer.getInteger("sims.pool.minIdle", 1), maxSize);
+                String url = "jdbc:derby:" + System.getProperty("sims.db.name", DB_NAME) + ";create=true";
+                ConnectionPool created = new ConnectionPool(url, minIdle, maxSize,
+                        Long.getLong("sims.pool.timeoutMs", 10_000L),
+                        Long.getLong("sims.pool.leakMs", 60_000L),
+                        Integer.getInteger("sims.pool.statementCacheSize", 64));
+                Log.info("✓ Database connected successfully!");
+                StartupTimer.record("Database boot", boot);
+                long schemaCheck = StartupTimer.start();
+                try (Connection conn = created.borrow()) {
+                    initializeTables(conn);
+                    StartupTimer.record("Schema check", schemaCheck);
+                } catch (SQLException e) {
+                    Log.error("✗ Error migrating schema: " + e.getMessage());
+                    created.close();
                     throw e;
                 }
+                pool = created;
             }
-
-        } catch (SQLException e) {
-            System.err.println("✗ Error initializing tables: " + e.getMessage());
+            return pool;
         }
     }
 
     /**
-     * Execute a prepared statement
-     * @param query SQL query with parameters
-     * @return PreparedStatement object
-     * @throws SQLException if query fails
+     * Set the Derby storage properties of the selected {@link DerbyProfile};
+     * a broken profile is reported and Derby's defaults are used
      */
-    public static PreparedStatement prepareStatement(String query) throws SQLException {
-        return getConnection().prepareStatement(query);
+    private static void applyProfile() {
+        try {
+            DerbyProfile profile = DerbyProfile.fromSystemProperties();
+            int applied = profile.apply();
+            Log.info(() -> "✓ Derby profile " + profile.getName() + " (" + applied + " setting(s) applied)");
+        } catch (IOException | IllegalArgumentException e) {
+            Log.warn("✗ Ignoring Derby profile: " + e.getMessage());
+        }
     }
 
     /**
-     * Close database connection properly
+     * Borrow a connection from the pool. Closing it returns it to the pool.
+     * @return pooled connection
+     * @throws SQLException if no connection is available
      */
-    public static void closeConnection() {
+    public static Connection borrowConnection() throws SQLException {
         try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
-                System.out.println("✓ Database connection closed");
-                
-                // Shutdown Derby properly
-                try {
-                    DriverManager.getConnection("jdbc:derby:;shutdown=true");
-                } catch (SQLException e) {
-                    // Expected exception on shutdown
-                    if (e.getSQLState().equals("XJ015")) {
-                        System.out.println("✓ Derby shutdown successfully");
-                    }
-                }
-            }
+            return getPool().borrow();
         } catch (SQLException e) {
-            System.err.println("✗ Error closing connection: " + e.getMessage());
+            Metrics.failed();
+            throw e;
         }
     }
-        /**
-     * Execute a simple SQL SELECT query
-     * @param sql SQL query string
-     * @return ResultSet containing query results
-     * @throws SQLException if query fails
+
+    /**
+     * @return the pool if it has been opened, otherwise null; never opens it
      */
-    public static ResultSet executeQuery(String sql) throws SQLException {
-        Statement stmt = getConnection().createStatement();
-        return stmt.executeQuery(sql);
+    static ConnectionPool currentPool() {
+        return pool;
     }
 
     /**
-     * Execute an INSERT/UPDATE/DELETE SQL statement
-     * @param sql SQL update string
-     * @return number of affected rows
-     * @throws SQLException if execution fails
+     * Create or upgrade the tables with the versioned migrations in {@link SchemaMigrator}
      */
-    public static int executeUpdate(String sql) throws SQLException {
-        Statement stmt = getConnection().createStatement();
-        return stmt.executeUpdate(sql);
+    private static void initializeTables(Connection conn) throws SQLException {
+        SchemaMigrator migrator = new SchemaMigrator();
+        if (migrator.migrate(conn) == 0) {
+            Log.info(() -> "✓ Database schema is up to date (V" + migrator.getSchemaVersion() + ")");
+        }
     }
 
-}
\ No newline at end of file
+    /**
+     * Close the pool, then shut Derby down
+     */
+    public static synchronized void closeConnection() {
+        ConnectionPool p = pool;
+        if (p != null) {
+            pool = null;
+            if (p.getActiveCount() > 0) {
+                Log.error("✗ " + p.getActiveCount() + " pooled connection(s) still in use at shutdown");
+            }
+            p.close();
+            Log.info("✓ Database connection closed");
+
+            // Shutdown Derby properly
+            try {
+                DriverManager.getConnection("jdbc:derby:;shutdown=true");
+            } catch (SQLException e) {
+                // Expected exception on shutdown
+                if (e.getSQLState().equals("XJ015")) {
+                    Log.info("✓ Derby shutdown successfully");
+                }
+            }
+        }
+    }
+    /**
+     * Count the rows of a table
+     * @param table one of the application's table names
+     * @return row count, or 0 if the query fails
+     */
+    static int count(String table) {
+        try (Connection conn = borrowConnection();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT COUNT(*) FROM " + table);
+             ResultSet rs = pstmt.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        } catch (SQLException e) {
+            Log.error("✗ Error counting " + table + ": " + e.getMessage());
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package sims.controller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Named set of Derby storage settings: page cache size, page size, log
+ * buffer size and durability mode. Profiles are defined in
+ * derby-profiles.properties next to this class, optionally extended by the
+ * file named in sims.db.profileFile, and chosen with sims.db.profile.
+ *
+ * Derby reads these settings as system properties when it boots (the page
+ * size when a table is created), so a profile must be applied before the
+ * first connection is opened. An explicitly set derby.* property wins.
+ */
+public final class DerbyProfile {
+
+    public static final String DEFAULT = "default";
+    private static final String RESOURCE = "derby-profiles.properties";
+
+    private static final Map<String, String> SETTINGS = new LinkedHashMap<>();
+    static {
+        SETTINGS.put("pageCacheSize", "derby.storage.pageCacheSize");
+        SETTINGS.put("pageSize", "derby.storage.pageSize");
+        SETTINGS.put("logBufferSize", "derby.storage.logBufferSize");
+        SETTINGS.put("durability", "derby.system.durability");
+    }
+
+    private final String name;
+    private final String description;
+    private final Map<String, String> derbyProperties;
+
+    private DerbyProfile(String name, String description, Map<String, String> derbyProperties) {
+        this.name = name;
+        this.description = description;
+        this.derbyProperties = Collections.unmodifiableMap(derbyProperties);
+    }
+
+    /**
+     * Load the profile named by the sims.db.profile system property
+     * @throws IOException if the profile file cannot be read
+     * @throws IllegalArgumentException if the profile is unknown or has an invalid setting
+     */
+    public static DerbyProfile fromSystemProperties() throws IOException {
+        return load(System.getProperty("sims.db.profile", DEFAULT));
+    }
+
+    /**
+     * Load a profile by name
+     * @throws IOException if the profile file cannot be read
+     * @throws IllegalArgumentException if the profile is unknown or has an invalid setting
+     */
+    public static DerbyProfile load(String name) throws IOException {
+        Properties props = new Properties();
+        try (InputStream in = DerbyProfile.class.getResourceAsStream(RESOURCE)) {
+            if (in != null) {
+                props.load(in);
+            }
+        }
+        String file = System.getProperty("sims.db.profileFile");
+        if (file != null) {
+            try (Reader in = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+                props.load(in);
+            }
+        }
+
+        String prefix = name + ".";
+        boolean known = false;
+        Map<String, String> derby = new LinkedHashMap<>();
+        for (String key : props.stringPropertyNames()) {
+            if (!key.startsWith(prefix)) {
+                continue;
+            }
+            known = true;
+            String setting = key.substring(prefix.length());
+            if (setting.equals("description")) {
+                continue;
+            }
+            String derbyKey = SETTINGS.get(setting);
+            if (derbyKey == null) {
+                throw new IllegalArgumentException("Unknown setting " + key + "; expected one of " + SETTINGS.keySet());
+            }
+            derby.put(derbyKey, validate(key, setting, props.getProperty(key).trim()));
+        }
+        if (!known && !name.equals(DEFAULT)) {
+            throw new IllegalArgumentException("Unknown Derby profile: " + name);
+        }
+        return new DerbyProfile(name, props.getProperty(prefix + "description", ""), derby);
+    }
+
+    private static String validate(String key, String setting, String value) {
+        if (setting.equals("durability")) {
+            if (!value.equals("test")) {
+                throw new IllegalArgumentException(key + " must be \"test\" or absent: " + value);
+            }
+            return value;
+        }
+        int n;
+        try {
+            n = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(key + " must be a number: " + value);
+        }
+        boolean valid;
+        switch (setting) {
+            case "pageSize":
+                valid = n == 4096 || n == 8192 || n == 16384 || n == 32768;
+                break;
+            case "pageCacheSize":
+                valid = n >= 40;
+                break;
+            default:
+                valid = n >= 8192;
+                break;
+        }
+        if (!valid) {
+            throw new IllegalArgumentException(key + " is out of range: " + value);
+        }
+        return value;
+    }
+
+    /**
+     * Set the profile's derby.* system properties that are not already set
+     * @return number of properties set
+     */
+    public int apply() {
+        int applied = 0;
+        for (Map.Entry<String, String> e : derbyProperties.entrySet()) {
+            if (System.getProperty(e.getKey()) == null) {
+                System.setProperty(e.getKey(), e.getValue());
+                applied++;
+            }
+        }
+        if ("test".equals(System.getProperty("derby.system.durability"))) {
+            Log.warn("Derby durability=test: commits are not synced to disk; a crash can corrupt the database");
+        }
+        return applied;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * @return derby.* system properties of the profile
+     */
+    public Map<String, String> getDerbyProperties() {
+        return derbyProperties;
+    }
+
+    @Override
+    public String toString() {
+        return name + " " + derbyProperties;
+    }
+}
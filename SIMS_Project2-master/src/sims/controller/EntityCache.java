@@ -0,0 +1,144 @@
+package sims.controller;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Bounded read-through cache of entities keyed by primary key, with LRU eviction.
+ * Values are copied on the way in and out, so callers can mutate the
+ * beans they receive without corrupting the cache.
+ *
+ * A load that races with a write to the cache is not stored: if any
+ * invalidation happens while the loader runs, its result is returned to
+ * the caller but not cached, so a stale row cannot be re-inserted after
+ * an update or delete.
+ */
+public class EntityCache<V> {
+
+    private final int capacity;
+    private final UnaryOperator<V> copier;
+    private final LinkedHashMap<String, V> entries;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long invalidations = 0;
+
+    /**
+     * @param capacity maximum number of cached entities (0 disables caching)
+     * @param copier makes a defensive copy of an entity
+     */
+    public EntityCache(int capacity, UnaryOperator<V> copier) {
+        this.capacity = capacity;
+        this.copier = copier;
+        this.entries = new LinkedHashMap<String, V>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                if (size() > EntityCache.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Get an entity, loading and caching it on a miss
+     * @param key primary key
+     * @param loader reads the entity from the database; may return null
+     * @return a copy of the entity, or null if it does not exist
+     */
+    public V get(String key, Function<String, V> loader) {
+        long version;
+        synchronized (this) {
+            V cached = entries.get(key);
+            if (cached != null) {
+                hits++;
+                return copier.apply(cached);
+            }
+            misses++;
+            version = invalidations;
+        }
+
+        V loaded = loader.apply(key);
+        if (loaded == null || capacity <= 0) {
+            return loaded;
+        }
+        synchronized (this) {
+            if (version == invalidations) {
+                entries.put(key, copier.apply(loaded));
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Drop one entity after it was updated or deleted
+     */
+    public synchronized void invalidate(String key) {
+        invalidations++;
+        entries.remove(key);
+    }
+
+    /**
+     * Drop every cached entity
+     */
+    public synchronized void clear() {
+        invalidations++;
+        entries.clear();
+    }
+
+    /**
+     * Keep the cache in step with the change events of a table: the key of
+     * every created, updated or deleted row is dropped, and INVALIDATED
+     * clears everything. Events are handled on the publishing thread, so the
+     * entry is gone before the writing manager call returns.
+     */
+    public <T> EntityEventBus.Subscription invalidateOn(EntityEventBus bus, EntityEventBus.Topic<T> topic) {
+        return bus.subscribe(topic, Runnable::run, events -> {
+            for (EntityEventBus.Event<T> e : events) {
+                if (e.getKind() == EntityEventBus.Kind.INVALIDATED) {
+                    clear();
+                } else {
+                    invalidate(e.getKey());
+                }
+            }
+        });
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    /**
+     * @return fraction of lookups served from the cache, 0 if there were none
+     */
+    public synchronized double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("size=%d/%d, hits=%d, misses=%d, hitRate=%.1f%%, evictions=%d",
+                entries.size(), capacity, hits, misses, getHitRate() * 100, evictions);
+    }
+}
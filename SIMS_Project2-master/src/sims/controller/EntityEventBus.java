@@ -0,0 +1,283 @@
+package sims.controller;
+
+import sims.model.Course;
+import sims.model.Grade;
+import sims.model.Student;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * In-process publish/subscribe for changes to students, courses and grades.
+ * The managers publish an event for every row they create, update or delete,
+ * after the change is committed. Caches, panels and combo boxes subscribe
+ * and apply just those deltas instead of querying the tables again.
+ *
+ * Each subscriber names the executor its events are delivered on, e.g.
+ * SwingUtilities::invokeLater for Swing components, or Runnable::run to
+ * receive them synchronously on the publishing thread. Events that arrive
+ * before the previous delivery ran are coalesced per key: created and then
+ * deleted cancels out, several updates become one. When a subscriber has
+ * more than a fixed number of distinct keys pending, for example during an
+ * import, they collapse into a single INVALIDATED event and the subscriber
+ * reloads instead.
+ */
+public final class EntityEventBus {
+
+    /** Distinct keys per subscriber before pending deltas become one INVALIDATED event */
+    public static final int DEFAULT_MAX_DELTAS = 500;
+
+    private static final EntityEventBus SHARED = new EntityEventBus(DEFAULT_MAX_DELTAS);
+
+    /**
+     * What happened to a row
+     */
+    public enum Kind {
+        CREATED, UPDATED, DELETED,
+        /** Any number of rows may have changed; the key and value are null */
+        INVALIDATED
+    }
+
+    /**
+     * Event stream of one table; the type parameter is the row type
+     */
+    public static final class Topic<T> {
+        public static final Topic<Student> STUDENTS = new Topic<>("Students");
+        public static final Topic<Course> COURSES = new Topic<>("Courses");
+        public static final Topic<Grade> GRADES = new Topic<>("Grades");
+
+        private final String name;
+
+        private Topic(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * One change to one row
+     */
+    public static final class Event<T> {
+        private final Topic<T> topic;
+        private final Kind kind;
+        private final String key;
+        private final T value;
+
+        Event(Topic<T> topic, Kind kind, String key, T value) {
+            this.topic = topic;
+            this.kind = kind;
+            this.key = key;
+            this.value = value;
+        }
+
+        public Topic<T> getTopic() {
+            return topic;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * @return primary key in the form the manager's search() takes, or null for INVALIDATED
+         */
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * @return the row as written for CREATED and UPDATED, otherwise null
+         */
+        public T getValue() {
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return topic + " " + kind + (key == null ? "" : " " + key);
+        }
+    }
+
+    /**
+     * Handle to stop receiving events
+     */
+    public interface Subscription extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private final int maxDeltas;
+    private final List<Subscriber<?>> subscribers = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param maxDeltas distinct keys per subscriber before pending events collapse into INVALIDATED
+     */
+    public EntityEventBus(int maxDeltas) {
+        if (maxDeltas < 1) {
+            throw new IllegalArgumentException("maxDeltas must be positive: " + maxDeltas);
+        }
+        this.maxDeltas = maxDeltas;
+    }
+
+    /**
+     * @return the bus the managers publish on
+     */
+    public static EntityEventBus shared() {
+        return SHARED;
+    }
+
+    /**
+     * Receive the events of one table
+     * @param executor runs each delivery
+     * @param listener receives the coalesced events in publication order, never an empty list
+     */
+    public <T> Subscription subscribe(Topic<T> topic, Executor executor, Consumer<List<Event<T>>> listener) {
+        Subscriber<T> subscriber = new Subscriber<>(topic, executor, listener);
+        subscribers.add(subscriber);
+        return () -> subscribers.remove(subscriber);
+    }
+
+    /**
+     * Publish a change to one row
+     * @param value the row for CREATED and UPDATED, may be null otherwise
+     */
+    public <T> void publish(Topic<T> topic, Kind kind, String key, T value) {
+        offer(new Event<>(topic, kind, key, value));
+    }
+
+    /**
+     * Publish the rows a batch operation wrote
+     * @param items the submitted rows in submission order, or null if only keys were submitted
+     */
+    public <T> void publish(Topic<T> topic, BatchResult result, Collection<? extends T> items) {
+        Iterator<? extends T> values = items == null ? null : items.iterator();
+        for (BatchResult.RowOutcome o : result.getOutcomes()) {
+            T value = values == null ? null : values.next();
+            switch (o.getStatus()) {
+                case INSERTED:
+                    publish(topic, Kind.CREATED, o.getKey(), value);
+                    break;
+                case UPDATED:
+                    publish(topic, Kind.UPDATED, o.getKey(), value);
+                    break;
+                case DELETED:
+                    publish(topic, Kind.DELETED, o.getKey(), null);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Tell subscribers that any row of the table may have changed,
+     * e.g. after cascading deletes or a manual refresh
+     */
+    public void invalidate(Topic<?> topic) {
+        offer(new Event<>(topic, Kind.INVALIDATED, null, null));
+    }
+
+    private <T> void offer(Event<T> event) {
+        for (Subscriber<?> s : subscribers) {
+            if (s.topic == event.topic) {
+                @SuppressWarnings("unchecked")
+                Subscriber<T> subscriber = (Subscriber<T>) s;
+                subscriber.offer(event);
+            }
+        }
+    }
+
+    /**
+     * Pending events of one subscriber, delivered in one batch
+     */
+    private final class Subscriber<T> {
+        final Topic<T> topic;
+        private final Executor executor;
+        private final Consumer<List<Event<T>>> listener;
+        private final Map<String, Event<T>> pending = new LinkedHashMap<>();
+        private boolean invalidated = false;
+        private boolean scheduled = false;
+
+        Subscriber(Topic<T> topic, Executor executor, Consumer<List<Event<T>>> listener) {
+            this.topic = topic;
+            this.executor = executor;
+            this.listener = listener;
+        }
+
+        void offer(Event<T> event) {
+            synchronized (this) {
+                if (!invalidated) {
+                    if (event.kind == Kind.INVALIDATED
+                            || !pending.containsKey(event.key) && pending.size() >= maxDeltas) {
+                        pending.clear();
+                        invalidated = true;
+                    } else {
+                        Event<T> merged = merge(pending.get(event.key), event);
+                        if (merged == null) {
+                            pending.remove(event.key);
+                        } else {
+                            pending.put(event.key, merged);
+                        }
+                    }
+                }
+                if (scheduled) {
+                    return;
+                }
+                scheduled = true;
+            }
+            executor.execute(this::deliver);
+        }
+
+        private void deliver() {
+            List<Event<T>> batch;
+            synchronized (this) {
+                batch = invalidated
+                    ? Collections.singletonList(new Event<>(topic, Kind.INVALIDATED, null, null))
+                    : new ArrayList<>(pending.values());
+                pending.clear();
+                invalidated = false;
+                scheduled = false;
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                listener.accept(batch);
+            } catch (RuntimeException e) {
+                Log.error("✗ Error handling " + topic + " events: " + e);
+            }
+        }
+    }
+
+    /**
+     * Combine a pending event with a newer one for the same key
+     * @return the combined event, or null if the two cancel out
+     */
+    private static <T> Event<T> merge(Event<T> older, Event<T> newer) {
+        if (older == null) {
+            return newer;
+        }
+        if (older.kind == Kind.CREATED) {
+            if (newer.kind == Kind.DELETED) {
+                return null; // Never seen by the subscriber
+            }
+            return new Event<>(newer.topic, Kind.CREATED, newer.key, newer.value);
+        }
+        if (older.kind == Kind.DELETED && newer.kind == Kind.CREATED) {
+            // The subscriber still has the old row
+            return new Event<>(newer.topic, Kind.UPDATED, newer.key, newer.value);
+        }
+        return newer;
+    }
+}
@@ -0,0 +1,384 @@
+package sims.controller;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Read-optimized, columnar snapshot of the Grades table for analytics.
+ * Student and course IDs are dictionary-encoded to dense int codes and the
+ * rows are held in three parallel primitive arrays, grouped by student.
+ * A second index lists the rows of each course, so scans by student or by
+ * course touch only the matching rows and allocate nothing per row.
+ *
+ * A store is immutable and safe to share between threads. Refreshing a
+ * student or a course re-reads only that slice from the database and
+ * returns a new store; the old one stays valid for readers still using it.
+ * Codes are stable across refreshes. Grades without a score are left out.
+ */
+public final class GradeColumnStore {
+
+    /**
+     * Receives one grade of a scan
+     */
+    public interface ScoreVisitor {
+        void visit(int student, int course, double score);
+    }
+
+    private static final String SELECT_SQL = "SELECT stuID, courseID, score FROM Grades WHERE score IS NOT NULL";
+
+    private final Dictionary studentIDs;
+    private final Dictionary courseIDs;
+    private final int size;
+    private final int[] student;
+    private final int[] course;
+    private final double[] score;
+    /** Rows of student s are studentStart[s] .. studentStart[s + 1] - 1 */
+    private final int[] studentStart;
+    /** Rows of course c are courseRows[courseStart[c]] .. courseRows[courseStart[c + 1] - 1] */
+    private final int[] courseStart;
+    private final int[] courseRows;
+
+    private GradeColumnStore(Dictionary studentIDs, Dictionary courseIDs,
+                             int[] student, int[] course, double[] score, int size) {
+        this.studentIDs = studentIDs;
+        this.courseIDs = courseIDs;
+        this.size = size;
+        int students = studentIDs.size();
+        int courses = courseIDs.size();
+
+        // Counting sort by student code keeps each student's rows contiguous
+        this.studentStart = starts(student, size, students);
+        int[] next = Arrays.copyOf(studentStart, students);
+        this.student = new int[size];
+        this.course = new int[size];
+        this.score = new double[size];
+        for (int i = 0; i < size; i++) {
+            int row = next[student[i]]++;
+            this.student[row] = student[i];
+            this.course[row] = course[i];
+            this.score[row] = score[i];
+        }
+
+        this.courseStart = starts(this.course, size, courses);
+        this.courseRows = new int[size];
+        next = Arrays.copyOf(courseStart, courses);
+        for (int row = 0; row < size; row++) {
+            courseRows[next[this.course[row]]++] = row;
+        }
+    }
+
+    /**
+     * @return prefix sums of the number of rows per code, with codes + 1 entries
+     */
+    private static int[] starts(int[] codes, int size, int count) {
+        int[] start = new int[count + 1];
+        for (int i = 0; i < size; i++) {
+            start[codes[i] + 1]++;
+        }
+        for (int c = 0; c < count; c++) {
+            start[c + 1] += start[c];
+        }
+        return start;
+    }
+
+    /**
+     * Read the whole Grades table in one forward-only pass
+     */
+    public static GradeColumnStore load() throws SQLException {
+        Dictionary students = new Dictionary();
+        Dictionary courses = new Dictionary();
+        Columns rows = new Columns(1024);
+        try (Connection conn = DBHelper.borrowConnection();
+             PreparedStatement pstmt = conn.prepareStatement(SELECT_SQL + " ORDER BY stuID, courseID",
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            pstmt.setFetchSize(CsvExporter.DEFAULT_FETCH_SIZE);
+            rows.read(pstmt, students, courses);
+        }
+        return new GradeColumnStore(students, courses, rows.student, rows.course, rows.score, rows.size);
+    }
+
+    /**
+     * Re-read one student's grades, e.g. after they were edited
+     * @return a new store; this one is unchanged
+     */
+    public GradeColumnStore refreshStudent(String stuID) throws SQLException {
+        int code = studentIDs.encode(stuID);
+        Columns rows = new Columns(size + 16);
+        if (code < studentCount()) {
+            rows.copy(this, 0, studentStart[code]);
+            rows.copy(this, studentStart[code + 1], size);
+        } else {
+            rows.copy(this, 0, size);
+        }
+        readSlice(rows, SELECT_SQL + " AND stuID = ?", stuID);
+        return new GradeColumnStore(studentIDs, courseIDs, rows.student, rows.course, rows.score, rows.size);
+    }
+
+    /**
+     * Re-read one course's grades, e.g. after a bulk import for that course
+     * @return a new store; this one is unchanged
+     */
+    public GradeColumnStore refreshCourse(String courseID) throws SQLException {
+        int code = courseIDs.encode(courseID);
+        Columns rows = new Columns(size + 16);
+        for (int i = 0; i < size; i++) {
+            if (course[i] != code) {
+                rows.add(student[i], course[i], score[i]);
+            }
+        }
+        readSlice(rows, SELECT_SQL + " AND courseID = ?", courseID);
+        return new GradeColumnStore(studentIDs, courseIDs, rows.student, rows.course, rows.score, rows.size);
+    }
+
+    private void readSlice(Columns rows, String sql, String key) throws SQLException {
+        try (Connection conn = DBHelper.borrowConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, key);
+            rows.read(pstmt, studentIDs, courseIDs);
+        }
+    }
+
+    /**
+     * @return number of grades
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return number of student codes in this store (some may have no grades)
+     */
+    public int studentCount() {
+        return studentStart.length - 1;
+    }
+
+    /**
+     * @return number of course codes in this store (some may have no grades)
+     */
+    public int courseCount() {
+        return courseStart.length - 1;
+    }
+
+    /**
+     * @return code of a student, or -1 if the student has no grades in this store
+     */
+    public int studentCode(String stuID) {
+        int code = studentIDs.find(stuID);
+        return code < studentCount() ? code : -1;
+    }
+
+    /**
+     * @return code of a course, or -1 if the course has no grades in this store
+     */
+    public int courseCode(String courseID) {
+        int code = courseIDs.find(courseID);
+        return code < courseCount() ? code : -1;
+    }
+
+    public String studentID(int code) {
+        return studentIDs.decode(code);
+    }
+
+    public String courseID(int code) {
+        return courseIDs.decode(code);
+    }
+
+    /**
+     * Visit every grade of a student
+     */
+    public void forEachInStudent(int studentCode, ScoreVisitor visitor) {
+        if (studentCode < 0 || studentCode >= studentCount()) {
+            return;
+        }
+        for (int row = studentStart[studentCode], end = studentStart[studentCode + 1]; row < end; row++) {
+            visitor.visit(student[row], course[row], score[row]);
+        }
+    }
+
+    /**
+     * Visit every grade of a course
+     */
+    public void forEachInCourse(int courseCode, ScoreVisitor visitor) {
+        if (courseCode < 0 || courseCode >= courseCount()) {
+            return;
+        }
+        for (int i = courseStart[courseCode], end = courseStart[courseCode + 1]; i < end; i++) {
+            int row = courseRows[i];
+            visitor.visit(student[row], course[row], score[row]);
+        }
+    }
+
+    /**
+     * Visit every grade, grouped by student
+     */
+    public void forEach(ScoreVisitor visitor) {
+        for (int row = 0; row < size; row++) {
+            visitor.visit(student[row], course[row], score[row]);
+        }
+    }
+
+    public int countInCourse(int courseCode) {
+        return courseCode < 0 || courseCode >= courseCount() ? 0 : courseStart[courseCode + 1] - courseStart[courseCode];
+    }
+
+    public int countInStudent(int studentCode) {
+        return studentCode < 0 || studentCode >= studentCount() ? 0 : studentStart[studentCode + 1] - studentStart[studentCode];
+    }
+
+    /**
+     * @return mean score of a course, or NaN if it has no grades
+     */
+    public double courseAverage(int courseCode) {
+        int n = countInCourse(courseCode);
+        if (n == 0) {
+            return Double.NaN;
+        }
+        double sum = 0;
+        for (int i = courseStart[courseCode], end = courseStart[courseCode + 1]; i < end; i++) {
+            sum += score[courseRows[i]];
+        }
+        return sum / n;
+    }
+
+    /**
+     * @return unweighted mean score of a student, or NaN if they have no grades
+     */
+    public double studentAverage(int studentCode) {
+        int n = countInStudent(studentCode);
+        if (n == 0) {
+            return Double.NaN;
+        }
+        double sum = 0;
+        for (int row = studentStart[studentCode], end = studentStart[studentCode + 1]; row < end; row++) {
+            sum += score[row];
+        }
+        return sum / n;
+    }
+
+    /**
+     * Mean score of every course in one pass over the score column
+     * @return averages indexed by course code, NaN for courses without grades
+     */
+    public double[] averageByCourse() {
+        int courses = courseCount();
+        double[] sum = new double[courses];
+        for (int row = 0; row < size; row++) {
+            sum[course[row]] += score[row];
+        }
+        for (int c = 0; c < courses; c++) {
+            int n = courseStart[c + 1] - courseStart[c];
+            sum[c] = n == 0 ? Double.NaN : sum[c] / n;
+        }
+        return sum;
+    }
+
+    /**
+     * Count a course's scores in fixed-width buckets
+     * @param bucketWidth width of each bucket, e.g. 10 for 0-9, 10-19, ...
+     * @param buckets number of buckets; higher scores go into the last one
+     */
+    public int[] histogram(int courseCode, double bucketWidth, int buckets) {
+        int[] counts = new int[buckets];
+        if (courseCode < 0 || courseCode >= courseCount()) {
+            return counts;
+        }
+        for (int i = courseStart[courseCode], end = courseStart[courseCode + 1]; i < end; i++) {
+            int b = (int) (score[courseRows[i]] / bucketWidth);
+            counts[Math.max(0, Math.min(b, buckets - 1))]++;
+        }
+        return counts;
+    }
+
+    @Override
+    public String toString() {
+        return "GradeColumnStore[" + size + " grades, " + studentCount() + " students, "
+                + courseCount() + " courses]";
+    }
+
+    /**
+     * Append-only mapping between IDs and dense int codes, shared by every
+     * store derived from the same load() so codes never change
+     */
+    private static final class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private String[] ids = new String[64];
+
+        synchronized int encode(String id) {
+            Integer code = codes.get(id);
+            if (code != null) {
+                return code;
+            }
+            int next = codes.size();
+            if (next == ids.length) {
+                ids = Arrays.copyOf(ids, next * 2);
+            }
+            ids[next] = id;
+            codes.put(id, next);
+            return next;
+        }
+
+        synchronized int find(String id) {
+            Integer code = codes.get(id);
+            return code == null ? Integer.MAX_VALUE : code;
+        }
+
+        synchronized String decode(int code) {
+            if (code < 0 || code >= codes.size()) {
+                throw new IndexOutOfBoundsException("Unknown code: " + code);
+            }
+            return ids[code];
+        }
+
+        synchronized int size() {
+            return codes.size();
+        }
+    }
+
+    /**
+     * Growable parallel arrays used while building a store
+     */
+    private static final class Columns {
+        int[] student;
+        int[] course;
+        double[] score;
+        int size;
+
+        Columns(int capacity) {
+            student = new int[capacity];
+            course = new int[capacity];
+            score = new double[capacity];
+        }
+
+        void add(int s, int c, double v) {
+            if (size == student.length) {
+                int capacity = Math.max(16, size * 2);
+                student = Arrays.copyOf(student, capacity);
+                course = Arrays.copyOf(course, capacity);
+                score = Arrays.copyOf(score, capacity);
+            }
+            student[size] = s;
+            course[size] = c;
+            score[size] = v;
+            size++;
+        }
+
+        void copy(GradeColumnStore from, int start, int end) {
+            for (int row = start; row < end; row++) {
+                add(from.student[row], from.course[row], from.score[row]);
+            }
+        }
+
+        void read(PreparedStatement pstmt, Dictionary students, Dictionary courses) throws SQLException {
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    add(students.encode(rs.getString(1)), courses.encode(rs.getString(2)), rs.getDouble(3));
+                }
+            }
+        }
+    }
+}
@@ -1,108 +1,214 @@
 package sims.controller;
 
 import sims.model.Grade;
+import sims.model.GradeRecord;
+import sims.model.StringPool;
+import sims.controller.BatchResult.Status;
+import sims.controller.EntityEventBus.Kind;
+import sims.controller.EntityEventBus.Topic;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 
 /**
  * Grade Manager with Database operations
  */
+@SuppressWarnings("try") // the Metrics.Timer of each operation is only ever closed
 public class GradeManager implements Manager<Grade> {
 
+    /** Fields criteria may filter and sort grades on; major and credit are looked up by key */
+    private static final Criteria.Table<Grade> TABLE = new Criteria.Table<Grade>("Grades",
+            rs -> new Grade(rs.getString("stuID"), rs.getString("courseID"), rs.getDouble("score")),
+            "stuID", "courseID")
+        .column("stuID", Grade::getStuID, false)
+        .column("courseID", Grade::getCourseID, false)
+        .column("score", Grade::getScore, false)
+        .lookup("major", "stuID", "Students", "stuID")
+        .lookup("credit", "courseID", "Courses", "courseID");
+
+    private static final String INSERT_SQL =
+        "INSERT INTO Grades (stuID, courseID, score) VALUES (?, ?, ?)";
+    private static final String UPDATE_SQL =
+        "UPDATE Grades SET score=? WHERE stuID=? AND courseID=?";
+
+    private int batchSize = BatchExecutor.DEFAULT_BATCH_SIZE;
+
     @Override
     public void add(Grade g) {
-        // Check if grade already exists
-        if (search(g.getStuID() + "-" + g.getCourseID()) != null) {
-            System.out.println("Add failed! Grade already exists for Student: " + 
-                g.getStuID() + ", Course: " + g.getCourseID());
-            return;
-        }
-        
-        String sql = "INSERT INTO Grades (stuID, courseID, score) VALUES (?, ?, ?)";
-        try (PreparedStatement pstmt = DBHelper.prepareStatement(sql)) {
-            pstmt.setString(1, g.getStuID());
-            pstmt.setString(2, g.getCourseID());
-            pstmt.setDouble(3, g.getScore());
-            pstmt.executeUpdate();
-            System.out.println("Grade added successfully: " + g);
-        } catch (SQLException e) {
-            if (e.getSQLState().equals("23503")) {
-                System.err.println("Error: Student ID or Course ID does not exist!");
-            } else {
-                System.err.println("Error adding grade: " + e.getMessage());
+        try (Metrics.Timer timer = Metrics.time("GradeManager.add")) {
+            // The (stuID, courseID) primary key rejects duplicates, so no lookup is needed first
+            try (Connection conn = DBHelper.borrowConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(INSERT_SQL)) {
+                bindInsert(pstmt, g);
+                pstmt.executeUpdate();
+                EntityEventBus.shared().publish(Topic.GRADES, Kind.CREATED, keyOf(g), g);
+                Log.debug(() -> "Grade added successfully: " + g);
+            } catch (SQLException e) {
+                if ("23505".equals(e.getSQLState())) {
+                    Log.warn("Add failed! Grade already exists for Student: " + 
+                        g.getStuID() + ", Course: " + g.getCourseID());
+                } else if ("23503".equals(e.getSQLState())) {
+                    Log.error("Error: Student ID or Course ID does not exist!");
+                } else {
+                    Log.error("Error adding grade: " + e.getMessage());
+                }
             }
         }
     }
 
     @Override
     public void delete(String id) {
-        String[] parts = id.split("-");
-        if (parts.length != 2) {
-            System.out.println("Delete failed! Format should be: StudentID-CourseID");
-            return;
-        }
-        String stuId = parts[0];
-        String courseId = parts[1];
-
-        String sql = "DELETE FROM Grades WHERE stuID = ? AND courseID = ?";
-        try (PreparedStatement pstmt = DBHelper.prepareStatement(sql)) {
-            pstmt.setString(1, stuId);
-            pstmt.setString(2, courseId);
-            int rows = pstmt.executeUpdate();
-            if (rows > 0) {
-                System.out.println("Deleted successfully! StudentID: " + stuId + ", CourseID: " + courseId);
-            } else {
-                System.out.println("Delete failed! Record not found: " + stuId + ", " + courseId);
+        try (Metrics.Timer timer = Metrics.time("GradeManager.delete")) {
+            String[] parts = id.split("-");
+            if (parts.length != 2) {
+                Log.warn("Delete failed! Format should be: StudentID-CourseID");
+                return;
+            }
+            String stuId = parts[0];
+            String courseId = parts[1];
+
+            String sql = "DELETE FROM Grades WHERE stuID = ? AND courseID = ?";
+            try (Connection conn = DBHelper.borrowConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, stuId);
+                pstmt.setString(2, courseId);
+                int rows = pstmt.executeUpdate();
+                if (rows > 0) {
+                    EntityEventBus.shared().publish(Topic.GRADES, Kind.DELETED, id, null);
+                    Log.debug(() -> "Deleted successfully! StudentID: " + stuId + ", CourseID: " + courseId);
+                } else {
+                    Log.warn("Delete failed! Record not found: " + stuId + ", " + courseId);
+                }
+            } catch (SQLException e) {
+                Log.error("Error deleting grade: " + e.getMessage());
             }
-        } catch (SQLException e) {
-            System.err.println("Error deleting grade: " + e.getMessage());
         }
     }
 
     @Override
     public void update(Grade g) {
-        String sql = "UPDATE Grades SET score=? WHERE stuID=? AND courseID=?";
-        try (PreparedStatement pstmt = DBHelper.prepareStatement(sql)) {
-            pstmt.setDouble(1, g.getScore());
-            pstmt.setString(2, g.getStuID());
-            pstmt.setString(3, g.getCourseID());
-            int rows = pstmt.executeUpdate();
-            if (rows > 0) {
-                System.out.println("Updated successfully: " + g);
-            } else {
-                System.out.println("Update failed! Record not found: " + g.getStuID() + ", " + g.getCourseID());
+        try (Metrics.Timer timer = Metrics.time("GradeManager.update")) {
+            try (Connection conn = DBHelper.borrowConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(UPDATE_SQL)) {
+                bindUpdate(pstmt, g);
+                int rows = pstmt.executeUpdate();
+                if (rows > 0) {
+                    EntityEventBus.shared().publish(Topic.GRADES, Kind.UPDATED, keyOf(g), g);
+                    Log.debug(() -> "Updated successfully: " + g);
+                } else {
+                    Log.warn("Update failed! Record not found: " + g.getStuID() + ", " + g.getCourseID());
+                }
+            } catch (SQLException e) {
+                Log.error("Error updating grade: " + e.getMessage());
             }
-        } catch (SQLException e) {
-            System.err.println("Error updating grade: " + e.getMessage());
         }
     }
 
     @Override
     public Grade search(String id) {
-        String[] parts = id.split("-");
-        if (parts.length != 2) {
-            System.out.println("Search failed! Format should be: StudentID-CourseID");
+        try (Metrics.Timer timer = Metrics.time("GradeManager.search")) {
+            String[] parts = id.split("-");
+            if (parts.length != 2) {
+                Log.warn("Search failed! Format should be: StudentID-CourseID");
+                return null;
+            }
+            String stuId = parts[0];
+            String courseId = parts[1];
+
+            String sql = "SELECT * FROM Grades WHERE stuID = ? AND courseID = ?";
+            try (Connection conn = DBHelper.borrowConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, stuId);
+                pstmt.setString(2, courseId);
+                ResultSet rs = pstmt.executeQuery();
+                if (rs.next()) {
+                    return new Grade(
+                        rs.getString("stuID"),
+                        rs.getString("courseID"),
+                        rs.getDouble("score")
+                    );
+                }
+            } catch (SQLException e) {
+                Log.error("Error searching grade: " + e.getMessage());
+            }
             return null;
         }
-        String stuId = parts[0];
-        String courseId = parts[1];
+    }
 
-        String sql = "SELECT * FROM Grades WHERE stuID = ? AND courseID = ?";
-        try (PreparedStatement pstmt = DBHelper.prepareStatement(sql)) {
-            pstmt.setString(1, stuId);
-            pstmt.setString(2, courseId);
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                return new Grade(
-                    rs.getString("stuID"),
-                    rs.getString("courseID"),
-                    rs.getDouble("score")
-                );
-            }
-        } catch (SQLException e) {
-            System.err.println("Error searching grade: " + e.getMessage());
+    @Override
+    public BatchResult addAll(Collection<? extends Grade> grades) {
+        try (Metrics.Timer timer = Metrics.time("GradeManager.addAll")) {
+            BatchResult result = BatchExecutor.execute(INSERT_SQL, grades, batchSize,
+                GradeManager::bindInsert, GradeManager::keyOf, Status.INSERTED, Status.FAILED);
+            EntityEventBus.shared().publish(Topic.GRADES, result, grades);
+            return result;
+        }
+    }
+
+    @Override
+    public BatchResult updateAll(Collection<? extends Grade> grades) {
+        try (Metrics.Timer timer = Metrics.time("GradeManager.updateAll")) {
+            BatchResult result = BatchExecutor.execute(UPDATE_SQL, grades, batchSize,
+                GradeManager::bindUpdate, GradeManager::keyOf, Status.UPDATED, Status.NOT_FOUND);
+            EntityEventBus.shared().publish(Topic.GRADES, result, grades);
+            return result;
+        }
+    }
+
+    /**
+     * Insert the grade, or update it if it already exists
+     * @return INSERTED, UPDATED or FAILED
+     */
+    @Override
+    public Status upsert(Grade g) {
+        BatchResult.RowOutcome outcome = upsertAll(Collections.singletonList(g)).getOutcomes().get(0);
+        if (outcome.getStatus() == Status.FAILED) {
+            Log.error("Error saving grade: " + outcome.getMessage());
         }
-        return null;
+        return outcome.getStatus();
+    }
+
+    @Override
+    public BatchResult upsertAll(Collection<? extends Grade> grades) {
+        try (Metrics.Timer timer = Metrics.time("GradeManager.upsertAll")) {
+            BatchResult result = BatchExecutor.upsert(UPDATE_SQL, GradeManager::bindUpdate,
+                INSERT_SQL, GradeManager::bindInsert, grades, batchSize, GradeManager::keyOf);
+            EntityEventBus.shared().publish(Topic.GRADES, result, grades);
+            return result;
+        }
+    }
+
+    @Override
+    public BatchResult deleteAll(Collection<String> ids) {
+        try (Metrics.Timer timer = Metrics.time("GradeManager.deleteAll")) {
+            String sql = "DELETE FROM Grades WHERE stuID = ? AND courseID = ?";
+            BatchResult result = BatchExecutor.<String>execute(sql, ids, batchSize, (pstmt, id) -> {
+                String[] parts = id.split("-");
+                if (parts.length != 2) {
+                    throw new IllegalArgumentException("Format should be: StudentID-CourseID");
+                }
+                pstmt.setString(1, parts[0]);
+                pstmt.setString(2, parts[1]);
+            }, id -> id, Status.DELETED, Status.NOT_FOUND);
+            EntityEventBus.shared().publish(Topic.GRADES, result, null);
+            return result;
+        }
+    }
+
+    @Override
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Key of a grade in the StudentID-CourseID form used by search and delete
+     */
+    static String keyOf(Grade g) {
+        return g.getStuID() + "-" + g.getCourseID();
     }
 
     @Override
@@ -123,68 +229,207 @@ public class GradeManager implements Manager<Grade> {
      * Get all grades from database
      */
     public ArrayList<Grade> getAllGrades() {
-        ArrayList<Grade> grades = new ArrayList<>();
-        String sql = "SELECT * FROM Grades ORDER BY stuID, courseID";
-        try (Statement stmt = DBHelper.getConnection().createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            while (rs.next()) {
-                Grade g = new Grade(
-                    rs.getString("stuID"),
-                    rs.getString("courseID"),
-                    rs.getDouble("score")
-                );
-                grades.add(g);
+        try (Metrics.Timer timer = Metrics.time("GradeManager.getAllGrades")) {
+            ArrayList<Grade> grades = new ArrayList<>();
+            String sql = "SELECT * FROM Grades ORDER BY stuID, courseID";
+            try (Connection conn = DBHelper.borrowConnection();
+                 Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery(sql)) {
+                while (rs.next()) {
+                    Grade g = new Grade(
+                        rs.getString("stuID"),
+                        rs.getString("courseID"),
+                        rs.getDouble("score")
+                    );
+                    grades.add(g);
+                }
+            } catch (SQLException e) {
+                Log.error("Error retrieving grades: " + e.getMessage());
+            }
+            return grades;
+        }
+    }
+
+    /**
+     * Get all grades as compact immutable rows. Each student and course ID
+     * is stored once however many grades refer to it.
+     */
+    public ArrayList<GradeRecord> getAllGradeRecords() {
+        try (Metrics.Timer timer = Metrics.time("GradeManager.getAllGradeRecords")) {
+            ArrayList<GradeRecord> grades = new ArrayList<>();
+            StringPool ids = new StringPool(Integer.MAX_VALUE);
+            String sql = "SELECT stuID, courseID, score FROM Grades ORDER BY stuID, courseID";
+            try (Connection conn = DBHelper.borrowConnection();
+                 Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery(sql)) {
+                while (rs.next()) {
+                    grades.add(GradeRecord.of(rs.getString(1), rs.getString(2), rs.getDouble(3), ids));
+                }
+            } catch (SQLException e) {
+                Log.error("Error retrieving grades: " + e.getMessage());
             }
-        } catch (SQLException e) {
-            System.err.println("Error retrieving grades: " + e.getMessage());
+            return grades;
         }
-        return grades;
     }
 
     /**
      * Get all grades for a specific student
      */
     public ArrayList<Grade> getGradesByStudent(String stuId) {
-        ArrayList<Grade> grades = new ArrayList<>();
-        String sql = "SELECT * FROM Grades WHERE stuID = ? ORDER BY courseID";
-        try (PreparedStatement pstmt = DBHelper.prepareStatement(sql)) {
-            pstmt.setString(1, stuId);
-            ResultSet rs = pstmt.executeQuery();
-            while (rs.next()) {
-                Grade g = new Grade(
-                    rs.getString("stuID"),
-                    rs.getString("courseID"),
-                    rs.getDouble("score")
-                );
-                grades.add(g);
+        try (Metrics.Timer timer = Metrics.time("GradeManager.getGradesByStudent")) {
+            ArrayList<Grade> grades = new ArrayList<>();
+            String sql = "SELECT * FROM Grades WHERE stuID = ? ORDER BY courseID";
+            try (Connection conn = DBHelper.borrowConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, stuId);
+                ResultSet rs = pstmt.executeQuery();
+                while (rs.next()) {
+                    Grade g = new Grade(
+                        rs.getString("stuID"),
+                        rs.getString("courseID"),
+                        rs.getDouble("score")
+                    );
+                    grades.add(g);
+                }
+            } catch (SQLException e) {
+                Log.error("Error retrieving student grades: " + e.getMessage());
             }
-        } catch (SQLException e) {
-            System.err.println("Error retrieving student grades: " + e.getMessage());
+            return grades;
         }
-        return grades;
     }
 
     /**
      * Get all grades for a specific course
      */
     public ArrayList<Grade> getGradesByCourse(String courseId) {
-        ArrayList<Grade> grades = new ArrayList<>();
-        String sql = "SELECT * FROM Grades WHERE courseID = ? ORDER BY stuID";
-        try (PreparedStatement pstmt = DBHelper.prepareStatement(sql)) {
-            pstmt.setString(1, courseId);
-            ResultSet rs = pstmt.executeQuery();
+        try (Metrics.Timer timer = Metrics.time("GradeManager.getGradesByCourse")) {
+            ArrayList<Grade> grades = new ArrayList<>();
+            String sql = "SELECT * FROM Grades WHERE courseID = ? ORDER BY stuID";
+            try (Connection conn = DBHelper.borrowConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, courseId);
+                ResultSet rs = pstmt.executeQuery();
+                while (rs.next()) {
+                    Grade g = new Grade(
+                        rs.getString("stuID"),
+                        rs.getString("courseID"),
+                        rs.getDouble("score")
+                    );
+                    grades.add(g);
+                }
+            } catch (SQLException e) {
+                Log.error("Error retrieving course grades: " + e.getMessage());
+            }
+            return grades;
+        }
+    }
+
+    /**
+     * Get the next page of grades in (stuID, courseID) order (keyset pagination)
+     * @param after last grade of the previous page, or null for the first page
+     * @param limit maximum number of grades to return
+     */
+    public ArrayList<Grade> getGradesAfter(Grade after, int limit) {
+        try (Metrics.Timer timer = Metrics.time("GradeManager.getGradesAfter")) {
+            // stuID >= ? lets Derby start the primary key scan at the right place
+            String sql = after == null
+                ? "SELECT * FROM Grades ORDER BY stuID, courseID FETCH FIRST ? ROWS ONLY"
+                : "SELECT * FROM Grades WHERE stuID >= ? AND (stuID > ? OR courseID > ?) "
+                    + "ORDER BY stuID, courseID FETCH FIRST ? ROWS ONLY";
+            ArrayList<Grade> grades = new ArrayList<>();
+            try (Connection conn = DBHelper.borrowConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                int i = 1;
+                if (after != null) {
+                    pstmt.setString(i++, after.getStuID());
+                    pstmt.setString(i++, after.getStuID());
+                    pstmt.setString(i++, after.getCourseID());
+                }
+                pstmt.setInt(i, limit);
+                readGrades(pstmt, grades);
+            } catch (SQLException e) {
+                Log.error("Error retrieving grades: " + e.getMessage());
+            }
+            return grades;
+        }
+    }
+
+    /**
+     * Get a page of grades by position in (stuID, courseID) order
+     * @param offset number of grades to skip
+     * @param limit maximum number of grades to return
+     */
+    public ArrayList<Grade> getGradesPage(int offset, int limit) {
+        try (Metrics.Timer timer = Metrics.time("GradeManager.getGradesPage")) {
+            String sql = "SELECT * FROM Grades ORDER BY stuID, courseID OFFSET ? ROWS FETCH NEXT ? ROWS ONLY";
+            ArrayList<Grade> grades = new ArrayList<>();
+            try (Connection conn = DBHelper.borrowConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setInt(1, offset);
+                pstmt.setInt(2, limit);
+                readGrades(pstmt, grades);
+            } catch (SQLException e) {
+                Log.error("Error retrieving grades: " + e.getMessage());
+            }
+            return grades;
+        }
+    }
+
+    @Override
+    public Criteria<Grade> criteria() {
+        return new Criteria<>(TABLE);
+    }
+
+    /**
+     * Get the grades matching the criteria, in its order
+     */
+    @Override
+    public ArrayList<Grade> find(Criteria<Grade> criteria) {
+        try (Metrics.Timer timer = Metrics.time("GradeManager.find")) {
+            return TABLE.find(criteria);
+        }
+    }
+
+    /**
+     * @return number of grades matching the criteria, ignoring its order and limits, or 0 if the query fails
+     */
+    @Override
+    public int count(Criteria<Grade> criteria) {
+        try (Metrics.Timer timer = Metrics.time("GradeManager.count")) {
+            return TABLE.count(criteria);
+        }
+    }
+
+    /**
+     * @return number of grades, or 0 if the query fails
+     */
+    public int countGrades() {
+        try (Metrics.Timer timer = Metrics.time("GradeManager.countGrades")) {
+            return DBHelper.count("Grades");
+        }
+    }
+
+    private static void readGrades(PreparedStatement pstmt, ArrayList<Grade> grades) throws SQLException {
+        try (ResultSet rs = pstmt.executeQuery()) {
             while (rs.next()) {
-                Grade g = new Grade(
+                grades.add(new Grade(
                     rs.getString("stuID"),
                     rs.getString("courseID"),
                     rs.getDouble("score")
-                );
-                grades.add(g);
+                ));
             }
-        } catch (SQLException e) {
-            System.err.println("Error retrieving course grades: " + e.getMessage());
         }
-        return grades;
     }
-    
+
+    private static void bindInsert(PreparedStatement pstmt, Grade g) throws SQLException {
+        pstmt.setString(1, g.getStuID());
+        pstmt.setString(2, g.getCourseID());
+        pstmt.setDouble(3, g.getScore());
+    }
+
+    private static void bindUpdate(PreparedStatement pstmt, Grade g) throws SQLException {
+        pstmt.setDouble(1, g.getScore());
+        pstmt.setString(2, g.getStuID());
+        pstmt.setString(3, g.getCourseID());
+    }
 }
\ No newline at end of file
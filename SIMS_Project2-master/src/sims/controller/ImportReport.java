@@ -0,0 +1,105 @@
+package sims.controller;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Summary of a CSV import: counts, throughput and the rejected rows
+ */
+public class ImportReport {
+
+    /**
+     * A line that was not imported
+     */
+    public static class Rejection {
+        private final long lineNumber;
+        private final String reason;
+        private final String line;
+
+        public Rejection(long lineNumber, String reason, String line) {
+            this.lineNumber = lineNumber;
+            this.reason = reason;
+            this.line = line;
+        }
+
+        public long getLineNumber() {
+            return lineNumber;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        public String getLine() {
+            return line;
+        }
+
+        @Override
+        public String toString() {
+            return "line " + lineNumber + ": " + reason;
+        }
+    }
+
+    private final String table;
+    private final long rowsRead;
+    private final long imported;
+    private final long rejected;
+    private final long elapsedMillis;
+    private final List<Rejection> rejections;
+
+    public ImportReport(String table, long rowsRead, long imported, long rejected,
+                        long elapsedMillis, List<Rejection> rejections) {
+        this.table = table;
+        this.rowsRead = rowsRead;
+        this.imported = imported;
+        this.rejected = rejected;
+        this.elapsedMillis = elapsedMillis;
+        List<Rejection> sorted = new ArrayList<>(rejections);
+        sorted.sort((a, b) -> Long.compare(a.getLineNumber(), b.getLineNumber()));
+        this.rejections = Collections.unmodifiableList(sorted);
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    /**
+     * @return data rows read from the file, excluding header and blank lines
+     */
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    public long getImported() {
+        return imported;
+    }
+
+    /**
+     * @return rows rejected by validation or by the database
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public double getRowsPerSecond() {
+        return elapsedMillis == 0 ? rowsRead : rowsRead * 1000.0 / elapsedMillis;
+    }
+
+    /**
+     * @return rejected rows in line order; capped, so may be shorter than getRejected()
+     */
+    public List<Rejection> getRejections() {
+        return rejections;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d rows read, %d imported, %d rejected in %d ms (%.0f rows/s)",
+                table, rowsRead, imported, rejected, elapsedMillis, getRowsPerSecond());
+    }
+}
@@ -0,0 +1,248 @@
+package sims.controller;
+
+import java.io.PrintStream;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Minimal level-gated logger with an asynchronous ring-buffer appender.
+ *
+ * A call below the current level returns after one comparison; the
+ * Supplier overloads build their message only when the level is enabled.
+ * Enabled messages are put in a fixed-size ring buffer and written to the
+ * console by a daemon thread, so callers never wait for console I/O. When
+ * the buffer is full new messages are dropped and counted rather than
+ * blocking the caller, and the count is reported once there is room
+ * again; errors are the exception and are then written directly.
+ *
+ * The level comes from the system property sims.log.level (DEBUG, INFO,
+ * WARN, ERROR or OFF; default INFO). Setting sims.log.async=false writes
+ * synchronously on the calling thread instead. Pending messages are
+ * written out at JVM shutdown.
+ */
+public final class Log {
+
+    public enum Level {
+        DEBUG, INFO, WARN, ERROR, OFF
+    }
+
+    private static final int CAPACITY = 8192; // power of two
+    private static final int MASK = CAPACITY - 1;
+    private static final long IDLE_PARK_NANOS = 10_000_000L;
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss.SSS");
+
+    private static volatile Level level = parseLevel(System.getProperty("sims.log.level"));
+    private static final boolean ASYNC = !"false".equalsIgnoreCase(System.getProperty("sims.log.async"));
+
+    private static final AtomicReferenceArray<Record> SLOTS = new AtomicReferenceArray<>(CAPACITY);
+    /** Next sequence to claim by producers */
+    private static final AtomicLong TAIL = new AtomicLong();
+    /** Next sequence to write by the appender thread */
+    private static final AtomicLong HEAD = new AtomicLong();
+    private static final LongAdder DROPPED = new LongAdder();
+    private static final Thread WRITER;
+    private static volatile boolean writerIdle = false;
+
+    static {
+        if (ASYNC) {
+            WRITER = new Thread(Log::drainLoop, "sims-log-writer");
+            WRITER.setDaemon(true);
+            WRITER.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(Log::flush, "sims-log-flush"));
+        } else {
+            WRITER = null;
+        }
+    }
+
+    private Log() {
+    }
+
+    /**
+     * One message waiting to be written
+     */
+    private static final class Record {
+        final Level level;
+        final LocalTime time = LocalTime.now();
+        final String thread = Thread.currentThread().getName();
+        final String message;
+        final Throwable error;
+
+        Record(Level level, String message, Throwable error) {
+            this.level = level;
+            this.message = message;
+            this.error = error;
+        }
+    }
+
+    private static Level parseLevel(String value) {
+        if (value != null) {
+            try {
+                return Level.valueOf(value.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                System.err.println("Unknown log level '" + value + "', using INFO");
+            }
+        }
+        return Level.INFO;
+    }
+
+    public static Level getLevel() {
+        return level;
+    }
+
+    public static void setLevel(Level newLevel) {
+        level = newLevel;
+    }
+
+    public static boolean isEnabled(Level l) {
+        return l != Level.OFF && l.compareTo(level) >= 0;
+    }
+
+    public static void debug(String message) {
+        log(Level.DEBUG, message, null);
+    }
+
+    public static void debug(Supplier<String> message) {
+        if (isEnabled(Level.DEBUG)) {
+            log(Level.DEBUG, message.get(), null);
+        }
+    }
+
+    public static void info(String message) {
+        log(Level.INFO, message, null);
+    }
+
+    public static void info(Supplier<String> message) {
+        if (isEnabled(Level.INFO)) {
+            log(Level.INFO, message.get(), null);
+        }
+    }
+
+    public static void warn(String message) {
+        log(Level.WARN, message, null);
+    }
+
+    public static void warn(Supplier<String> message) {
+        if (isEnabled(Level.WARN)) {
+            log(Level.WARN, message.get(), null);
+        }
+    }
+
+    public static void warn(String message, Throwable error) {
+        log(Level.WARN, message, error);
+    }
+
+    public static void error(String message) {
+        log(Level.ERROR, message, null);
+    }
+
+    public static void error(Supplier<String> message) {
+        if (isEnabled(Level.ERROR)) {
+            log(Level.ERROR, message.get(), null);
+        }
+    }
+
+    public static void error(String message, Throwable error) {
+        log(Level.ERROR, message, error);
+    }
+
+    /**
+     * @return messages dropped because the buffer was full
+     */
+    public static long getDroppedCount() {
+        return DROPPED.sum();
+    }
+
+    private static void log(Level l, String message, Throwable error) {
+        if (!isEnabled(l)) {
+            return;
+        }
+        Record record = new Record(l, message, error);
+        if (!ASYNC) {
+            write(record);
+            return;
+        }
+        long seq;
+        do {
+            seq = TAIL.get();
+            if (seq - HEAD.get() >= CAPACITY) {
+                if (l == Level.ERROR) {
+                    write(record); // Errors are never dropped
+                } else {
+                    DROPPED.increment();
+                }
+                return;
+            }
+        } while (!TAIL.compareAndSet(seq, seq + 1));
+        SLOTS.set((int) (seq & MASK), record);
+        if (writerIdle) {
+            LockSupport.unpark(WRITER);
+        }
+    }
+
+    private static void drainLoop() {
+        long reportedDrops = 0;
+        while (true) {
+            if (!drain()) {
+                writerIdle = true;
+                if (HEAD.get() == TAIL.get()) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+                writerIdle = false;
+            }
+            long drops = DROPPED.sum();
+            if (drops != reportedDrops && HEAD.get() == TAIL.get()) {
+                write(new Record(Level.WARN, (drops - reportedDrops) + " log message(s) dropped: buffer full", null));
+                reportedDrops = drops;
+            }
+        }
+    }
+
+    /**
+     * Write every published message in order
+     * @return true if anything was written
+     */
+    private static synchronized boolean drain() {
+        boolean wrote = false;
+        long head = HEAD.get();
+        while (head < TAIL.get()) {
+            int slot = (int) (head & MASK);
+            Record r = SLOTS.get(slot);
+            if (r == null) {
+                // Claimed but not yet published by its producer
+                Thread.onSpinWait();
+                continue;
+            }
+            SLOTS.set(slot, null);
+            HEAD.set(++head);
+            write(r);
+            wrote = true;
+        }
+        if (wrote) {
+            System.out.flush();
+            System.err.flush();
+        }
+        return wrote;
+    }
+
+    /**
+     * Write every message logged so far; called at shutdown
+     */
+    public static void flush() {
+        if (ASYNC) {
+            drain();
+        }
+    }
+
+    private static void write(Record r) {
+        PrintStream out = r.level.compareTo(Level.WARN) >= 0 ? System.err : System.out;
+        out.println(TIME.format(r.time) + " " + r.level + " [" + r.thread + "] " + r.message);
+        if (r.error != null) {
+            r.error.printStackTrace(out);
+        }
+    }
+}
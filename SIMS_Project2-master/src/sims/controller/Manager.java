@@ -1,5 +1,8 @@
 package sims.controller;
 
+import java.util.Collection;
+import java.util.List;
+
 public interface Manager<T> {
      void add(T item);
      void delete(String id);
@@ -7,4 +10,55 @@ public interface Manager<T> {
      T search(String id);
      void displayAll();
 
+     /**
+      * Insert many items in one transaction using JDBC batching
+      * @return outcome per item, in the order given
+      */
+     BatchResult addAll(Collection<? extends T> items);
+
+     /**
+      * Update many items in one transaction using JDBC batching
+      * @return outcome per item, in the order given
+      */
+     BatchResult updateAll(Collection<? extends T> items);
+
+     /**
+      * Delete many ids in one transaction using JDBC batching
+      * @return outcome per id, in the order given
+      */
+     BatchResult deleteAll(Collection<String> ids);
+
+     /**
+      * Insert the item, or update it if its key already exists, in one call
+      * @return INSERTED, UPDATED or FAILED
+      */
+     BatchResult.Status upsert(T item);
+
+     /**
+      * Insert or update many items in one transaction using JDBC batching
+      * @return INSERTED or UPDATED per item (FAILED with a message on error), in the order given
+      */
+     BatchResult upsertAll(Collection<? extends T> items);
+
+     /**
+      * Set how many rows are sent per executeBatch call
+      */
+     void setBatchSize(int batchSize);
+
+     /**
+      * @return new empty criteria on this manager's table, for find() and count()
+      */
+     Criteria<T> criteria();
+
+     /**
+      * Run the criteria as one parameterized query
+      * @return matching items in the criteria's order
+      */
+     List<T> find(Criteria<T> criteria);
+
+     /**
+      * @return number of items matching the criteria, ignoring its order and limits
+      */
+     int count(Criteria<T> criteria);
+
 }
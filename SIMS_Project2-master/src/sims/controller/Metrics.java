@@ -0,0 +1,320 @@
+package sims.controller;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Call counts, error counts and latency histograms for manager operations
+ * and SQL statements, published over JMX as sims:type=Metrics.
+ *
+ * Managers wrap each operation in {@link #time(String)}. Every statement
+ * handed out by the connection pool is timed per SQL text. Managers catch
+ * their SQLExceptions, so an operation is counted as failed when any
+ * statement or connection borrow failed on its thread while it ran.
+ */
+public final class Metrics {
+
+    /** Distinct SQL texts tracked; further statements are counted under OTHER_SQL */
+    private static final int MAX_STATEMENTS = 500;
+    private static final String OTHER_SQL = "(other)";
+    private static final String OBJECT_NAME = "sims:type=Metrics";
+
+    private static final Map<String, Stats> OPERATIONS = new ConcurrentHashMap<>();
+    private static final Map<String, Stats> STATEMENTS = new ConcurrentHashMap<>();
+    private static final ThreadLocal<long[]> FAILURES = ThreadLocal.withInitial(() -> new long[1]);
+
+    private Metrics() {
+    }
+
+    /**
+     * Counters and histogram of one operation or statement
+     */
+    private static final class Stats {
+        final LongAdder calls = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LatencyHistogram latency = new LatencyHistogram();
+
+        void record(long nanos, boolean failed) {
+            calls.increment();
+            if (failed) {
+                errors.increment();
+            }
+            latency.record(nanos);
+        }
+
+        void reset() {
+            calls.reset();
+            errors.reset();
+            latency.reset();
+        }
+    }
+
+    /**
+     * Times one operation; close it when the operation ends
+     */
+    public static final class Timer implements AutoCloseable {
+        private final Stats stats;
+        private final long start = System.nanoTime();
+        private final long failuresAtStart;
+        private boolean failed = false;
+
+        private Timer(Stats stats) {
+            this.stats = stats;
+            this.failuresAtStart = FAILURES.get()[0];
+        }
+
+        /**
+         * Count the operation as failed even if no statement failed
+         */
+        public void fail() {
+            failed = true;
+        }
+
+        @Override
+        public void close() {
+            stats.record(System.nanoTime() - start, failed || FAILURES.get()[0] != failuresAtStart);
+        }
+    }
+
+    /**
+     * Start timing an operation
+     * @param operation name such as StudentManager.add
+     */
+    public static Timer time(String operation) {
+        return new Timer(OPERATIONS.computeIfAbsent(operation, k -> new Stats()));
+    }
+
+    /**
+     * Note a database failure on the current thread
+     */
+    static void failed() {
+        FAILURES.get()[0]++;
+    }
+
+    private static void recordStatement(String sql, long nanos, boolean failed) {
+        String key = sql == null ? OTHER_SQL : sql;
+        Stats stats = STATEMENTS.get(key);
+        if (stats == null) {
+            if (STATEMENTS.size() >= MAX_STATEMENTS) {
+                key = OTHER_SQL;
+            }
+            stats = STATEMENTS.computeIfAbsent(key, k -> new Stats());
+        }
+        stats.record(nanos, failed);
+    }
+
+    /**
+     * Wrap a statement so every execute call is timed under its SQL text
+     * @param sql text given to prepareStatement, or null for a plain Statement
+     */
+    static <S extends Statement> S timed(S statement, Class<S> type, String sql) {
+        return type.cast(Proxy.newProxyInstance(Metrics.class.getClassLoader(),
+                new Class<?>[]{type}, new TimedStatement(statement, sql)));
+    }
+
+    /**
+     * Times execute* calls and forwards everything else
+     */
+    private static final class TimedStatement implements InvocationHandler {
+        private final Statement target;
+        private final String sql;
+
+        TimedStatement(Statement target, String sql) {
+            this.target = target;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("equals")) {
+                return proxy == args[0];
+            }
+            if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+            if (!name.startsWith("execute")) {
+                try {
+                    return method.invoke(target, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+            String text = sql != null ? sql
+                    : args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+            long start = System.nanoTime();
+            boolean failed = false;
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                if (e.getCause() instanceof SQLException) {
+                    failed = true;
+                    failed();
+                }
+                throw e.getCause();
+            } finally {
+                recordStatement(text, System.nanoTime() - start, failed);
+            }
+        }
+    }
+
+    /**
+     * Point-in-time view of one operation or statement; latencies in microseconds
+     */
+    public static final class Snapshot {
+        private final String name;
+        private final long calls;
+        private final long errors;
+        private final double mean;
+        private final double p50;
+        private final double p99;
+        private final double max;
+
+        Snapshot(String name, Stats stats) {
+            this.name = name;
+            this.calls = stats.calls.sum();
+            this.errors = stats.errors.sum();
+            LatencyHistogram h = stats.latency;
+            this.mean = h.getMean() / 1000;
+            this.p50 = h.getValueAtPercentile(50) / 1000.0;
+            this.p99 = h.getValueAtPercentile(99) / 1000.0;
+            this.max = h.getMax() / 1000.0;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCalls() {
+            return calls;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public double getMeanMicros() {
+            return mean;
+        }
+
+        public double getP50Micros() {
+            return p50;
+        }
+
+        public double getP99Micros() {
+            return p99;
+        }
+
+        public double getMaxMicros() {
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: calls=%d, errors=%d, mean=%.1fus, p50=%.1fus, p99=%.1fus, max=%.1fus",
+                    name, calls, errors, mean, p50, p99, max);
+        }
+    }
+
+    /**
+     * @return snapshots of all manager operations, sorted by name
+     */
+    public static List<Snapshot> operations() {
+        return snapshot(OPERATIONS);
+    }
+
+    /**
+     * @return snapshots of all SQL statements, sorted by text
+     */
+    public static List<Snapshot> statements() {
+        return snapshot(STATEMENTS);
+    }
+
+    private static List<Snapshot> snapshot(Map<String, Stats> map) {
+        List<Snapshot> list = new ArrayList<>();
+        for (Map.Entry<String, Stats> e : map.entrySet()) {
+            list.add(new Snapshot(e.getKey(), e.getValue()));
+        }
+        list.sort((a, b) -> a.name.compareTo(b.name));
+        return list;
+    }
+
+    /**
+     * Clear every counter and histogram
+     */
+    public static void reset() {
+        OPERATIONS.values().forEach(Stats::reset);
+        STATEMENTS.values().forEach(Stats::reset);
+    }
+
+    /**
+     * Register the MBean with the platform MBean server; safe to call more than once
+     */
+    public static void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(new StandardMBean(new MBean(), MetricsMXBean.class, true),
+                    new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // Already registered
+        } catch (JMException e) {
+            Log.warn("✗ Could not register metrics MBean: " + e.getMessage());
+        }
+    }
+
+    private static final class MBean implements MetricsMXBean {
+        @Override
+        public List<Snapshot> getOperations() {
+            return operations();
+        }
+
+        @Override
+        public List<Snapshot> getStatements() {
+            return statements();
+        }
+
+        @Override
+        public int getPoolActiveConnections() {
+            ConnectionPool p = DBHelper.currentPool();
+            return p == null ? 0 : p.getActiveCount();
+        }
+
+        @Override
+        public int getPoolIdleConnections() {
+            ConnectionPool p = DBHelper.currentPool();
+            return p == null ? 0 : p.getIdleCount();
+        }
+
+        @Override
+        public long getStatementCacheHits() {
+            ConnectionPool p = DBHelper.currentPool();
+            return p == null ? 0 : p.getStatementCacheHits();
+        }
+
+        @Override
+        public long getStatementCacheMisses() {
+            ConnectionPool p = DBHelper.currentPool();
+            return p == null ? 0 : p.getStatementCacheMisses();
+        }
+
+        @Override
+        public void reset() {
+            Metrics.reset();
+        }
+    }
+}
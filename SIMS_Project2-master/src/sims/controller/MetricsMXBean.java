@@ -0,0 +1,33 @@
+package sims.controller;
+
+import java.util.List;
+
+/**
+ * JMX view of {@link Metrics}, registered as sims:type=Metrics.
+ * Latencies are in microseconds.
+ */
+public interface MetricsMXBean {
+
+    /**
+     * @return one entry per manager operation, e.g. StudentManager.add
+     */
+    List<Metrics.Snapshot> getOperations();
+
+    /**
+     * @return one entry per SQL statement text
+     */
+    List<Metrics.Snapshot> getStatements();
+
+    int getPoolActiveConnections();
+
+    int getPoolIdleConnections();
+
+    long getStatementCacheHits();
+
+    long getStatementCacheMisses();
+
+    /**
+     * Clear all counters and histograms
+     */
+    void reset();
+}
@@ -0,0 +1,267 @@
+package sims.controller;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory type-ahead index over entity IDs and their display names.
+ * IDs and every word of a name are kept in sorted maps, so the matches for
+ * a prefix are one range lookup: O(log n + k) for k matches whatever the
+ * number of entries. A query of several words walks the range of its
+ * rarest word and checks the others against each name, so "li zhang" does
+ * not visit every name with a word starting "li". Matches on the ID come
+ * first in ID order, then matches on a word of the name in the order of
+ * the word that drove the search.
+ *
+ * Entries are added, changed and removed one at a time as rows change, so
+ * the index never has to be rebuilt. Safe for use from several threads.
+ */
+public final class PrefixIndex {
+
+    /** Separates the term from the ID in the sorted keys, and sorts before any character */
+    private static final char SEPARATOR = '\0';
+    /** Entries counted per query word when looking for the rarest; past this every word is common */
+    private static final int RAREST_STEPS = 256;
+
+    /**
+     * One entry found by {@link #search}
+     */
+    public static final class Match {
+        private final String id;
+        private final String label;
+
+        Match(String id, String label) {
+            this.id = id;
+            this.label = label;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * @return display name, may be empty
+         */
+        public String getLabel() {
+            return label;
+        }
+
+        @Override
+        public String toString() {
+            return label.isEmpty() ? id : id + " - " + label;
+        }
+    }
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    /** Lower-case ID + SEPARATOR + ID */
+    private final NavigableMap<String, String> ids = new TreeMap<>();
+    /** Lower-case name word + SEPARATOR + ID */
+    private final NavigableMap<String, String> words = new TreeMap<>();
+    private final Map<String, String> labels = new HashMap<>();
+
+    /**
+     * Add an entry, or replace the name of an existing one
+     */
+    public void put(String id, String label) {
+        String name = label == null ? "" : label;
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+            labels.put(id, name);
+            ids.put(normalize(id) + SEPARATOR + id, id);
+            for (String word : tokens(name)) {
+                words.put(word + SEPARATOR + id, id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String id) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replace the whole contents, e.g. after loading from the database
+     * @param entries ID to display name
+     */
+    public void replaceAll(Map<String, String> entries) {
+        lock.writeLock().lock();
+        try {
+            ids.clear();
+            words.clear();
+            labels.clear();
+            for (Map.Entry<String, String> e : entries.entrySet()) {
+                String name = e.getValue() == null ? "" : e.getValue();
+                labels.put(e.getKey(), name);
+                ids.put(normalize(e.getKey()) + SEPARATOR + e.getKey(), e.getKey());
+                for (String word : tokens(name)) {
+                    words.put(word + SEPARATOR + e.getKey(), e.getKey());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        replaceAll(Collections.emptyMap());
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return labels.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return true if the ID is in the index
+     */
+    public boolean contains(String id) {
+        lock.readLock().lock();
+        try {
+            return labels.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Find entries whose ID starts with the text, or whose name has a word
+     * starting with each word of the text (case-insensitive)
+     * @param limit maximum number of matches
+     * @return up to limit matches, ID matches first; the first entries by ID for blank text
+     */
+    public List<Match> search(String text, int limit) {
+        String query = normalize(text == null ? "" : text.trim());
+        List<String> queryWords = tokens(query);
+        Map<String, Match> found = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            for (String id : range(ids, query).values()) {
+                if (found.size() >= limit) {
+                    break;
+                }
+                found.put(id, new Match(id, labels.get(id)));
+            }
+            if (!queryWords.isEmpty()) {
+                // Walk the entries of the rarest word and check the others against the name
+                for (String id : rarest(words, queryWords).values()) {
+                    if (found.size() >= limit) {
+                        break;
+                    }
+                    if (!found.containsKey(id) && matchesAll(labels.get(id), queryWords)) {
+                        found.put(id, new Match(id, labels.get(id)));
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return new ArrayList<>(found.values());
+    }
+
+    private void removeLocked(String id) {
+        String label = labels.remove(id);
+        if (label == null) {
+            return;
+        }
+        ids.remove(normalize(id) + SEPARATOR + id);
+        for (String word : tokens(label)) {
+            words.remove(word + SEPARATOR + id);
+        }
+    }
+
+    /**
+     * @return the keys that start with prefix
+     */
+    private static NavigableMap<String, String> range(NavigableMap<String, String> map, String prefix) {
+        return map.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    /**
+     * @return the range of the query word that matches the fewest entries,
+     *         or of the first word if every word matches more than RAREST_STEPS
+     */
+    private static NavigableMap<String, String> rarest(NavigableMap<String, String> map, List<String> queryWords) {
+        List<NavigableMap<String, String>> ranges = new ArrayList<>();
+        for (String q : queryWords) {
+            ranges.add(range(map, q));
+        }
+        if (ranges.size() == 1) {
+            return ranges.get(0);
+        }
+        List<Iterator<String>> walks = new ArrayList<>();
+        for (NavigableMap<String, String> r : ranges) {
+            walks.add(r.keySet().iterator());
+        }
+        // Step through the ranges together: the first to run out is the smallest, after as many steps as it has entries
+        for (int step = 0; step <= RAREST_STEPS; step++) {
+            for (int i = 0; i < walks.size(); i++) {
+                if (!walks.get(i).hasNext()) {
+                    return ranges.get(i);
+                }
+                walks.get(i).next();
+            }
+        }
+        // Common words together match many names, so the first word's walk ends early
+        return ranges.get(0);
+    }
+
+    private static boolean matchesAll(String label, List<String> queryWords) {
+        List<String> labelWords = tokens(label);
+        for (String q : queryWords) {
+            boolean matched = false;
+            for (String w : labelWords) {
+                if (w.startsWith(q)) {
+                    matched = true;
+                    break;
+                }
+            }
+            if (!matched) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String normalize(String s) {
+        return s.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @return lower-case words of letters and digits
+     */
+    static List<String> tokens(String s) {
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= s.length(); i++) {
+            boolean wordChar = i < s.length() && Character.isLetterOrDigit(s.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(normalize(s.substring(start, i)));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,292 @@
+package sims.controller;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Brings the database schema up to date with an ordered list of migrations.
+ * Every applied migration is recorded in the SCHEMA_VERSION table together
+ * with a checksum of its SQL. On startup any migration not yet recorded is run
+ * in version order, each in its own transaction.
+ *
+ * A migration must never be edited after it has shipped: if the checksum of
+ * an applied migration no longer matches, migrate() refuses to continue.
+ * Add a new migration with the next version number instead.
+ *
+ * Databases created before versioning existed already have the V1 tables;
+ * they are recorded as a baseline without running V1 again.
+ *
+ * An up-to-date database, the normal case at startup, costs one metadata
+ * lookup and one small SELECT; no DDL is attempted.
+ */
+public class SchemaMigrator {
+
+    private static final String VERSION_TABLE = "SCHEMA_VERSION";
+
+    /**
+     * One schema change
+     */
+    public static final class Migration {
+        private final int version;
+        private final String description;
+        private final List<String> statements;
+        private final long checksum;
+
+        public Migration(int version, String description, String... statements) {
+            if (version < 1) {
+                throw new IllegalArgumentException("Migration version must be positive: " + version);
+            }
+            this.version = version;
+            this.description = description;
+            this.statements = Collections.unmodifiableList(Arrays.asList(statements));
+            CRC32 crc = new CRC32();
+            for (String sql : statements) {
+                crc.update(sql.trim().getBytes(StandardCharsets.UTF_8));
+                crc.update('\n');
+            }
+            this.checksum = crc.getValue();
+        }
+
+        public int getVersion() {
+            return version;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public List<String> getStatements() {
+            return statements;
+        }
+
+        public long getChecksum() {
+            return checksum;
+        }
+    }
+
+    /**
+     * The application's migrations, in version order
+     */
+    static final List<Migration> MIGRATIONS = Collections.unmodifiableList(Arrays.asList(
+        new Migration(1, "Create Students, Courses and Grades",
+            "CREATE TABLE Students (" +
+                "stuID VARCHAR(20) PRIMARY KEY, " +
+                "name VARCHAR(50) NOT NULL, " +
+                "gender VARCHAR(10), " +
+                "major VARCHAR(50), " +
+                // YEAR is reserved in Derby, so the column is always written quoted
+                "\"YEAR\" VARCHAR(10))",
+            "CREATE TABLE Courses (" +
+                "courseID VARCHAR(20) PRIMARY KEY, " +
+                "courseName VARCHAR(100) NOT NULL, " +
+                "credit DOUBLE)",
+            "CREATE TABLE Grades (" +
+                "stuID VARCHAR(20), " +
+                "courseID VARCHAR(20), " +
+                "score DOUBLE, " +
+                "PRIMARY KEY (stuID, courseID), " +
+                "FOREIGN KEY (stuID) REFERENCES Students(stuID) ON DELETE CASCADE, " +
+                "FOREIGN KEY (courseID) REFERENCES Courses(courseID) ON DELETE CASCADE)"),
+        new Migration(2, "Index grades by course and students by major",
+            // Serves WHERE courseID = ? ORDER BY stuID without a sort
+            "CREATE INDEX idx_grades_course ON Grades (courseID, stuID)",
+            "CREATE INDEX idx_students_major ON Students (major)"),
+        new Migration(3, "Index sortable columns together with the primary key",
+            // ORDER BY column, key is read straight from these, and keyset paging starts mid-index
+            "DROP INDEX idx_students_major",
+            "CREATE INDEX idx_students_major ON Students (major, stuID)",
+            "CREATE INDEX idx_students_name ON Students (name, stuID)",
+            "CREATE INDEX idx_students_gender ON Students (gender, stuID)",
+            "CREATE INDEX idx_students_year ON Students (\"YEAR\", stuID)",
+            "CREATE INDEX idx_courses_name ON Courses (courseName, courseID)",
+            "CREATE INDEX idx_courses_credit ON Courses (credit, courseID)",
+            "CREATE INDEX idx_grades_score ON Grades (score, stuID, courseID)"),
+        new Migration(4, "Require a score on every grade",
+            // A NULL score was always read back as 0; store it that way so keyset paging by score sees what the table shows
+            "UPDATE Grades SET score = 0 WHERE score IS NULL",
+            "ALTER TABLE Grades ALTER COLUMN score NOT NULL")
+    ));
+
+    private final List<Migration> migrations;
+    private int schemaVersion = 0;
+
+    public SchemaMigrator() {
+        this(MIGRATIONS);
+    }
+
+    /**
+     * @param migrations migrations with distinct versions, in any order
+     */
+    public SchemaMigrator(List<Migration> migrations) {
+        List<Migration> sorted = new ArrayList<>(migrations);
+        sorted.sort((a, b) -> Integer.compare(a.version, b.version));
+        for (int i = 1; i < sorted.size(); i++) {
+            if (sorted.get(i).version == sorted.get(i - 1).version) {
+                throw new IllegalArgumentException("Duplicate migration version: " + sorted.get(i).version);
+            }
+        }
+        this.migrations = Collections.unmodifiableList(sorted);
+    }
+
+    /**
+     * Apply every pending migration
+     * @param conn connection with autocommit enabled; it is restored afterwards
+     * @return number of migrations applied (a baseline counts as applied)
+     * @throws SQLException if a migration fails or an applied migration was changed
+     */
+    public int migrate(Connection conn) throws SQLException {
+        // One metadata query answers every "does this table exist" question
+        Set<String> tables = tableNames(conn);
+        Map<Integer, Long> applied;
+        if (tables.contains(VERSION_TABLE)) {
+            applied = appliedChecksums(conn);
+        } else {
+            createVersionTable(conn);
+            applied = Collections.emptyMap();
+        }
+        verify(applied);
+        schemaVersion = applied.isEmpty() ? 0 : Collections.max(applied.keySet());
+        if (migrations.stream().allMatch(m -> applied.containsKey(m.version))) {
+            return 0; // Up to date: the usual case on startup
+        }
+
+        boolean baseline = applied.isEmpty() && tables.contains("STUDENTS");
+        int count = 0;
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            for (Migration m : migrations) {
+                if (applied.containsKey(m.version)) {
+                    continue;
+                }
+                long start = System.currentTimeMillis();
+                if (baseline && m.version == 1) {
+                    Log.info("✓ Existing schema recorded as V1 baseline");
+                } else {
+                    try (Statement stmt = conn.createStatement()) {
+                        for (String sql : m.statements) {
+                            stmt.execute(sql);
+                        }
+                    }
+                    Log.info(() -> "✓ Schema migrated to V" + m.version + ": " + m.description);
+                }
+                record(conn, m, System.currentTimeMillis() - start);
+                conn.commit();
+                schemaVersion = m.version;
+                count++;
+            }
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+        return count;
+    }
+
+    /**
+     * @return highest version applied as of the last {@link #migrate} call
+     */
+    public int getSchemaVersion() {
+        return schemaVersion;
+    }
+
+    /**
+     * @return highest applied version, or 0 for an empty database
+     */
+    public static int currentVersion(Connection conn) throws SQLException {
+        if (!tableExists(conn, VERSION_TABLE)) {
+            return 0;
+        }
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MAX(version) FROM " + VERSION_TABLE)) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private void verify(Map<Integer, Long> applied) throws SQLException {
+        for (Migration m : migrations) {
+            Long recorded = applied.get(m.version);
+            if (recorded != null && recorded != m.checksum) {
+                throw new SQLException("Migration V" + m.version + " (" + m.description
+                    + ") was changed after it was applied: checksum " + recorded
+                    + " in database, " + m.checksum + " in code");
+            }
+        }
+        int latest = migrations.isEmpty() ? 0 : migrations.get(migrations.size() - 1).version;
+        for (int version : applied.keySet()) {
+            if (version > latest) {
+                throw new SQLException("Database schema V" + version
+                    + " is newer than this application supports (V" + latest + ")");
+            }
+        }
+    }
+
+    private static void createVersionTable(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE " + VERSION_TABLE + " (" +
+                "version INT PRIMARY KEY, " +
+                "description VARCHAR(200) NOT NULL, " +
+                "checksum BIGINT NOT NULL, " +
+                "installedOn TIMESTAMP NOT NULL, " +
+                "executionMillis BIGINT NOT NULL)");
+        } catch (SQLException e) {
+            if (!"X0Y32".equals(e.getSQLState())) { // Created concurrently by another process
+                throw e;
+            }
+        }
+    }
+
+    private static Map<Integer, Long> appliedChecksums(Connection conn) throws SQLException {
+        Map<Integer, Long> applied = new TreeMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT version, checksum FROM " + VERSION_TABLE)) {
+            while (rs.next()) {
+                applied.put(rs.getInt(1), rs.getLong(2));
+            }
+        }
+        return applied;
+    }
+
+    private static void record(Connection conn, Migration m, long millis) throws SQLException {
+        String sql = "INSERT INTO " + VERSION_TABLE
+            + " (version, description, checksum, installedOn, executionMillis) VALUES (?, ?, ?, ?, ?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, m.version);
+            pstmt.setString(2, m.description);
+            pstmt.setLong(3, m.checksum);
+            pstmt.setTimestamp(4, new Timestamp(System.currentTimeMillis()));
+            pstmt.setLong(5, millis);
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * @return upper-case names of all tables visible to the connection
+     */
+    private static Set<String> tableNames(Connection conn) throws SQLException {
+        Set<String> names = new HashSet<>();
+        try (ResultSet rs = conn.getMetaData().getTables(null, null, null, new String[]{"TABLE"})) {
+            while (rs.next()) {
+                names.add(rs.getString("TABLE_NAME").toUpperCase());
+            }
+        }
+        return names;
+    }
+
+    private static boolean tableExists(Connection conn, String table) throws SQLException {
+        // Derby stores unquoted identifiers in upper case
+        try (ResultSet rs = conn.getMetaData().getTables(null, null, table.toUpperCase(), new String[]{"TABLE"})) {
+            return rs.next();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package sims.controller;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records when the phases of application startup begin and how long they
+ * take, measured from the start of the JVM process, so slow startups can be
+ * traced to the database boot, the schema check or the GUI.
+ * Phases may be recorded from any thread.
+ */
+public final class StartupTimer {
+
+    /** System.nanoTime() value at which the JVM process started */
+    private static final long ORIGIN = origin();
+    private static final List<Phase> PHASES = new ArrayList<>();
+
+    private StartupTimer() {
+    }
+
+    /**
+     * One recorded phase; an instant event has a duration of 0
+     */
+    public static final class Phase {
+        private final String name;
+        private final double startMillis;
+        private final double durationMillis;
+
+        Phase(String name, double startMillis, double durationMillis) {
+            this.name = name;
+            this.startMillis = startMillis;
+            this.durationMillis = durationMillis;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return milliseconds from JVM start to the beginning of the phase
+         */
+        public double getStartMillis() {
+            return startMillis;
+        }
+
+        public double getDurationMillis() {
+            return durationMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-28s at %8.1f ms  took %8.1f ms", name, startMillis, durationMillis);
+        }
+    }
+
+    /**
+     * @return timestamp to pass to {@link #record(String, long)} when the phase ends
+     */
+    public static long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Record a phase that began at startNanos and ends now
+     */
+    public static void record(String phase, long startNanos) {
+        long now = System.nanoTime();
+        add(new Phase(phase, millis(startNanos - ORIGIN), millis(now - startNanos)));
+    }
+
+    /**
+     * Record an instant event, e.g. the first paint of the window
+     */
+    public static void mark(String event) {
+        add(new Phase(event, millis(System.nanoTime() - ORIGIN), 0));
+    }
+
+    /**
+     * @return the recorded phases in the order they were recorded
+     */
+    public static List<Phase> getPhases() {
+        synchronized (PHASES) {
+            return new ArrayList<>(PHASES);
+        }
+    }
+
+    /**
+     * @return one line per phase, suitable for the log or a dialog
+     */
+    public static String report() {
+        StringBuilder sb = new StringBuilder("Startup timing (from JVM start):");
+        for (Phase p : getPhases()) {
+            sb.append("\n  ").append(p);
+        }
+        return sb.toString();
+    }
+
+    private static void add(Phase phase) {
+        synchronized (PHASES) {
+            PHASES.add(phase);
+        }
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    /**
+     * Translate the JVM start time to the System.nanoTime() scale
+     */
+    private static long origin() {
+        long uptimeMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+        return System.nanoTime() - uptimeMillis * 1_000_000L;
+    }
+}
@@ -0,0 +1,196 @@
+package sims.controller;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LRU cache of prepared statements for one physical connection, keyed by SQL text.
+ * Statements handed out by {@link #prepare(String, Connection)} are logical handles:
+ * closing one resets it and keeps the compiled statement for the next caller.
+ * Each statement is wrapped for {@link Metrics} once, when it is prepared.
+ *
+ * A cache belongs to a single pooled connection and is only touched by the
+ * thread that currently holds that connection, so it needs no locking.
+ */
+class StatementCache {
+
+    private final Connection physical;
+    private final int capacity;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final LinkedHashMap<String, Entry> entries;
+
+    /**
+     * @param physical connection the statements are prepared on
+     * @param capacity maximum number of cached statements
+     * @param hits counter shared by all caches of a pool
+     * @param misses counter shared by all caches of a pool
+     */
+    StatementCache(Connection physical, int capacity, AtomicLong hits, AtomicLong misses) {
+        this.physical = physical;
+        this.capacity = capacity;
+        this.hits = hits;
+        this.misses = misses;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Get a statement for the given SQL, preparing it only on a cache miss
+     * @param sql SQL text
+     * @param owner logical connection returned by the statement's getConnection()
+     * @return prepared statement whose close() returns it to the cache
+     * @throws SQLException if the statement cannot be prepared
+     */
+    PreparedStatement prepare(String sql, Connection owner) throws SQLException {
+        Entry entry = entries.get(sql);
+        if (entry != null && !entry.inUse && entry.statement.isClosed()) {
+            entries.remove(sql);
+            entry = null;
+        }
+        if (entry != null && !entry.inUse) {
+            hits.incrementAndGet();
+            entry.inUse = true;
+            return entry.newHandle(owner);
+        }
+        misses.incrementAndGet();
+        // Timed once here, so cache hits reuse the timing wrapper
+        PreparedStatement ps = Metrics.timed(physical.prepareStatement(sql), PreparedStatement.class, sql);
+        if (entry != null || capacity <= 0) {
+            // Caching disabled, or the same SQL is already checked out on this connection
+            return ps;
+        }
+        entry = new Entry(ps);
+        entry.inUse = true;
+        entries.put(sql, entry);
+        evictIfNeeded();
+        return entry.newHandle(owner);
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (entries.size() > capacity && it.hasNext()) {
+            Entry eldest = it.next().getValue();
+            if (!eldest.inUse) {
+                it.remove();
+                closeQuietly(eldest.statement);
+            }
+        }
+    }
+
+    /**
+     * @return number of statements currently cached
+     */
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Close every cached statement; called before the physical connection is closed
+     */
+    void clear() {
+        for (Entry e : entries.values()) {
+            closeQuietly(e.statement);
+        }
+        entries.clear();
+    }
+
+    private static void closeQuietly(PreparedStatement ps) {
+        try {
+            ps.close();
+        } catch (SQLException e) {
+            // Statement is being discarded anyway
+        }
+    }
+
+    /**
+     * One cached statement
+     */
+    private static final class Entry {
+        final PreparedStatement statement;
+        boolean inUse;
+
+        Entry(PreparedStatement statement) {
+            this.statement = statement;
+        }
+
+        PreparedStatement newHandle(Connection owner) {
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    StatementCache.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    new Handle(this, owner));
+        }
+    }
+
+    /**
+     * Forwards to the cached statement; close() resets it instead of closing it
+     */
+    private static final class Handle implements InvocationHandler {
+        private final Entry entry;
+        private final Connection owner;
+        private boolean closed = false;
+
+        Handle(Entry entry, Connection owner) {
+            this.entry = entry;
+            this.owner = owner;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        reset();
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || entry.statement.isClosed();
+                case "getConnection":
+                    return owner;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "CachedStatement[" + entry.statement + "]";
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Statement is closed", "XJ012");
+            }
+            try {
+                return method.invoke(entry.statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        private void reset() {
+            PreparedStatement ps = entry.statement;
+            try {
+                ResultSet rs = ps.getResultSet();
+                if (rs != null) {
+                    rs.close();
+                }
+                ps.clearParameters();
+                ps.clearBatch();
+                ps.clearWarnings();
+            } catch (SQLException e) {
+                // A statement that cannot be reset is still returned; the next execute re-binds it
+            } finally {
+                entry.inUse = false;
+            }
+        }
+    }
+}
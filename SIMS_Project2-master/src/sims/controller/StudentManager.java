@@ -1,77 +1,178 @@
 package sims.controller;
 
 import sims.model.Student;
+import sims.model.StudentRecord;
+import sims.controller.BatchResult.Status;
+import sims.controller.EntityEventBus.Kind;
+import sims.controller.EntityEventBus.Topic;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Student Manager with Database operations
  * Implements Manager interface for CRUD operations
  */
+@SuppressWarnings("try") // the Metrics.Timer of each operation is only ever closed
 public class StudentManager implements Manager<Student> {
+
+    /** Shared by all StudentManager instances so every panel sees the same invalidations */
+    private static final EntityCache<Student> CACHE = new EntityCache<>(
+        Integer.getInteger("sims.cache.students", 10_000), StudentManager::copy);
+
+    /** Student IDs and names for type-ahead, read on first use and then kept current by change events */
+    private static final PrefixIndex ID_INDEX = new PrefixIndex();
+    /** Full-text index, loaded and kept current together with ID_INDEX */
+    private static final TextIndex<Student> TEXT_INDEX = new TextIndex<>(Student::getStuID,
+        StudentManager::copy,
+        TextIndex.Field.of("name", Student::getName, 2),
+        TextIndex.Field.of("major", Student::getMajor, 1));
+    private static volatile boolean indexesLoaded = false;
+    /** Guards the indexes' writers, so loadIndexes can replay what it missed */
+    private static final Object INDEX_WRITES = new Object();
+    /** Changes published while loadIndexes reads the table; null when no load is running */
+    private static List<EntityEventBus.Event<Student>> changesWhileLoading = null;
+
+    static {
+        EntityEventBus bus = EntityEventBus.shared();
+        CACHE.invalidateOn(bus, Topic.STUDENTS);
+        bus.subscribe(Topic.STUDENTS, Runnable::run, events -> {
+            synchronized (INDEX_WRITES) {
+                if (changesWhileLoading != null) {
+                    // Applied by loadIndexes once it has replaced the indexes
+                    changesWhileLoading.addAll(events);
+                } else if (!applyToIndexes(events)) {
+                    indexesLoaded = false;
+                }
+            }
+        });
+    }
+
+    /**
+     * Apply change events to the search indexes
+     * @return false if an event carries no row, so the indexes must be read again
+     */
+    private static boolean applyToIndexes(List<EntityEventBus.Event<Student>> events) {
+        boolean complete = true;
+        for (EntityEventBus.Event<Student> e : events) {
+            switch (e.getKind()) {
+                case CREATED:
+                case UPDATED:
+                    if (e.getValue() == null) {
+                        complete = false;
+                        break;
+                    }
+                    ID_INDEX.put(e.getKey(), e.getValue().getName());
+                    TEXT_INDEX.put(e.getValue());
+                    break;
+                case DELETED:
+                    ID_INDEX.remove(e.getKey());
+                    TEXT_INDEX.remove(e.getKey());
+                    break;
+                default:
+                    complete = false;
+                    break;
+            }
+        }
+        return complete;
+    }
+
+    /** Fields criteria may filter and sort students on */
+    private static final Criteria.Table<Student> TABLE = new Criteria.Table<Student>("Students",
+            rs -> new Student(rs.getString("stuID"), rs.getString("name"), rs.getString("gender"),
+                rs.getString("major"), rs.getString("year")), "stuID")
+        .column("stuID", Student::getStuID, false)
+        .column("name", Student::getName, false)
+        .column("gender", Student::getGender, true)
+        .column("major", Student::getMajor, true)
+        .column("year", "\"YEAR\"", Student::getYear, true);
+
+    private static final String INSERT_SQL =
+        "INSERT INTO Students (stuID, name, gender, major, \"YEAR\") VALUES (?, ?, ?, ?, ?)";
+    private static final String UPDATE_SQL =
+        "UPDATE Students SET name=?, gender=?, major=?, \"YEAR\"=? WHERE stuID=?";
+
+    private int batchSize = BatchExecutor.DEFAULT_BATCH_SIZE;
     
     @Override
     public void add(Student s) {
-        // Check if student already exists
-        if (search(s.getStuID()) != null) {
-            System.out.println("✗ Add failed! Student ID already exists: " + s.getStuID());
-            return;
-        }
-        
-        String sql = "INSERT INTO Students (stuID, name, gender, major, year) VALUES (?, ?, ?, ?, ?)";
-        try (PreparedStatement pstmt = DBHelper.prepareStatement(sql)) {
-            pstmt.setString(1, s.getStuID());
-            pstmt.setString(2, s.getName());
-            pstmt.setString(3, s.getGender());
-            pstmt.setString(4, s.getMajor());
-            pstmt.setString(5, s.getYear());
-            pstmt.executeUpdate();
-            System.out.println("✓ Student added successfully: " + s);
-        } catch (SQLException e) {
-            System.err.println("✗ Error adding student: " + e.getMessage());
+        try (Metrics.Timer timer = Metrics.time("StudentManager.add")) {
+            // The primary key rejects duplicates, so no lookup is needed first
+            try (Connection conn = DBHelper.borrowConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(INSERT_SQL)) {
+                bindInsert(pstmt, s);
+                pstmt.executeUpdate();
+                EntityEventBus.shared().publish(Topic.STUDENTS, Kind.CREATED, s.getStuID(), s);
+                Log.debug(() -> "✓ Student added successfully: " + s);
+            } catch (SQLException e) {
+                if ("23505".equals(e.getSQLState())) {
+                    Log.warn("✗ Add failed! Student ID already exists: " + s.getStuID());
+                } else {
+                    Log.error("✗ Error adding student: " + e.getMessage());
+                }
+            }
         }
     }
 
     @Override
     public void delete(String id) {
-        String sql = "DELETE FROM Students WHERE stuID = ?";
-        try (PreparedStatement pstmt = DBHelper.prepareStatement(sql)) {
-            pstmt.setString(1, id);
-            int rows = pstmt.executeUpdate();
-            if (rows > 0) {
-                System.out.println("✓ Deleted successfully! StudentID: " + id);
-            } else {
-                System.out.println("✗ Delete failed! Student ID not found: " + id);
+        try (Metrics.Timer timer = Metrics.time("StudentManager.delete")) {
+            String sql = "DELETE FROM Students WHERE stuID = ?";
+            try (Connection conn = DBHelper.borrowConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, id);
+                int rows = pstmt.executeUpdate();
+                if (rows > 0) {
+                    EntityEventBus.shared().publish(Topic.STUDENTS, Kind.DELETED, id, null);
+                    // ON DELETE CASCADE removed their grades as well
+                    EntityEventBus.shared().invalidate(Topic.GRADES);
+                    Log.debug(() -> "✓ Deleted successfully! StudentID: " + id);
+                } else {
+                    Log.warn("✗ Delete failed! Student ID not found: " + id);
+                }
+            } catch (SQLException e) {
+                Log.error("✗ Error deleting student: " + e.getMessage());
             }
-        } catch (SQLException e) {
-            System.err.println("✗ Error deleting student: " + e.getMessage());
         }
     }
 
     @Override
     public void update(Student s) {
-        String sql = "UPDATE Students SET name=?, gender=?, major=?, year=? WHERE stuID=?";
-        try (PreparedStatement pstmt = DBHelper.prepareStatement(sql)) {
-            pstmt.setString(1, s.getName());
-            pstmt.setString(2, s.getGender());
-            pstmt.setString(3, s.getMajor());
-            pstmt.setString(4, s.getYear());
-            pstmt.setString(5, s.getStuID());
-            int rows = pstmt.executeUpdate();
-            if (rows > 0) {
-                System.out.println("✓ Updated successfully: " + s);
-            } else {
-                System.out.println("✗ Update failed! Student ID not found: " + s.getStuID());
+        try (Metrics.Timer timer = Metrics.time("StudentManager.update")) {
+            try (Connection conn = DBHelper.borrowConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(UPDATE_SQL)) {
+                bindUpdate(pstmt, s);
+                int rows = pstmt.executeUpdate();
+                if (rows > 0) {
+                    EntityEventBus.shared().publish(Topic.STUDENTS, Kind.UPDATED, s.getStuID(), s);
+                    Log.debug(() -> "✓ Updated successfully: " + s);
+                } else {
+                    Log.warn("✗ Update failed! Student ID not found: " + s.getStuID());
+                }
+            } catch (SQLException e) {
+                Log.error("✗ Error updating student: " + e.getMessage());
             }
-        } catch (SQLException e) {
-            System.err.println("✗ Error updating student: " + e.getMessage());
         }
     }
 
     @Override
     public Student search(String id) {
+        try (Metrics.Timer timer = Metrics.time("StudentManager.search")) {
+            return CACHE.get(id, this::load);
+        }
+    }
+
+    /**
+     * Read one student from the database, bypassing the cache
+     */
+    private Student load(String id) {
         String sql = "SELECT * FROM Students WHERE stuID = ?";
-        try (PreparedStatement pstmt = DBHelper.prepareStatement(sql)) {
+        try (Connection conn = DBHelper.borrowConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, id);
             ResultSet rs = pstmt.executeQuery();
             if (rs.next()) {
@@ -84,11 +185,77 @@ public class StudentManager implements Manager<Student> {
                 );
             }
         } catch (SQLException e) {
-            System.err.println("✗ Error searching student: " + e.getMessage());
+            Log.error("✗ Error searching student: " + e.getMessage());
         }
         return null;
     }
 
+    @Override
+    public BatchResult addAll(Collection<? extends Student> students) {
+        try (Metrics.Timer timer = Metrics.time("StudentManager.addAll")) {
+            BatchResult result = BatchExecutor.execute(INSERT_SQL, students, batchSize,
+                StudentManager::bindInsert, Student::getStuID, Status.INSERTED, Status.FAILED);
+            EntityEventBus.shared().publish(Topic.STUDENTS, result, students);
+            return result;
+        }
+    }
+
+    @Override
+    public BatchResult updateAll(Collection<? extends Student> students) {
+        try (Metrics.Timer timer = Metrics.time("StudentManager.updateAll")) {
+            BatchResult result = BatchExecutor.execute(UPDATE_SQL, students, batchSize,
+                StudentManager::bindUpdate, Student::getStuID, Status.UPDATED, Status.NOT_FOUND);
+            EntityEventBus.shared().publish(Topic.STUDENTS, result, students);
+            return result;
+        }
+    }
+
+    /**
+     * Insert the student, or update it if it already exists
+     * @return INSERTED, UPDATED or FAILED
+     */
+    @Override
+    public Status upsert(Student s) {
+        BatchResult.RowOutcome outcome = upsertAll(Collections.singletonList(s)).getOutcomes().get(0);
+        if (outcome.getStatus() == Status.FAILED) {
+            Log.error("✗ Error saving student: " + outcome.getMessage());
+        }
+        return outcome.getStatus();
+    }
+
+    @Override
+    public BatchResult upsertAll(Collection<? extends Student> students) {
+        try (Metrics.Timer timer = Metrics.time("StudentManager.upsertAll")) {
+            BatchResult result = BatchExecutor.upsert(UPDATE_SQL, StudentManager::bindUpdate,
+                INSERT_SQL, StudentManager::bindInsert, students, batchSize, Student::getStuID);
+            EntityEventBus.shared().publish(Topic.STUDENTS, result, students);
+            return result;
+        }
+    }
+
+    @Override
+    public BatchResult deleteAll(Collection<String> ids) {
+        try (Metrics.Timer timer = Metrics.time("StudentManager.deleteAll")) {
+            String sql = "DELETE FROM Students WHERE stuID = ?";
+            BatchResult result = BatchExecutor.<String>execute(sql, ids, batchSize,
+                (pstmt, id) -> pstmt.setString(1, id),
+                id -> id, Status.DELETED, Status.NOT_FOUND);
+            EntityEventBus.shared().publish(Topic.STUDENTS, result, null);
+            if (result.getSucceeded() > 0) {
+                EntityEventBus.shared().invalidate(Topic.GRADES);
+            }
+            return result;
+        }
+    }
+
+    @Override
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.batchSize = batchSize;
+    }
+
     @Override
     public void displayAll() {
         ArrayList<Student> students = getAllStudents();
@@ -108,23 +275,266 @@ public class StudentManager implements Manager<Student> {
      * @return ArrayList of all students
      */
     public ArrayList<Student> getAllStudents() {
-        ArrayList<Student> students = new ArrayList<>();
-        String sql = "SELECT * FROM Students ORDER BY stuID";
-        try (Statement stmt = DBHelper.getConnection().createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+        try (Metrics.Timer timer = Metrics.time("StudentManager.getAllStudents")) {
+            ArrayList<Student> students = new ArrayList<>();
+            String sql = "SELECT * FROM Students ORDER BY stuID";
+            try (Connection conn = DBHelper.borrowConnection();
+                 Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery(sql)) {
+                while (rs.next()) {
+                    Student s = new Student(
+                        rs.getString("stuID"),
+                        rs.getString("name"),
+                        rs.getString("gender"),
+                        rs.getString("major"),
+                        rs.getString("year")
+                    );
+                    students.add(s);
+                }
+            } catch (SQLException e) {
+                Log.error("✗ Error retrieving students: " + e.getMessage());
+            }
+            return students;
+        }
+    }
+
+    /**
+     * Get all students as compact immutable rows for large read-only rosters
+     * @return ArrayList of all students in stuID order
+     */
+    public ArrayList<StudentRecord> getAllStudentRecords() {
+        try (Metrics.Timer timer = Metrics.time("StudentManager.getAllStudentRecords")) {
+            ArrayList<StudentRecord> students = new ArrayList<>();
+            String sql = "SELECT stuID, name, gender, major, \"YEAR\" FROM Students ORDER BY stuID";
+            try (Connection conn = DBHelper.borrowConnection();
+                 Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery(sql)) {
+                while (rs.next()) {
+                    students.add(new StudentRecord(rs.getString(1), rs.getString(2),
+                        rs.getString(3), rs.getString(4), rs.getString(5)));
+                }
+            } catch (SQLException e) {
+                Log.error("✗ Error retrieving students: " + e.getMessage());
+            }
+            return students;
+        }
+    }
+
+    /**
+     * Get the next page of students in stuID order (keyset pagination)
+     * @param afterStuID last stuID of the previous page, or null for the first page
+     * @param limit maximum number of students to return
+     * @return up to limit students with stuID greater than afterStuID
+     */
+    public ArrayList<Student> getStudentsAfter(String afterStuID, int limit) {
+        try (Metrics.Timer timer = Metrics.time("StudentManager.getStudentsAfter")) {
+            String sql = afterStuID == null
+                ? "SELECT * FROM Students ORDER BY stuID FETCH FIRST ? ROWS ONLY"
+                : "SELECT * FROM Students WHERE stuID > ? ORDER BY stuID FETCH FIRST ? ROWS ONLY";
+            ArrayList<Student> students = new ArrayList<>();
+            try (Connection conn = DBHelper.borrowConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                int i = 1;
+                if (afterStuID != null) {
+                    pstmt.setString(i++, afterStuID);
+                }
+                pstmt.setInt(i, limit);
+                readStudents(pstmt, students);
+            } catch (SQLException e) {
+                Log.error("✗ Error retrieving students: " + e.getMessage());
+            }
+            return students;
+        }
+    }
+
+    /**
+     * Get a page of students by position in stuID order
+     * Prefer {@link #getStudentsAfter} for sequential paging; this is for random jumps
+     * @param offset number of students to skip
+     * @param limit maximum number of students to return
+     */
+    public ArrayList<Student> getStudentsPage(int offset, int limit) {
+        try (Metrics.Timer timer = Metrics.time("StudentManager.getStudentsPage")) {
+            String sql = "SELECT * FROM Students ORDER BY stuID OFFSET ? ROWS FETCH NEXT ? ROWS ONLY";
+            ArrayList<Student> students = new ArrayList<>();
+            try (Connection conn = DBHelper.borrowConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setInt(1, offset);
+                pstmt.setInt(2, limit);
+                readStudents(pstmt, students);
+            } catch (SQLException e) {
+                Log.error("✗ Error retrieving students: " + e.getMessage());
+            }
+            return students;
+        }
+    }
+
+    @Override
+    public Criteria<Student> criteria() {
+        return new Criteria<>(TABLE);
+    }
+
+    /**
+     * Get the students matching the criteria, in its order
+     */
+    @Override
+    public ArrayList<Student> find(Criteria<Student> criteria) {
+        try (Metrics.Timer timer = Metrics.time("StudentManager.find")) {
+            return TABLE.find(criteria);
+        }
+    }
+
+    /**
+     * @return number of students matching the criteria, ignoring its order and limits, or 0 if the query fails
+     */
+    @Override
+    public int count(Criteria<Student> criteria) {
+        try (Metrics.Timer timer = Metrics.time("StudentManager.count")) {
+            return TABLE.count(criteria);
+        }
+    }
+
+    /**
+     * @return number of students, or 0 if the query fails
+     */
+    public int countStudents() {
+        try (Metrics.Timer timer = Metrics.time("StudentManager.countStudents")) {
+            return DBHelper.count("Students");
+        }
+    }
+
+    private static void readStudents(PreparedStatement pstmt, ArrayList<Student> students) throws SQLException {
+        try (ResultSet rs = pstmt.executeQuery()) {
             while (rs.next()) {
-                Student s = new Student(
+                students.add(new Student(
                     rs.getString("stuID"),
                     rs.getString("name"),
                     rs.getString("gender"),
                     rs.getString("major"),
                     rs.getString("year")
-                );
-                students.add(s);
+                ));
             }
-        } catch (SQLException e) {
-            System.err.println("✗ Error retrieving students: " + e.getMessage());
         }
-        return students;
+    }
+
+    /**
+     * Get all student IDs in order, without loading the other columns
+     */
+    public ArrayList<String> getStudentIDs() {
+        try (Metrics.Timer timer = Metrics.time("StudentManager.getStudentIDs")) {
+            ArrayList<String> ids = new ArrayList<>();
+            try (Connection conn = DBHelper.borrowConnection();
+                 PreparedStatement pstmt = conn.prepareStatement("SELECT stuID FROM Students ORDER BY stuID");
+                 ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getString(1));
+                }
+            } catch (SQLException e) {
+                Log.error("✗ Error retrieving student IDs: " + e.getMessage());
+            }
+            return ids;
+        }
+    }
+
+    /**
+     * Get the type-ahead index of student IDs and names, reading it from the
+     * database on first use. Later changes are applied from change events.
+     */
+    public PrefixIndex getIdIndex() {
+        try (Metrics.Timer timer = Metrics.time("StudentManager.getIdIndex")) {
+            loadIndexes();
+            return ID_INDEX;
+        }
+    }
+
+    /**
+     * Full-text search over names and majors, tolerating prefixes and small typing mistakes
+     * @param text words to find, e.g. "li computer science"
+     * @param limit maximum number of results
+     * @return matching students, best match first
+     */
+    public ArrayList<Student> searchByText(String text, int limit) {
+        try (Metrics.Timer timer = Metrics.time("StudentManager.searchByText")) {
+            loadIndexes();
+            ArrayList<Student> found = new ArrayList<>();
+            for (TextIndex.Hit<Student> hit : TEXT_INDEX.search(text, limit)) {
+                found.add(hit.getValue());
+            }
+            return found;
+        }
+    }
+
+    /**
+     * Read the search indexes from the database unless they are current
+     */
+    private static void loadIndexes() {
+        if (indexesLoaded) {
+            return;
+        }
+        synchronized (ID_INDEX) {
+            // Read again if a replayed change carries no row
+            while (!indexesLoaded) {
+                synchronized (INDEX_WRITES) {
+                    changesWhileLoading = new ArrayList<>();
+                }
+                Map<String, String> names = new HashMap<>();
+                ArrayList<Student> rows = new ArrayList<>();
+                boolean read = false;
+                try (Connection conn = DBHelper.borrowConnection();
+                     PreparedStatement pstmt = conn.prepareStatement("SELECT * FROM Students");
+                     ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        Student row = new Student(rs.getString("stuID"), rs.getString("name"),
+                            rs.getString("gender"), rs.getString("major"), rs.getString("year"));
+                        rows.add(row);
+                        names.put(row.getStuID(), row.getName());
+                    }
+                    read = true;
+                } catch (SQLException e) {
+                    Log.error("✗ Error loading student search index: " + e.getMessage());
+                } finally {
+                    synchronized (INDEX_WRITES) {
+                        if (read) {
+                            ID_INDEX.replaceAll(names);
+                            TEXT_INDEX.replaceAll(rows);
+                        }
+                        // Changes committed while reading may be missing from the rows
+                        List<EntityEventBus.Event<Student>> missed = changesWhileLoading;
+                        changesWhileLoading = null;
+                        indexesLoaded = applyToIndexes(missed) && read;
+                    }
+                }
+                if (!read) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the shared search cache, for hit-rate statistics and sizing
+     */
+    public static EntityCache<Student> getCache() {
+        return CACHE;
+    }
+
+    private static Student copy(Student s) {
+        return new Student(s.getStuID(), s.getName(), s.getGender(), s.getMajor(), s.getYear());
+    }
+
+    private static void bindInsert(PreparedStatement pstmt, Student s) throws SQLException {
+        pstmt.setString(1, s.getStuID());
+        pstmt.setString(2, s.getName());
+        pstmt.setString(3, s.getGender());
+        pstmt.setString(4, s.getMajor());
+        pstmt.setString(5, s.getYear());
+    }
+
+    private static void bindUpdate(PreparedStatement pstmt, Student s) throws SQLException {
+        pstmt.setString(1, s.getName());
+        pstmt.setString(2, s.getGender());
+        pstmt.setString(3, s.getMajor());
+        pstmt.setString(4, s.getYear());
+        pstmt.setString(5, s.getStuID());
     }
 }
\ No newline at end of file
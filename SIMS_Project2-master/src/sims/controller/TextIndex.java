@@ -0,0 +1,412 @@
+package sims.controller;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * In-memory inverted index for full-text search over text columns, e.g.
+ * student names and majors. Every word of every indexed field points to the
+ * rows that contain it, so a search only touches the rows that match instead
+ * of scanning the table the way LIKE '%..%' would.
+ *
+ * Each query word matches a word of a row exactly, as a prefix, or within
+ * one or two typing mistakes (edit distance); a row must match every query
+ * word. Results are ranked by match quality, field weight and how rare the
+ * matched word is, so "li computer science" puts students named Li who
+ * study Computer Science first.
+ *
+ * Rows are added, changed and removed one at a time as they are written.
+ * Safe for use from several threads; the rows are copied on the way in
+ * and out.
+ */
+public final class TextIndex<T> {
+
+    /** Query words shorter than this are only matched exactly or as a prefix */
+    private static final int MIN_FUZZY_LENGTH = 3;
+    /** Query words at least this long may have two mistakes instead of one */
+    private static final int TWO_EDITS_LENGTH = 7;
+
+    private static final double EXACT = 1.0;
+    private static final double PREFIX = 0.6;
+    private static final double ONE_EDIT = 0.4;
+    private static final double TWO_EDITS = 0.2;
+
+    /**
+     * One indexed column
+     */
+    public static final class Field<T> {
+        private final String name;
+        private final Function<T, String> text;
+        private final double weight;
+
+        private Field(String name, Function<T, String> text, double weight) {
+            this.name = name;
+            this.text = text;
+            this.weight = weight;
+        }
+
+        /**
+         * @param weight relative importance of a match in this field, e.g. 2 for names and 1 for majors
+         */
+        public static <T> Field<T> of(String name, Function<T, String> text, double weight) {
+            if (weight <= 0) {
+                throw new IllegalArgumentException("weight must be positive: " + weight);
+            }
+            return new Field<>(name, text, weight);
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    /**
+     * One row found by {@link #search}
+     */
+    public static final class Hit<T> {
+        private final T value;
+        private final double score;
+
+        Hit(T value, double score) {
+            this.value = value;
+            this.score = score;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        /**
+         * @return relevance, higher is better; only comparable within one search
+         */
+        public double getScore() {
+            return score;
+        }
+    }
+
+    private final Function<T, String> keyOf;
+    private final UnaryOperator<T> copy;
+    private final List<Field<T>> fields;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    /** Word to the rows containing it, each with a bit per field the word is in */
+    private final NavigableMap<String, Map<String, Integer>> postings = new TreeMap<>();
+    private final Map<String, Doc<T>> rows = new HashMap<>();
+
+    /**
+     * @param keyOf primary key of a row
+     * @param copy copies a row, so callers cannot change indexed rows behind the index's back
+     */
+    @SafeVarargs
+    public TextIndex(Function<T, String> keyOf, UnaryOperator<T> copy, Field<T>... fields) {
+        if (fields.length == 0 || fields.length > Integer.SIZE) {
+            throw new IllegalArgumentException("between 1 and " + Integer.SIZE + " fields required");
+        }
+        this.keyOf = keyOf;
+        this.copy = copy;
+        List<Field<T>> copied = new ArrayList<>(fields.length);
+        for (Field<T> f : fields) {
+            copied.add(f);
+        }
+        this.fields = Collections.unmodifiableList(copied);
+    }
+
+    /**
+     * Add a row, or replace the row with the same key
+     */
+    public void put(T row) {
+        T stored = copy.apply(row);
+        String key = keyOf.apply(stored);
+        lock.writeLock().lock();
+        try {
+            removeLocked(key);
+            addLocked(key, stored);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String key) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(key);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replace the whole contents, e.g. after loading from the database
+     */
+    public void replaceAll(Collection<? extends T> all) {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            rows.clear();
+            for (T row : all) {
+                T stored = copy.apply(row);
+                addLocked(keyOf.apply(stored), stored);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return rows.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return number of distinct indexed words
+     */
+    public int terms() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Find the rows that match every word of the text
+     * @param limit maximum number of rows
+     * @return up to limit rows, best first; ties in key order. Empty for blank text.
+     */
+    public List<Hit<T>> search(String text, int limit) {
+        Set<String> queryWords = new LinkedHashSet<>(PrefixIndex.tokens(text == null ? "" : text));
+        List<Hit<T>> hits = new ArrayList<>();
+        if (queryWords.isEmpty() || limit <= 0) {
+            return hits;
+        }
+        Comparator<Scored> worstFirst = Comparator.<Scored>comparingDouble(c -> c.score)
+            .thenComparing(Comparator.<Scored, String>comparing(c -> c.key).reversed());
+        PriorityQueue<Scored> top = new PriorityQueue<>(worstFirst);
+        lock.readLock().lock();
+        try {
+            // Words each query word matches, with the score of a match
+            List<Map<String, Double>> matches = new ArrayList<>();
+            int driver = 0;
+            long fewest = Long.MAX_VALUE;
+            for (String q : queryWords) {
+                Map<String, Double> terms = matchingTerms(q);
+                if (terms.isEmpty()) {
+                    return hits;
+                }
+                long rowCount = 0;
+                for (String term : terms.keySet()) {
+                    rowCount += postings.get(term).size();
+                }
+                if (rowCount < fewest) {
+                    fewest = rowCount;
+                    driver = matches.size();
+                }
+                matches.add(terms);
+            }
+            // Only rows matched by the rarest query word can match them all; check the others row by row
+            Map<String, Double> candidates = new HashMap<>();
+            for (Map.Entry<String, Double> t : matches.get(driver).entrySet()) {
+                for (Map.Entry<String, Integer> p : postings.get(t.getKey()).entrySet()) {
+                    candidates.merge(p.getKey(), t.getValue() * weight(p.getValue()), Math::max);
+                }
+            }
+            candidates:
+            for (Map.Entry<String, Double> c : candidates.entrySet()) {
+                Doc<T> doc = rows.get(c.getKey());
+                double total = c.getValue();
+                for (int i = 0; i < matches.size(); i++) {
+                    if (i != driver) {
+                        double s = doc.score(matches.get(i));
+                        if (s == 0) {
+                            continue candidates;
+                        }
+                        total += s;
+                    }
+                }
+                Scored scored = new Scored(c.getKey(), total);
+                if (top.size() < limit) {
+                    top.add(scored);
+                } else if (worstFirst.compare(scored, top.peek()) > 0) {
+                    top.poll();
+                    top.add(scored);
+                }
+            }
+            while (!top.isEmpty()) {
+                Scored best = top.poll();
+                hits.add(new Hit<>(copy.apply(rows.get(best.key).value), best.score));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        Collections.reverse(hits);
+        return hits;
+    }
+
+    /**
+     * @return indexed words matching one query word, each with its match quality times its rarity
+     */
+    private Map<String, Double> matchingTerms(String q) {
+        Map<String, Double> terms = new HashMap<>();
+        if (postings.containsKey(q)) {
+            terms.put(q, EXACT * idf(q));
+        }
+        for (String term : postings.subMap(q, false, q + Character.MAX_VALUE, false).keySet()) {
+            terms.put(term, PREFIX * idf(term));
+        }
+        if (q.length() >= MIN_FUZZY_LENGTH) {
+            int maxEdits = q.length() >= TWO_EDITS_LENGTH ? 2 : 1;
+            // Mistakes in the first letter are rare; keeping it narrows the scan to one letter's words
+            String first = q.substring(0, 1);
+            for (String term : postings.subMap(first, true, first + Character.MAX_VALUE, false).keySet()) {
+                if (term.startsWith(q) || Math.abs(term.length() - q.length()) > maxEdits) {
+                    continue;
+                }
+                int d = editDistance(q, term, maxEdits);
+                if (d <= maxEdits) {
+                    terms.put(term, (d == 1 ? ONE_EDIT : TWO_EDITS) * idf(term));
+                }
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Rare words tell rows apart better than common ones
+     */
+    private double idf(String term) {
+        return Math.log(1.0 + (double) rows.size() / postings.get(term).size());
+    }
+
+    /**
+     * @return weight of the most important field in the mask
+     */
+    private double weight(int fieldMask) {
+        double w = 0;
+        for (int i = 0; i < fields.size(); i++) {
+            if ((fieldMask & (1 << i)) != 0) {
+                w = Math.max(w, fields.get(i).weight);
+            }
+        }
+        return w;
+    }
+
+    private void addLocked(String key, T row) {
+        Doc<T> doc = new Doc<>(row, fields);
+        rows.put(key, doc);
+        for (int i = 0; i < doc.words.length; i++) {
+            for (String word : doc.words[i]) {
+                postings.computeIfAbsent(word, w -> new HashMap<>()).merge(key, 1 << i, (a, b) -> a | b);
+            }
+        }
+    }
+
+    private void removeLocked(String key) {
+        Doc<T> doc = rows.remove(key);
+        if (doc == null) {
+            return;
+        }
+        for (String[] fieldWords : doc.words) {
+            for (String word : fieldWords) {
+                Map<String, Integer> posting = postings.get(word);
+                if (posting != null) {
+                    posting.remove(key);
+                    if (posting.isEmpty()) {
+                        postings.remove(word);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * An indexed row and the words of each of its fields
+     */
+    private static final class Doc<T> {
+        final T value;
+        final String[][] words;
+        final double[] weights;
+
+        Doc(T value, List<Field<T>> fields) {
+            this.value = value;
+            this.words = new String[fields.size()][];
+            this.weights = new double[fields.size()];
+            for (int i = 0; i < fields.size(); i++) {
+                String text = fields.get(i).text.apply(value);
+                words[i] = text == null ? new String[0] : PrefixIndex.tokens(text).toArray(new String[0]);
+                weights[i] = fields.get(i).weight;
+            }
+        }
+
+        /**
+         * @return best score of the row's words among the given matches, 0 if none match
+         */
+        double score(Map<String, Double> terms) {
+            double best = 0;
+            for (int i = 0; i < words.length; i++) {
+                for (String word : words[i]) {
+                    Double s = terms.get(word);
+                    if (s != null) {
+                        best = Math.max(best, s * weights[i]);
+                    }
+                }
+            }
+            return best;
+        }
+    }
+
+    private static final class Scored {
+        final String key;
+        final double score;
+
+        Scored(String key, double score) {
+            this.key = key;
+            this.score = score;
+        }
+    }
+
+    /**
+     * Levenshtein distance, giving up once it must exceed max
+     * @return the distance, or max + 1 if it is larger than max
+     */
+    static int editDistance(String a, String b, int max) {
+        int[] prev = new int[b.length() + 1];
+        int[] cur = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            prev[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            cur[0] = i;
+            int rowMin = cur[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                cur[j] = Math.min(Math.min(cur[j - 1] + 1, prev[j] + 1), prev[j - 1] + cost);
+                rowMin = Math.min(rowMin, cur[j]);
+            }
+            if (rowMin > max) {
+                return max + 1;
+            }
+            int[] t = prev;
+            prev = cur;
+            cur = t;
+        }
+        return Math.min(prev[b.length()], max + 1);
+    }
+}
@@ -0,0 +1,175 @@
+package sims.controller;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One student's graded courses with credit-weighted GPA.
+ * Built by {@link TranscriptService}; immutable once returned.
+ */
+public class Transcript {
+
+    /**
+     * Letter grades of the 9-point scale, highest first.
+     * A score earns the first letter whose minimum it reaches.
+     */
+    public enum Letter {
+        A_PLUS("A+", 90, 9),
+        A("A", 85, 8),
+        A_MINUS("A-", 80, 7),
+        B_PLUS("B+", 75, 6),
+        B("B", 70, 5),
+        B_MINUS("B-", 65, 4),
+        C_PLUS("C+", 60, 3),
+        C("C", 55, 2),
+        C_MINUS("C-", 50, 1),
+        D("D", Double.NEGATIVE_INFINITY, 0);
+
+        private final String label;
+        private final double minScore;
+        private final int points;
+
+        Letter(String label, double minScore, int points) {
+            this.label = label;
+            this.minScore = minScore;
+            this.points = points;
+        }
+
+        public static Letter of(double score) {
+            for (Letter l : values()) {
+                if (score >= l.minScore) {
+                    return l;
+                }
+            }
+            return D;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public double getMinScore() {
+            return minScore;
+        }
+
+        public int getPoints() {
+            return points;
+        }
+
+        /**
+         * @return true if the grade earns the course credits
+         */
+        public boolean isPass() {
+            return points > 0;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    /**
+     * One graded course
+     */
+    public static class Line {
+        private final String courseID;
+        private final String courseName;
+        private final double credit;
+        private final double score;
+        private final Letter letter;
+
+        Line(String courseID, String courseName, double credit, double score) {
+            this.courseID = courseID;
+            this.courseName = courseName;
+            this.credit = credit;
+            this.score = score;
+            this.letter = Letter.of(score);
+        }
+
+        public String getCourseID() {
+            return courseID;
+        }
+
+        public String getCourseName() {
+            return courseName;
+        }
+
+        public double getCredit() {
+            return credit;
+        }
+
+        public double getScore() {
+            return score;
+        }
+
+        public Letter getLetter() {
+            return letter;
+        }
+
+        @Override
+        public String toString() {
+            return courseID + " " + courseName + " (" + credit + " cr): " + score + " " + letter;
+        }
+    }
+
+    private final String stuID;
+    private final List<Line> lines;
+    private final double creditsAttempted;
+    private final double creditsEarned;
+    private final double gpa;
+
+    Transcript(String stuID, List<Line> lines) {
+        this.stuID = stuID;
+        this.lines = Collections.unmodifiableList(new ArrayList<>(lines));
+        double attempted = 0;
+        double earned = 0;
+        double weightedPoints = 0;
+        for (Line line : lines) {
+            attempted += line.credit;
+            weightedPoints += line.credit * line.letter.points;
+            if (line.letter.isPass()) {
+                earned += line.credit;
+            }
+        }
+        this.creditsAttempted = attempted;
+        this.creditsEarned = earned;
+        this.gpa = attempted > 0 ? weightedPoints / attempted : 0;
+    }
+
+    public String getStuID() {
+        return stuID;
+    }
+
+    /**
+     * @return graded courses in course ID order
+     */
+    public List<Line> getLines() {
+        return lines;
+    }
+
+    public double getCreditsAttempted() {
+        return creditsAttempted;
+    }
+
+    /**
+     * @return credits of the passed courses (C- or better)
+     */
+    public double getCreditsEarned() {
+        return creditsEarned;
+    }
+
+    /**
+     * @return credit-weighted grade point average on the 9-point scale, 0 with no credits attempted
+     */
+    public double getGpa() {
+        return gpa;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: GPA %.2f, %.1f/%.1f credits earned, %d course(s)",
+                stuID, gpa, creditsEarned, creditsAttempted, lines.size());
+    }
+}
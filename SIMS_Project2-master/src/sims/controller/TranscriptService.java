@@ -0,0 +1,193 @@
+package sims.controller;
+
+import sims.controller.Transcript.Letter;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Transcripts and credit-weighted GPAs, read with one join of Grades and
+ * Courses instead of a course lookup per grade.
+ *
+ * Whole-cohort runs either stream full transcripts through a forward-only
+ * cursor ordered by student ({@link #forEachTranscript}), holding one
+ * student in memory at a time, or let the database aggregate everything
+ * with GROUP BY ({@link #getSummaries}) when the per-course rows are not needed.
+ * Grades without a score are ignored; a course without a credit counts as 0 credits.
+ */
+public class TranscriptService {
+
+    private static final String JOIN_SQL =
+        "SELECT g.stuID, g.courseID, c.courseName, c.credit, g.score " +
+        "FROM Grades g JOIN Courses c ON c.courseID = g.courseID " +
+        "WHERE g.score IS NOT NULL";
+
+    private static final String SUMMARY_SQL =
+        "SELECT g.stuID, SUM(COALESCE(c.credit, 0)), " +
+        "SUM(CASE WHEN g.score >= " + passMark() + " THEN COALESCE(c.credit, 0) ELSE 0 END), " +
+        "SUM(COALESCE(c.credit, 0) * " + pointsCase() + ") " +
+        "FROM Grades g JOIN Courses c ON c.courseID = g.courseID " +
+        "WHERE g.score IS NOT NULL GROUP BY g.stuID ORDER BY g.stuID";
+
+    private int fetchSize = CsvExporter.DEFAULT_FETCH_SIZE;
+
+    /**
+     * GPA totals of one student, without the per-course rows
+     */
+    public static class Summary {
+        private final String stuID;
+        private final double creditsAttempted;
+        private final double creditsEarned;
+        private final double gpa;
+
+        Summary(String stuID, double creditsAttempted, double creditsEarned, double gpa) {
+            this.stuID = stuID;
+            this.creditsAttempted = creditsAttempted;
+            this.creditsEarned = creditsEarned;
+            this.gpa = gpa;
+        }
+
+        public String getStuID() {
+            return stuID;
+        }
+
+        public double getCreditsAttempted() {
+            return creditsAttempted;
+        }
+
+        public double getCreditsEarned() {
+            return creditsEarned;
+        }
+
+        public double getGpa() {
+            return gpa;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: GPA %.2f, %.1f/%.1f credits earned",
+                    stuID, gpa, creditsEarned, creditsAttempted);
+        }
+    }
+
+    /**
+     * Set the number of rows the driver fetches per round trip in cohort runs
+     */
+    public TranscriptService setFetchSize(int fetchSize) {
+        if (fetchSize < 1) {
+            throw new IllegalArgumentException("Fetch size must be positive: " + fetchSize);
+        }
+        this.fetchSize = fetchSize;
+        return this;
+    }
+
+    /**
+     * Get one student's transcript
+     * @return the transcript, with no lines if the student has no graded courses
+     */
+    public Transcript getTranscript(String stuID) throws SQLException {
+        List<Transcript.Line> lines = new ArrayList<>();
+        try (Connection conn = DBHelper.borrowConnection();
+             PreparedStatement pstmt = conn.prepareStatement(JOIN_SQL + " AND g.stuID = ? ORDER BY g.courseID")) {
+            pstmt.setString(1, stuID);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    lines.add(readLine(rs));
+                }
+            }
+        }
+        return new Transcript(stuID, lines);
+    }
+
+    /**
+     * Stream the transcript of every student with at least one graded course,
+     * in student ID order. Only the current student is held in memory.
+     * @param consumer receives each transcript on the calling thread
+     * @return number of transcripts produced
+     */
+    public long forEachTranscript(Consumer<? super Transcript> consumer) throws SQLException {
+        long count = 0;
+        try (Connection conn = DBHelper.borrowConnection();
+             PreparedStatement pstmt = conn.prepareStatement(JOIN_SQL + " ORDER BY g.stuID, g.courseID",
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            pstmt.setFetchSize(fetchSize);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                String current = null;
+                List<Transcript.Line> lines = new ArrayList<>();
+                while (rs.next()) {
+                    String stuID = rs.getString(1);
+                    if (current != null && !current.equals(stuID)) {
+                        consumer.accept(new Transcript(current, lines));
+                        count++;
+                        lines.clear();
+                    }
+                    current = stuID;
+                    lines.add(readLine(rs));
+                }
+                if (current != null) {
+                    consumer.accept(new Transcript(current, lines));
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * GPA and credits of every student with at least one graded course,
+     * aggregated by the database in one GROUP BY query
+     * @return summaries in student ID order
+     */
+    public List<Summary> getSummaries() throws SQLException {
+        List<Summary> summaries = new ArrayList<>();
+        try (Connection conn = DBHelper.borrowConnection();
+             PreparedStatement pstmt = conn.prepareStatement(SUMMARY_SQL,
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            pstmt.setFetchSize(fetchSize);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    double attempted = rs.getDouble(2);
+                    double points = rs.getDouble(4);
+                    summaries.add(new Summary(rs.getString(1), attempted, rs.getDouble(3),
+                            attempted > 0 ? points / attempted : 0));
+                }
+            }
+        }
+        return summaries;
+    }
+
+    private static Transcript.Line readLine(ResultSet rs) throws SQLException {
+        return new Transcript.Line(rs.getString(2), rs.getString(3), rs.getDouble(4), rs.getDouble(5));
+    }
+
+    /**
+     * CASE expression mapping g.score to grade points, generated from {@link Letter}
+     * so the SQL and Java scales cannot drift apart
+     */
+    private static String pointsCase() {
+        StringBuilder sb = new StringBuilder("CASE");
+        for (Letter l : Letter.values()) {
+            if (l.getPoints() > 0) {
+                sb.append(" WHEN g.score >= ").append(l.getMinScore()).append(" THEN ").append(l.getPoints());
+            }
+        }
+        return sb.append(" ELSE 0 END").toString();
+    }
+
+    /**
+     * @return lowest score that earns credits
+     */
+    private static double passMark() {
+        double mark = Double.POSITIVE_INFINITY;
+        for (Letter l : Letter.values()) {
+            if (l.isPass()) {
+                mark = Math.min(mark, l.getMinScore());
+            }
+        }
+        return mark;
+    }
+}
@@ -0,0 +1,23 @@
+package sims.model;
+
+/**
+ * Immutable course row for read-only views
+ */
+public record CourseRecord(String courseID, String courseName, double credit) {
+
+    public static CourseRecord of(Course c) {
+        return new CourseRecord(c.getCourseID(), c.getCourseName(), c.getCredit());
+    }
+
+    /**
+     * @return a mutable copy for editing
+     */
+    public Course toCourse() {
+        return new Course(courseID, courseName, credit);
+    }
+
+    @Override
+    public String toString() {
+        return courseID + "," + courseName + "," + credit;
+    }
+}
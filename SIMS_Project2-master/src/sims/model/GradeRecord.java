@@ -0,0 +1,32 @@
+package sims.model;
+
+/**
+ * Compact, immutable grade row. Load many of them through one
+ * {@link StringPool} so each student and course ID is stored once,
+ * however many grades refer to it.
+ */
+public record GradeRecord(String stuID, String courseID, double score) {
+
+    /**
+     * Create a row whose IDs are deduplicated through the given pool
+     */
+    public static GradeRecord of(String stuID, String courseID, double score, StringPool ids) {
+        return new GradeRecord(ids.intern(stuID), ids.intern(courseID), score);
+    }
+
+    public static GradeRecord of(Grade g) {
+        return new GradeRecord(g.getStuID(), g.getCourseID(), g.getScore());
+    }
+
+    /**
+     * @return a mutable copy for editing
+     */
+    public Grade toGrade() {
+        return new Grade(stuID, courseID, score);
+    }
+
+    @Override
+    public String toString() {
+        return stuID + "," + courseID + "," + score;
+    }
+}
@@ -0,0 +1,53 @@
+package sims.model;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Deduplicates equal strings so rows loaded from the database share one
+ * instance of each repeated value (majors, years, IDs repeated across grades).
+ * Unlike String.intern() the pool is bounded: once full it hands strings
+ * back unchanged instead of growing.
+ */
+public final class StringPool {
+
+    private static final StringPool SHARED = new StringPool(4096);
+
+    private final ConcurrentHashMap<String, String> values = new ConcurrentHashMap<>();
+    private final int maxSize;
+
+    /**
+     * @param maxSize maximum number of distinct strings kept
+     */
+    public StringPool(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Process-wide pool for low-cardinality fields such as major and year
+     */
+    public static StringPool shared() {
+        return SHARED;
+    }
+
+    /**
+     * @return the pooled instance equal to s, or s itself
+     */
+    public String intern(String s) {
+        if (s == null) {
+            return null;
+        }
+        String pooled = values.get(s);
+        if (pooled != null) {
+            return pooled;
+        }
+        if (values.size() >= maxSize) {
+            return s;
+        }
+        pooled = values.putIfAbsent(s, s);
+        return pooled != null ? pooled : s;
+    }
+
+    public int size() {
+        return values.size();
+    }
+}
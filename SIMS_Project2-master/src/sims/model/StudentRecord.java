@@ -0,0 +1,32 @@
+package sims.model;
+
+/**
+ * Compact, immutable student row for large read-only rosters.
+ * Gender, major and year are deduplicated through the shared
+ * {@link StringPool}, so rows only pay for their own ID and name. Values
+ * are kept exactly as stored.
+ */
+public record StudentRecord(String stuID, String name, String gender, String major, String year) {
+
+    public StudentRecord {
+        gender = StringPool.shared().intern(gender);
+        major = StringPool.shared().intern(major);
+        year = StringPool.shared().intern(year);
+    }
+
+    public static StudentRecord of(Student s) {
+        return new StudentRecord(s.getStuID(), s.getName(), s.getGender(), s.getMajor(), s.getYear());
+    }
+
+    /**
+     * @return a mutable copy for editing
+     */
+    public Student toStudent() {
+        return new Student(stuID, name, gender, major, year);
+    }
+
+    @Override
+    public String toString() {
+        return stuID + "," + name + "," + gender + "," + major + "," + year;
+    }
+}
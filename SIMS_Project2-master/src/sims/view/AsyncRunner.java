@@ -0,0 +1,131 @@
+package sims.view;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Runs database work off the Event Dispatch Thread with SwingWorker.
+ * Results and errors are delivered back on the EDT. While any task is
+ * running the owner shows a wait cursor and the busy indicator is visible.
+ * Tasks submitted with the same key replace each other: the older one is
+ * cancelled and its result is dropped, so a slow, stale query can never
+ * overwrite a newer one.
+ *
+ * All methods must be called on the EDT.
+ */
+public class AsyncRunner {
+
+    private final Component owner;
+    private final JProgressBar indicator;
+    private final Map<String, SwingWorker<?, ?>> latest = new HashMap<>();
+    private int running = 0;
+
+    /**
+     * @param owner component whose cursor and dialogs reflect the tasks
+     */
+    public AsyncRunner(Component owner) {
+        this.owner = owner;
+        this.indicator = new JProgressBar();
+        indicator.setIndeterminate(true);
+        indicator.setVisible(false);
+        indicator.setPreferredSize(new Dimension(80, indicator.getPreferredSize().height));
+    }
+
+    /**
+     * @return progress bar that is shown while tasks are running
+     */
+    public JProgressBar getIndicator() {
+        return indicator;
+    }
+
+    /**
+     * Run work in the background; errors are shown in a dialog
+     * @param key tasks with the same non-null key cancel each other
+     * @param work runs on a worker thread
+     * @param onSuccess receives the result on the EDT
+     */
+    public <T> void run(String key, Callable<T> work, Consumer<T> onSuccess) {
+        run(key, work, onSuccess, this::showError);
+    }
+
+    /**
+     * Run work in the background
+     * @param key tasks with the same non-null key cancel each other
+     * @param work runs on a worker thread
+     * @param onSuccess receives the result on the EDT
+     * @param onError receives the failure on the EDT
+     */
+    public <T> void run(String key, Callable<T> work, Consumer<T> onSuccess, Consumer<Throwable> onError) {
+        if (key != null) {
+            SwingWorker<?, ?> stale = latest.get(key);
+            if (stale != null) {
+                stale.cancel(true);
+            }
+        }
+
+        SwingWorker<T, Void> worker = new SwingWorker<T, Void>() {
+            @Override
+            protected T doInBackground() throws Exception {
+                return work.call();
+            }
+
+            @Override
+            protected void done() {
+                taskFinished();
+                if (key != null) {
+                    if (latest.get(key) != this) {
+                        return; // superseded by a newer task
+                    }
+                    latest.remove(key);
+                }
+                if (isCancelled()) {
+                    return;
+                }
+                try {
+                    onSuccess.accept(get());
+                } catch (ExecutionException e) {
+                    onError.accept(e.getCause() != null ? e.getCause() : e);
+                } catch (InterruptedException | CancellationException e) {
+                    // Cancelled while finishing; nothing to deliver
+                }
+            }
+        };
+        if (key != null) {
+            latest.put(key, worker);
+        }
+        taskStarted();
+        worker.execute();
+    }
+
+    /**
+     * @return true while any task is running
+     */
+    public boolean isBusy() {
+        return running > 0;
+    }
+
+    private void taskStarted() {
+        if (running++ == 0) {
+            owner.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+            indicator.setVisible(true);
+        }
+    }
+
+    private void taskFinished() {
+        if (--running == 0) {
+            owner.setCursor(Cursor.getDefaultCursor());
+            indicator.setVisible(false);
+        }
+    }
+
+    private void showError(Throwable e) {
+        JOptionPane.showMessageDialog(owner, "Database error: " + e.getMessage(),
+            "Error", JOptionPane.ERROR_MESSAGE);
+    }
+}
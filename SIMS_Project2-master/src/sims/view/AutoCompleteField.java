@@ -0,0 +1,179 @@
+package sims.view;
+
+import sims.controller.PrefixIndex;
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.*;
+import java.awt.event.FocusAdapter;
+import java.awt.event.FocusEvent;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Text field that suggests matching IDs while the user types.
+ * Each keystroke asks a {@link PrefixIndex} for the top matches and shows
+ * them in a popup list; only those few matches ever reach a Swing model.
+ * Up/Down move through the suggestions, Enter or a click picks one,
+ * Escape closes the list.
+ *
+ * Must be used on the EDT.
+ */
+public class AutoCompleteField extends JTextField {
+
+    public static final int DEFAULT_SUGGESTIONS = 10;
+
+    private final int maxSuggestions;
+    private final DefaultListModel<PrefixIndex.Match> suggestions = new DefaultListModel<>();
+    private final JList<PrefixIndex.Match> list = new JList<>(suggestions);
+    private final JPopupMenu popup = new JPopupMenu();
+    private PrefixIndex index;
+    private boolean picking = false;
+
+    public AutoCompleteField(int columns) {
+        this(columns, DEFAULT_SUGGESTIONS);
+    }
+
+    public AutoCompleteField(int columns, int maxSuggestions) {
+        super(columns);
+        this.maxSuggestions = maxSuggestions;
+
+        list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        list.setFocusable(false);
+        popup.setFocusable(false);
+        popup.add(new JScrollPane(list));
+
+        getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                textChanged();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                textChanged();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+            }
+        });
+        addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                if (!popup.isVisible()) {
+                    if (e.getKeyCode() == KeyEvent.VK_DOWN) {
+                        textChanged();
+                    }
+                    return;
+                }
+                switch (e.getKeyCode()) {
+                    case KeyEvent.VK_DOWN:
+                        move(1);
+                        e.consume();
+                        break;
+                    case KeyEvent.VK_UP:
+                        move(-1);
+                        e.consume();
+                        break;
+                    case KeyEvent.VK_ENTER:
+                        pick(list.getSelectedValue());
+                        e.consume();
+                        break;
+                    case KeyEvent.VK_ESCAPE:
+                        popup.setVisible(false);
+                        e.consume();
+                        break;
+                    default:
+                        break;
+                }
+            }
+        });
+        list.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                pick(list.getSelectedValue());
+            }
+        });
+        addFocusListener(new FocusAdapter() {
+            @Override
+            public void focusLost(FocusEvent e) {
+                popup.setVisible(false);
+            }
+        });
+    }
+
+    /**
+     * Set the index suggestions come from; null shows no suggestions
+     */
+    public void setIndex(PrefixIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * @return the entered ID, or null if the field is blank
+     */
+    public String getSelectedID() {
+        String text = getText().trim();
+        return text.isEmpty() ? null : text;
+    }
+
+    /**
+     * Set the ID without opening the suggestions
+     */
+    public void setSelectedID(String id) {
+        picking = true;
+        try {
+            setText(id);
+        } finally {
+            picking = false;
+        }
+        popup.setVisible(false);
+    }
+
+    private void textChanged() {
+        if (picking || !isShowing()) {
+            return;
+        }
+        List<PrefixIndex.Match> matches = index == null || getText().trim().isEmpty()
+            ? Collections.<PrefixIndex.Match>emptyList()
+            : index.search(getText(), maxSuggestions);
+        suggestions.clear();
+        for (PrefixIndex.Match m : matches) {
+            suggestions.addElement(m);
+        }
+        if (matches.isEmpty()) {
+            popup.setVisible(false);
+            return;
+        }
+        list.setVisibleRowCount(Math.min(matches.size(), maxSuggestions));
+        list.setSelectedIndex(0);
+        popup.setPopupSize(Math.max(getWidth(), list.getPreferredScrollableViewportSize().width + 20),
+            list.getPreferredScrollableViewportSize().height + 6);
+        if (!popup.isVisible()) {
+            popup.show(this, 0, getHeight());
+        } else {
+            popup.pack();
+            popup.revalidate();
+        }
+    }
+
+    private void move(int delta) {
+        int i = list.getSelectedIndex() + delta;
+        if (i >= 0 && i < suggestions.size()) {
+            list.setSelectedIndex(i);
+            list.ensureIndexIsVisible(i);
+        }
+    }
+
+    private void pick(PrefixIndex.Match match) {
+        if (match != null) {
+            setSelectedID(match.getId());
+        }
+        popup.setVisible(false);
+    }
+}
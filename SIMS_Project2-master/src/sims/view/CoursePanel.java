@@ -1,23 +1,35 @@
 package sims.view;
 
+import sims.controller.BatchResult;
+import sims.controller.EntityEventBus;
+import sims.controller.EntityEventBus.Topic;
 import sims.controller.CourseManager;
 import sims.model.Course;
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
-import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 
 /**
  * Course Management Panel with CRUD operations
  */
 public class CoursePanel extends JPanel {
     
+    /** Most search results shown in the table */
+    private static final int MAX_MATCHES = 200;
+    /** Database column of each table column, for sorting */
+    private static final String[] SORT_FIELDS = {"courseID", "courseName", "credit"};
+    private static final Comparator<Course> KEY_ORDER = Comparator.comparing(Course::getCourseID);
+    
     private CourseManager courseManager;
+    private AsyncRunner runner;
     
     // Input fields
     private JTextField txtCourseID;
     private JTextField txtCourseName;
     private JTextField txtCredit;
+    private JTextField txtFind;
     
     // Buttons
     private JButton btnAdd;
@@ -29,12 +41,33 @@ public class CoursePanel extends JPanel {
     
     // Table
     private JTable table;
-    private DefaultTableModel tableModel;
+    private PagedTableModel<Course> tableModel;
+    private PagedTableModel.PageLoader<Course> allCourses;
+    // Words of the search shown in the table, null while all courses are shown
+    private String findText;
+    private SortableHeader sortHeader;
+    // Column the database sorts by, null for courseID order
+    private String sortField;
+    private boolean sortAscending = true;
     
     public CoursePanel() {
+        this(null);
+    }
+    
+    /**
+     * @param firstRows count and first page read ahead by {@link #prefetch()}, or null to read them now
+     */
+    CoursePanel(PagedTableModel.Prefetched<Course> firstRows) {
         courseManager = new CourseManager();
+        runner = new AsyncRunner(this);
         initComponents();
-        loadTableData();
+        if (firstRows != null) {
+            tableModel.setLoader(firstRows);
+        } else {
+            loadTableData();
+        }
+        // Rows changed anywhere in the application are applied as they are committed
+        EntityEventBus.shared().subscribe(Topic.COURSES, SwingUtilities::invokeLater, this::applyChanges);
     }
     
     private void initComponents() {
@@ -79,21 +112,29 @@ public class CoursePanel extends JPanel {
         txtCredit = new JTextField(20);
         panel.add(txtCredit, gbc);
         
+        // Full-text search over course names
+        gbc.gridx = 2; gbc.gridy = 1;
+        panel.add(new JLabel("Find:"), gbc);
+        gbc.gridx = 3;
+        txtFind = new JTextField(20);
+        txtFind.setToolTipText("Words of a course name, e.g. data struct");
+        txtFind.addActionListener(e -> searchCourse());
+        panel.add(txtFind, gbc);
+        
         return panel;
     }
     
     private JScrollPane createTablePanel() {
         String[] columns = {"Course ID", "Course Name", "Credit"};
-        tableModel = new DefaultTableModel(columns, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        allCourses = allCourses(courseManager);
+        tableModel = new PagedTableModel<>(columns, CoursePanel::cellValue, allCourses, KEY_ORDER);
+        tableModel.setCountErrorHandler(e -> JOptionPane.showMessageDialog(this,
+            "Error counting courses: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
         
         table = new JTable(tableModel);
         table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         table.getTableHeader().setReorderingAllowed(false);
+        sortHeader = SortableHeader.install(table, new boolean[]{true, true, true}, this::sortBy);
         
         // Add selection listener
         table.getSelectionModel().addListSelectionListener(e -> {
@@ -129,6 +170,7 @@ public class CoursePanel extends JPanel {
         panel.add(btnSearch);
         panel.add(btnRefresh);
         panel.add(btnClear);
+        panel.add(runner.getIndicator());
         
         return panel;
     }
@@ -143,11 +185,12 @@ public class CoursePanel extends JPanel {
                 Double.parseDouble(txtCredit.getText().trim())
             );
             
-            courseManager.add(course);
-            loadTableData();
-            clearFields();
-            JOptionPane.showMessageDialog(this, "Course added successfully!", 
-                "Success", JOptionPane.INFORMATION_MESSAGE);
+            runner.run(null, () -> courseManager.addAll(Collections.singletonList(course)), result -> {
+                if (!succeeded(result, "adding")) return;
+                clearFields();
+                JOptionPane.showMessageDialog(this, "Course added successfully!", 
+                    "Success", JOptionPane.INFORMATION_MESSAGE);
+            });
         } catch (NumberFormatException e) {
             JOptionPane.showMessageDialog(this, "Credit must be a valid number!", 
                 "Input Error", JOptionPane.ERROR_MESSAGE);
@@ -170,11 +213,12 @@ public class CoursePanel extends JPanel {
                 Double.parseDouble(txtCredit.getText().trim())
             );
             
-            courseManager.update(course);
-            loadTableData();
-            clearFields();
-            JOptionPane.showMessageDialog(this, "Course updated successfully!", 
-                "Success", JOptionPane.INFORMATION_MESSAGE);
+            runner.run(null, () -> courseManager.updateAll(Collections.singletonList(course)), result -> {
+                if (!succeeded(result, "updating")) return;
+                clearFields();
+                JOptionPane.showMessageDialog(this, "Course updated successfully!", 
+                    "Success", JOptionPane.INFORMATION_MESSAGE);
+            });
         } catch (NumberFormatException e) {
             JOptionPane.showMessageDialog(this, "Credit must be a valid number!", 
                 "Input Error", JOptionPane.ERROR_MESSAGE);
@@ -193,48 +237,158 @@ public class CoursePanel extends JPanel {
             "Confirm Delete", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
         
         if (confirm == JOptionPane.YES_OPTION) {
-            String courseID = txtCourseID.getText().trim();
-            courseManager.delete(courseID);
-            loadTableData();
-            clearFields();
-            JOptionPane.showMessageDialog(this, "Course deleted successfully!", 
-                "Success", JOptionPane.INFORMATION_MESSAGE);
+            Course deleted = tableModel.getRow(table.getSelectedRow());
+            if (deleted == null) return;
+            runner.run(null, () -> courseManager.deleteAll(Collections.singletonList(deleted.getCourseID())), result -> {
+                if (!succeeded(result, "deleting")) return;
+                clearFields();
+                JOptionPane.showMessageDialog(this, "Course deleted successfully!", 
+                    "Success", JOptionPane.INFORMATION_MESSAGE);
+            });
         }
     }
     
     private void searchCourse() {
+        String text = txtFind.getText().trim();
+        if (!text.isEmpty()) {
+            // Matches are shown best first
+            sortField = null;
+            sortHeader.clear();
+            showMatches(text, true);
+            return;
+        }
         String courseID = txtCourseID.getText().trim();
         if (courseID.isEmpty()) {
-            JOptionPane.showMessageDialog(this, "Please enter a Course ID to search!", 
+            JOptionPane.showMessageDialog(this, "Please enter a Course ID or words to find!", 
                 "Warning", JOptionPane.WARNING_MESSAGE);
             return;
         }
         
-        Course course = courseManager.search(courseID);
-        if (course != null) {
-            txtCourseName.setText(course.getCourseName());
-            txtCredit.setText(String.valueOf(course.getCredit()));
-        } else {
-            JOptionPane.showMessageDialog(this, "Course not found!", 
-                "Not Found", JOptionPane.INFORMATION_MESSAGE);
+        // Keyed so a newer search replaces one that is still running
+        runner.run("search", () -> courseManager.search(courseID), course -> {
+            if (course != null) {
+                txtCourseName.setText(course.getCourseName());
+                txtCredit.setText(String.valueOf(course.getCredit()));
+            } else {
+                JOptionPane.showMessageDialog(this, "Course not found!", 
+                    "Not Found", JOptionPane.INFORMATION_MESSAGE);
+            }
+        });
+    }
+    
+    /**
+     * Show the courses matching the words, best match first
+     * @param report tell the user when nothing matches
+     */
+    private void showMatches(String text, boolean report) {
+        findText = text;
+        runner.run("search", () -> courseManager.searchByText(text, MAX_MATCHES), courses -> {
+            tableModel.setLoader(PagedTableModel.ofList(courses));
+            if (report && courses.isEmpty()) {
+                JOptionPane.showMessageDialog(this, "No courses match \"" + text + "\".", 
+                    "Not Found", JOptionPane.INFORMATION_MESSAGE);
+            }
+        });
+    }
+    
+    /**
+     * Report a failed change; the table is left as it is
+     * @return true if the change was applied
+     */
+    private boolean succeeded(BatchResult result, String action) {
+        if (result.getFailed() == 0) {
+            return true;
+        }
+        JOptionPane.showMessageDialog(this, "Error " + action + " course: " + result.getFailures().get(0).getMessage(),
+            "Error", JOptionPane.ERROR_MESSAGE);
+        return false;
+    }
+    
+    /**
+     * Apply committed changes to the table without reloading it
+     */
+    private void applyChanges(List<EntityEventBus.Event<Course>> events) {
+        if (findText != null) {
+            // Search results are ranked, so run the search again rather than patching rows in
+            showMatches(findText, false);
+            return;
+        }
+        for (EntityEventBus.Event<Course> e : events) {
+            switch (e.getKind()) {
+                case CREATED:
+                    tableModel.rowInserted(e.getValue());
+                    break;
+                case UPDATED:
+                    tableModel.rowUpdated(e.getValue());
+                    break;
+                case DELETED:
+                    tableModel.rowRemoved(new Course(e.getKey(), null, 0));
+                    break;
+                default:
+                    loadTableData();
+                    return;
+            }
         }
     }
     
     private void loadTableData() {
-        tableModel.setRowCount(0);
-        ArrayList<Course> courses = courseManager.getAllCourses();
-        for (Course c : courses) {
-            tableModel.addRow(new Object[]{
-                c.getCourseID(), c.getCourseName(), c.getCredit()
-            });
+        // Only the row count is read here; rows are fetched page by page as they scroll into view
+        findText = null;
+        if (sortField == null) {
+            tableModel.setLoader(allCourses, KEY_ORDER);
+        } else {
+            // Derby sorts and pages by (column, courseID) using the index on both
+            tableModel.setLoader(PagedTableModel.ofCriteria(courseManager,
+                courseManager.criteria().orderBy(sortField, sortAscending)), null);
+        }
+    }
+    
+    private void sortBy(int column, SortOrder order) {
+        sortField = order == SortOrder.UNSORTED ? null : SORT_FIELDS[column];
+        sortAscending = order != SortOrder.DESCENDING;
+        loadTableData();
+    }
+    
+    /**
+     * Read the row count and first page of the table off the EDT, before the panel is built
+     */
+    static PagedTableModel.Prefetched<Course> prefetch() {
+        return PagedTableModel.prefetch(allCourses(new CourseManager()));
+    }
+    
+    private static PagedTableModel.PageLoader<Course> allCourses(CourseManager courseManager) {
+        return new PagedTableModel.PageLoader<Course>() {
+            @Override
+            public int count() {
+                return courseManager.countCourses();
+            }
+            
+            @Override
+            public List<Course> loadAfter(Course last, int limit) {
+                return courseManager.getCoursesAfter(last == null ? null : last.getCourseID(), limit);
+            }
+            
+            @Override
+            public List<Course> loadAt(int offset, int limit) {
+                return courseManager.getCoursesPage(offset, limit);
+            }
+        };
+    }
+    
+    private static Object cellValue(Course c, int column) {
+        switch (column) {
+            case 0: return c.getCourseID();
+            case 1: return c.getCourseName();
+            default: return c.getCredit();
         }
     }
     
     private void fillFieldsFromTable() {
-        int row = table.getSelectedRow();
-        txtCourseID.setText(tableModel.getValueAt(row, 0).toString());
-        txtCourseName.setText(tableModel.getValueAt(row, 1).toString());
-        txtCredit.setText(tableModel.getValueAt(row, 2).toString());
+        Course c = tableModel.getRow(table.getSelectedRow());
+        if (c == null) return;
+        txtCourseID.setText(c.getCourseID());
+        txtCourseName.setText(c.getCourseName());
+        txtCredit.setText(String.valueOf(c.getCredit()));
     }
     
     private void clearFields() {
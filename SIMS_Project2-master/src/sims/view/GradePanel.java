@@ -1,171 +1,267 @@
 package sims.view;
 
-import sims.controller.DBHelper;
+import sims.controller.BatchResult;
+import sims.controller.Criteria;
+import sims.controller.EntityEventBus;
+import sims.controller.EntityEventBus.Topic;
 import sims.model.Grade;
 import sims.controller.GradeManager;
 import sims.controller.StudentManager;
 import sims.controller.CourseManager;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.*;
-import java.sql.*;
-import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
 
 public class GradePanel extends JPanel {
 
+    // 表格各列对应的数据库列, 用于排序
+    private static final String[] SORT_FIELDS = {"stuID", "courseID", "score"};
+    private static final Comparator<Grade> KEY_ORDER =
+        Comparator.comparing(Grade::getStuID).thenComparing(Grade::getCourseID);
+
     private JTable table;
-    private DefaultTableModel tableModel;
+    private PagedTableModel<Grade> tableModel;
+    private PagedTableModel.PageLoader<Grade> allGrades;
     private JTextField txtScore;
-    private JComboBox<String> cmbStudentID, cmbCourseID;
+    private AutoCompleteField txtStudentID, txtCourseID;
+    private AutoCompleteField txtFilterStudent, txtFilterCourse;
+    private JTextField txtMinScore, txtMaxScore, txtFilterMajor;
     private GradeManager gradeManager;
     private StudentManager studentManager;
     private CourseManager courseManager;
+    private AsyncRunner runner;
+    // 当前过滤条件, null 表示显示全部成绩
+    private Criteria<Grade> filter;
+    // 当前排序列, null 表示按主键顺序
+    private String sortField;
+    private boolean sortAscending = true;
 
     public GradePanel() {
+        this(null);
+    }
+
+    // firstRows: 由 prefetch() 预先读取的行数和首页, 为 null 时现在读取
+    GradePanel(PagedTableModel.Prefetched<Grade> firstRows) {
         setLayout(new BorderLayout());
 
         gradeManager = new GradeManager();
         studentManager = new StudentManager();
         courseManager = new CourseManager();
+        runner = new AsyncRunner(this);
 
         // === 顶部操作区 ===
-        JPanel topPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        JPanel topPanel = new JPanel(new GridLayout(2, 1));
+        JPanel buttonRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
         JButton btnAdd = new JButton("Add");
         JButton btnUpdate = new JButton("Update");
         JButton btnDelete = new JButton("Delete");
         JButton btnRefresh = new JButton("Refresh");
-        JButton btnFilterStu = new JButton("Filter by Student");
-        JButton btnFilterCourse = new JButton("Filter by Course");
-
-        topPanel.add(btnAdd);
-        topPanel.add(btnUpdate);
-        topPanel.add(btnDelete);
-        topPanel.add(btnRefresh);
-        topPanel.add(btnFilterStu);
-        topPanel.add(btnFilterCourse);
+
+        buttonRow.add(btnAdd);
+        buttonRow.add(btnUpdate);
+        buttonRow.add(btnDelete);
+        buttonRow.add(btnRefresh);
+        buttonRow.add(runner.getIndicator());
+        topPanel.add(buttonRow);
+
+        // === 过滤栏: 各条件同时生效 ===
+        JPanel filterRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        txtFilterStudent = new AutoCompleteField(8);
+        txtFilterCourse = new AutoCompleteField(8);
+        txtMinScore = new JTextField(4);
+        txtMaxScore = new JTextField(4);
+        txtFilterMajor = new JTextField(10);
+        JButton btnFilter = new JButton("Filter");
+        JButton btnClearFilter = new JButton("Clear Filter");
+
+        filterRow.add(new JLabel("Student:"));
+        filterRow.add(txtFilterStudent);
+        filterRow.add(new JLabel("Course:"));
+        filterRow.add(txtFilterCourse);
+        filterRow.add(new JLabel("Score:"));
+        filterRow.add(txtMinScore);
+        filterRow.add(new JLabel("to"));
+        filterRow.add(txtMaxScore);
+        filterRow.add(new JLabel("Major:"));
+        filterRow.add(txtFilterMajor);
+        filterRow.add(btnFilter);
+        filterRow.add(btnClearFilter);
+        topPanel.add(filterRow);
         add(topPanel, BorderLayout.NORTH);
 
         // === 表格区 ===
-        tableModel = new DefaultTableModel(new Object[]{"Student ID", "Course ID", "Score"}, 0);
+        allGrades = allGrades(gradeManager);
+        tableModel = new PagedTableModel<>(new String[]{"Student ID", "Course ID", "Score"},
+                GradePanel::cellValue, allGrades, KEY_ORDER);
+        tableModel.setCountErrorHandler(e -> JOptionPane.showMessageDialog(this,
+            "Error counting grades: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
         table = new JTable(tableModel);
+        SortableHeader.install(table, new boolean[]{true, true, true}, this::sortBy);
         add(new JScrollPane(table), BorderLayout.CENTER);
 
         // === 底部编辑区 ===
         JPanel bottomPanel = new JPanel(new GridLayout(2, 3, 5, 5));
-        cmbStudentID = new JComboBox<>();
-        cmbCourseID = new JComboBox<>();
+        txtStudentID = new AutoCompleteField(10);
+        txtCourseID = new AutoCompleteField(10);
         txtScore = new JTextField();
 
         bottomPanel.add(new JLabel("Student ID:"));
         bottomPanel.add(new JLabel("Course ID:"));
         bottomPanel.add(new JLabel("Score:"));
-        bottomPanel.add(cmbStudentID);
-        bottomPanel.add(cmbCourseID);
+        bottomPanel.add(txtStudentID);
+        bottomPanel.add(txtCourseID);
         bottomPanel.add(txtScore);
         add(bottomPanel, BorderLayout.SOUTH);
 
         // === 初始化 ===
-        loadComboBoxData();
-        loadTableData();
+        loadIdIndexes();
+        if (firstRows != null) {
+            tableModel.setLoader(firstRows);
+        } else {
+            loadTableData();
+        }
+        EntityEventBus bus = EntityEventBus.shared();
+        bus.subscribe(Topic.GRADES, SwingUtilities::invokeLater, this::applyGradeChanges);
+        // 索引由管理器按事件增量维护, 只有整表失效时需要重新读取
+        bus.subscribe(Topic.STUDENTS, SwingUtilities::invokeLater, events -> {
+            if (events.get(0).getKind() == EntityEventBus.Kind.INVALIDATED) loadIdIndexes();
+        });
+        bus.subscribe(Topic.COURSES, SwingUtilities::invokeLater, events -> {
+            if (events.get(0).getKind() == EntityEventBus.Kind.INVALIDATED) loadIdIndexes();
+        });
 
         // === 事件绑定 ===
         btnAdd.addActionListener(e -> addGrade());
         btnUpdate.addActionListener(e -> updateGrade());
         btnDelete.addActionListener(e -> deleteGrade());
         btnRefresh.addActionListener(e -> loadTableData());
-        btnFilterStu.addActionListener(e -> filterByStudent());
-        btnFilterCourse.addActionListener(e -> filterByCourse());
+        btnFilter.addActionListener(e -> applyFilter());
+        btnClearFilter.addActionListener(e -> clearFilter());
         table.addMouseListener(new MouseAdapter() {
             public void mouseClicked(MouseEvent e) {
-                int row = table.getSelectedRow();
-                if (row >= 0) {
-                    cmbStudentID.setSelectedItem(tableModel.getValueAt(row, 0).toString());
-                    cmbCourseID.setSelectedItem(tableModel.getValueAt(row, 1).toString());
-                    txtScore.setText(tableModel.getValueAt(row, 2).toString());
+                Grade g = tableModel.getRow(table.getSelectedRow());
+                if (g != null) {
+                    txtStudentID.setSelectedID(g.getStuID());
+                    txtCourseID.setSelectedID(g.getCourseID());
+                    txtScore.setText(String.valueOf(g.getScore()));
                 }
             }
         });
     }
 
-    // === 加载下拉框 ===
-    private void loadComboBoxData() {
-        cmbStudentID.removeAllItems();
-        try (ResultSet rs = DBHelper.executeQuery("SELECT stuID FROM Students")) {
-            while (rs.next()) cmbStudentID.addItem(rs.getString("stuID"));
-        } catch (Exception e) {
-            JOptionPane.showMessageDialog(this, "Error loading students: " + e.getMessage());
-        }
+    // === 加载学号/课程号联想索引, 下拉列表只显示前几个匹配项 ===
+    private void loadIdIndexes() {
+        runner.run("students", studentManager::getIdIndex, index -> {
+            txtStudentID.setIndex(index);
+            txtFilterStudent.setIndex(index);
+        }, e -> JOptionPane.showMessageDialog(this, "Error loading students: " + e.getMessage()));
 
-        cmbCourseID.removeAllItems();
-        try (ResultSet rs = DBHelper.executeQuery("SELECT courseID FROM Courses")) {
-            while (rs.next()) cmbCourseID.addItem(rs.getString("courseID"));
-        } catch (Exception e) {
-            JOptionPane.showMessageDialog(this, "Error loading courses: " + e.getMessage());
-        }
+        runner.run("courses", courseManager::getIdIndex, index -> {
+            txtCourseID.setIndex(index);
+            txtFilterCourse.setIndex(index);
+        }, e -> JOptionPane.showMessageDialog(this, "Error loading courses: " + e.getMessage()));
     }
 
     // === 加载成绩表 ===
     private void loadTableData() {
-        tableModel.setRowCount(0);
-        try (ResultSet rs = DBHelper.executeQuery("SELECT * FROM Grades")) {
-            while (rs.next()) {
-                tableModel.addRow(new Object[]{
-                    rs.getString("stuID"),
-                    rs.getString("courseID"),
-                    rs.getDouble("score")
-                });
+        // 只读取行数, 可见区域的数据按页加载
+        filter = null;
+        showRows();
+    }
+
+    // === 按当前过滤条件和排序列由数据库分页返回 ===
+    private void showRows() {
+        if (filter == null && sortField == null) {
+            tableModel.setLoader(allGrades, KEY_ORDER);
+            return;
+        }
+        Criteria<Grade> c = filter == null ? gradeManager.criteria() : filter.copy();
+        if (sortField != null) {
+            // 按 (排序列, 主键) 排序和翻页, 使用同列的索引
+            c.orderBy(sortField, sortAscending);
+        }
+        tableModel.setLoader(PagedTableModel.ofCriteria(gradeManager, c), null);
+    }
+
+    // === 点击表头排序, 在数据库中完成 ===
+    private void sortBy(int column, SortOrder order) {
+        sortField = order == SortOrder.UNSORTED ? null : SORT_FIELDS[column];
+        sortAscending = order != SortOrder.DESCENDING;
+        showRows();
+    }
+
+    // === 在 EDT 之外预先读取行数、首页和学号/课程号索引, 面板稍后再创建 ===
+    static PagedTableModel.Prefetched<Grade> prefetch() {
+        // 索引由管理器缓存, 面板创建时直接取用
+        new StudentManager().getIdIndex();
+        new CourseManager().getIdIndex();
+        return PagedTableModel.prefetch(allGrades(new GradeManager()));
+    }
+
+    private static PagedTableModel.PageLoader<Grade> allGrades(GradeManager gradeManager) {
+        return new PagedTableModel.PageLoader<Grade>() {
+            @Override
+            public int count() {
+                return gradeManager.countGrades();
             }
-        } catch (Exception e) {
-            JOptionPane.showMessageDialog(this, "Error loading grades: " + e.getMessage());
+
+            @Override
+            public List<Grade> loadAfter(Grade last, int limit) {
+                return gradeManager.getGradesAfter(last, limit);
+            }
+
+            @Override
+            public List<Grade> loadAt(int offset, int limit) {
+                return gradeManager.getGradesPage(offset, limit);
+            }
+        };
+    }
+
+    private static Object cellValue(Grade g, int column) {
+        switch (column) {
+            case 0: return g.getStuID();
+            case 1: return g.getCourseID();
+            default: return g.getScore();
         }
     }
 
     // === 添加成绩 ===
     private void addGrade() {
-        String stuID = (String) cmbStudentID.getSelectedItem();
-        String courseID = (String) cmbCourseID.getSelectedItem();
+        String stuID = txtStudentID.getSelectedID();
+        String courseID = txtCourseID.getSelectedID();
         String scoreStr = txtScore.getText().trim();
         if (stuID == null || courseID == null || scoreStr.isEmpty()) {
             JOptionPane.showMessageDialog(this, "Please fill all fields.");
             return;
         }
         try {
-            double score = Double.parseDouble(scoreStr);
-            String sql = "INSERT INTO Grades (stuID, courseID, score) VALUES (?, ?, ?)";
-            PreparedStatement pstmt = DBHelper.prepareStatement(sql);
-            pstmt.setString(1, stuID);
-            pstmt.setString(2, courseID);
-            pstmt.setDouble(3, score);
-            pstmt.executeUpdate();
-            JOptionPane.showMessageDialog(this, "Grade added successfully!");
-            loadTableData();
-        } catch (Exception e) {
+            Grade g = new Grade(stuID, courseID, Double.parseDouble(scoreStr));
+            applyChange(() -> gradeManager.addAll(Collections.singletonList(g)),
+                "Grade added successfully!", "Error adding grade: ");
+        } catch (NumberFormatException e) {
             JOptionPane.showMessageDialog(this, "Error adding grade: " + e.getMessage());
         }
     }
 
     // === 修改成绩 ===
     private void updateGrade() {
-        String stuID = (String) cmbStudentID.getSelectedItem();
-        String courseID = (String) cmbCourseID.getSelectedItem();
+        String stuID = txtStudentID.getSelectedID();
+        String courseID = txtCourseID.getSelectedID();
         String scoreStr = txtScore.getText().trim();
         if (stuID == null || courseID == null || scoreStr.isEmpty()) {
             JOptionPane.showMessageDialog(this, "Please fill all fields.");
             return;
         }
         try {
-            double score = Double.parseDouble(scoreStr);
-            String sql = "UPDATE Grades SET score = ? WHERE stuID = ? AND courseID = ?";
-            PreparedStatement pstmt = DBHelper.prepareStatement(sql);
-            pstmt.setDouble(1, score);
-            pstmt.setString(2, stuID);
-            pstmt.setString(3, courseID);
-            pstmt.executeUpdate();
-            JOptionPane.showMessageDialog(this, "Grade updated successfully!");
-            loadTableData();
-        } catch (Exception e) {
+            Grade g = new Grade(stuID, courseID, Double.parseDouble(scoreStr));
+            applyChange(() -> gradeManager.updateAll(Collections.singletonList(g)),
+                "Grade updated successfully!", "Error updating grade: ");
+        } catch (NumberFormatException e) {
             JOptionPane.showMessageDialog(this, "Error updating grade: " + e.getMessage());
         }
     }
@@ -177,63 +273,84 @@ public class GradePanel extends JPanel {
             JOptionPane.showMessageDialog(this, "Please select a row to delete.");
             return;
         }
-        String stuID = tableModel.getValueAt(row, 0).toString();
-        String courseID = tableModel.getValueAt(row, 1).toString();
+        Grade g = tableModel.getRow(row);
+        if (g == null) return;
+        String stuID = g.getStuID();
+        String courseID = g.getCourseID();
         int confirm = JOptionPane.showConfirmDialog(this, "Confirm delete?", "Delete", JOptionPane.YES_NO_OPTION);
         if (confirm == JOptionPane.YES_OPTION) {
-            try {
-                String sql = "DELETE FROM Grades WHERE stuID = ? AND courseID = ?";
-                PreparedStatement pstmt = DBHelper.prepareStatement(sql);
-                pstmt.setString(1, stuID);
-                pstmt.setString(2, courseID);
-                pstmt.executeUpdate();
-                JOptionPane.showMessageDialog(this, "Grade deleted successfully!");
-                loadTableData();
-            } catch (Exception e) {
-                JOptionPane.showMessageDialog(this, "Error deleting grade: " + e.getMessage());
-            }
+            applyChange(() -> gradeManager.deleteAll(Collections.singletonList(stuID + "-" + courseID)),
+                "Grade deleted successfully!", "Error deleting grade: ");
         }
     }
 
-    // === 按学生过滤 ===
-    private void filterByStudent() {
-        String stuId = JOptionPane.showInputDialog(this, "Enter Student ID to filter:");
-        if (stuId == null || stuId.trim().isEmpty()) return;
-
-        tableModel.setRowCount(0);
-        try (PreparedStatement pstmt = DBHelper.prepareStatement("SELECT * FROM Grades WHERE stuID = ?")) {
-            pstmt.setString(1, stuId.trim());
-            ResultSet rs = pstmt.executeQuery();
-            while (rs.next()) {
-                tableModel.addRow(new Object[]{
-                    rs.getString("stuID"),
-                    rs.getString("courseID"),
-                    rs.getDouble("score")
-                });
+    // === 后台执行修改; 表格由变更事件更新 ===
+    private void applyChange(Callable<BatchResult> change, String success, String failure) {
+        runner.run(null, change, result -> {
+            if (result.getFailed() == 0) {
+                JOptionPane.showMessageDialog(this, success);
+            } else {
+                JOptionPane.showMessageDialog(this, failure + result.getFailures().get(0).getMessage());
             }
-        } catch (Exception e) {
-            JOptionPane.showMessageDialog(this, "Error filtering by student: " + e.getMessage());
-        }
+        });
     }
 
-    // === 按课程过滤 ===
-    private void filterByCourse() {
-        String courseId = JOptionPane.showInputDialog(this, "Enter Course ID to filter:");
-        if (courseId == null || courseId.trim().isEmpty()) return;
-
-        tableModel.setRowCount(0);
-        try (PreparedStatement pstmt = DBHelper.prepareStatement("SELECT * FROM Grades WHERE courseID = ?")) {
-            pstmt.setString(1, courseId.trim());
-            ResultSet rs = pstmt.executeQuery();
-            while (rs.next()) {
-                tableModel.addRow(new Object[]{
-                    rs.getString("stuID"),
-                    rs.getString("courseID"),
-                    rs.getDouble("score")
-                });
+    // === 只应用已提交的变更, 不重新查询整表 ===
+    private void applyGradeChanges(List<EntityEventBus.Event<Grade>> events) {
+        if (filter != null) {
+            // 过滤结果只需重新读取行数和可见页, 与整表大小无关
+            showRows();
+            return;
+        }
+        for (EntityEventBus.Event<Grade> e : events) {
+            switch (e.getKind()) {
+                case CREATED:
+                    tableModel.rowInserted(e.getValue());
+                    break;
+                case UPDATED:
+                    tableModel.rowUpdated(e.getValue());
+                    break;
+                case DELETED:
+                    int dash = e.getKey().indexOf('-');
+                    tableModel.rowRemoved(new Grade(e.getKey().substring(0, dash), e.getKey().substring(dash + 1), 0));
+                    break;
+                default:
+                    loadTableData();
+                    return;
             }
-        } catch (Exception e) {
-            JOptionPane.showMessageDialog(this, "Error filtering by course: " + e.getMessage());
         }
     }
+
+    // === 按学生、课程、分数范围和专业组合过滤, 由数据库按页返回 ===
+    private void applyFilter() {
+        Criteria<Grade> c = gradeManager.criteria();
+        String stuID = txtFilterStudent.getSelectedID();
+        String courseID = txtFilterCourse.getSelectedID();
+        String major = txtFilterMajor.getText().trim();
+        if (stuID != null) c.eq("stuID", stuID);
+        if (courseID != null) c.eq("courseID", courseID);
+        try {
+            if (!txtMinScore.getText().trim().isEmpty()) c.ge("score", Double.parseDouble(txtMinScore.getText().trim()));
+            if (!txtMaxScore.getText().trim().isEmpty()) c.le("score", Double.parseDouble(txtMaxScore.getText().trim()));
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(this, "Invalid score: " + e.getMessage());
+            return;
+        }
+        if (!major.isEmpty()) c.eq("major", major);
+        if (c.getConditions().isEmpty()) {
+            loadTableData();
+            return;
+        }
+        filter = c;
+        showRows();
+    }
+
+    private void clearFilter() {
+        txtFilterStudent.setSelectedID("");
+        txtFilterCourse.setSelectedID("");
+        txtMinScore.setText("");
+        txtMaxScore.setText("");
+        txtFilterMajor.setText("");
+        loadTableData();
+    }
 }
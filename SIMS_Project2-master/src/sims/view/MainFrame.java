@@ -1,8 +1,26 @@
 package sims.view;
 
+import sims.controller.CourseManager;
+import sims.controller.CsvExporter;
+import sims.controller.CsvImporter;
+import sims.controller.CsvSchema;
 import sims.controller.DBHelper;
+import sims.controller.EntityEventBus;
+import sims.controller.GradeManager;
+import sims.controller.ImportReport;
+import sims.controller.Log;
+import sims.controller.StartupTimer;
+import sims.controller.StudentManager;
+import sims.model.Course;
+import sims.model.Grade;
+import sims.model.Student;
 import javax.swing.*;
+import javax.swing.Timer;
 import java.awt.*;
+import java.io.File;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Main application frame with tabbed interface
@@ -10,36 +28,51 @@ import java.awt.*;
  */
 public class MainFrame extends JFrame {
     
+    /** Delay before the rows of the tab after the selected one are read in the background */
+    private static final int PREFETCH_DELAY_MS = 300;
+    
+    private static final String[] TAB_TITLES = {"Students", "Courses", "Grades"};
+    private static final String[] TAB_TIPS = {
+        "Manage student records", "Manage course information", "Manage student grades"};
+    /** Changes to these rows make a tab's prefetched rows stale */
+    private static final EntityEventBus.Topic<?>[] TAB_TOPICS = {
+        EntityEventBus.Topic.STUDENTS, EntityEventBus.Topic.COURSES, EntityEventBus.Topic.GRADES};
+    
     private JTabbedPane tabbedPane;
-    private StudentPanel studentPanel;
-    private CoursePanel coursePanel;
-    private GradePanel gradePanel;
+    private final JPanel[] tabHolders = new JPanel[TAB_TITLES.length];
+    private final boolean[] prefetching = new boolean[TAB_TITLES.length];
+    private Timer prefetchTimer;
+    private boolean painted = false;
+    private int startupStepsLeft = 2; // first paint and database open
     
     public MainFrame() {
+        long construction = StartupTimer.start();
         initComponents();
         setupFrame();
+        StartupTimer.record("Frame construction", construction);
     }
     
     /**
      * Initialize all GUI components
      */
     private void initComponents() {
-        // Initialize database connection
-        DBHelper.getConnection();
-        
-        // Create panels
-        studentPanel = new StudentPanel();
-        coursePanel = new CoursePanel();
-        gradePanel = new GradePanel();
+        // Open the database in the background; panels queue their first
+        // queries behind it instead of blocking the window from appearing
+        openDatabase();
         
         // Create tabbed pane
         tabbedPane = new JTabbedPane();
         tabbedPane.setFont(new Font("Arial", Font.PLAIN, 14));
         
-        // Add tabs with icons and tooltips
-        tabbedPane.addTab("Students", null, studentPanel, "Manage student records");
-        tabbedPane.addTab("Courses", null, coursePanel, "Manage course information");
-        tabbedPane.addTab("Grades", null, gradePanel, "Manage student grades");
+        // Tabs start as empty holders; a panel is built when its tab is
+        // first selected, or once its rows were prefetched after its
+        // neighbour was shown
+        for (int i = 0; i < TAB_TITLES.length; i++) {
+            tabHolders[i] = new JPanel(new BorderLayout());
+            tabbedPane.addTab(TAB_TITLES[i], null, tabHolders[i], TAB_TIPS[i]);
+        }
+        tabbedPane.addChangeListener(e -> showTab(tabbedPane.getSelectedIndex()));
+        showTab(0);
         
         // Add to frame
         getContentPane().add(tabbedPane, BorderLayout.CENTER);
@@ -48,6 +81,156 @@ public class MainFrame extends JFrame {
         createMenuBar();
     }
     
+    /**
+     * Build the selected tab if needed and schedule prefetching the next one
+     */
+    private void showTab(int index) {
+        if (index < 0) return;
+        buildTab(index, null);
+        
+        if (prefetchTimer != null) {
+            prefetchTimer.stop();
+        }
+        int next = (index + 1) % TAB_TITLES.length;
+        if (tabHolders[next].getComponentCount() == 0 && !prefetching[next]) {
+            // Waits a little so the selected tab's own first queries go first
+            prefetchTimer = new Timer(PREFETCH_DELAY_MS, e -> prefetchTab(next));
+            prefetchTimer.setRepeats(false);
+            prefetchTimer.start();
+        }
+    }
+    
+    /**
+     * Read a tab's row count and first page on a worker thread, then build
+     * its panel on the EDT from those rows. If the tab's rows change while
+     * they are read, or before the panel listens for changes itself, the
+     * prefetched rows are discarded and the panel reads its own.
+     */
+    private void prefetchTab(int index) {
+        if (tabHolders[index].getComponentCount() > 0 || prefetching[index]) return;
+        prefetching[index] = true;
+        
+        AtomicReference<PagedTableModel.Prefetched<?>> rows = new AtomicReference<>();
+        AtomicBoolean changed = new AtomicBoolean();
+        EntityEventBus.Subscription watch = EntityEventBus.shared().subscribe(TAB_TOPICS[index], Runnable::run,
+            events -> {
+                changed.set(true);
+                PagedTableModel.Prefetched<?> r = rows.get();
+                if (r != null) {
+                    r.discard();
+                }
+            });
+        long start = StartupTimer.start();
+        new SwingWorker<PagedTableModel.Prefetched<?>, Void>() {
+            @Override
+            protected PagedTableModel.Prefetched<?> doInBackground() {
+                switch (index) {
+                    case 0:
+                        return StudentPanel.prefetch();
+                    case 1:
+                        return CoursePanel.prefetch();
+                    default:
+                        return GradePanel.prefetch();
+                }
+            }
+            
+            @Override
+            protected void done() {
+                prefetching[index] = false;
+                try {
+                    PagedTableModel.Prefetched<?> r = get();
+                    rows.set(r);
+                    if (changed.get()) {
+                        r.discard();
+                    }
+                    StartupTimer.record(TAB_TITLES[index] + " tab prefetched", start);
+                    buildTab(index, r);
+                } catch (InterruptedException | ExecutionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    Log.warn("✗ Could not prefetch the " + TAB_TITLES[index] + " tab: " + cause.getMessage());
+                } finally {
+                    // The panel, if built, listens for changes itself from here on
+                    watch.close();
+                }
+            }
+        }.execute();
+    }
+    
+    /**
+     * Create the panel of a tab the first time it is needed
+     * @param rows the tab's prefetched rows, or null to let the panel read them
+     */
+    @SuppressWarnings("unchecked")
+    private void buildTab(int index, PagedTableModel.Prefetched<?> rows) {
+        JPanel holder = tabHolders[index];
+        if (holder.getComponentCount() > 0) return;
+        
+        long build = StartupTimer.start();
+        JPanel panel;
+        switch (index) {
+            case 0:
+                panel = new StudentPanel((PagedTableModel.Prefetched<Student>) rows);
+                break;
+            case 1:
+                panel = new CoursePanel((PagedTableModel.Prefetched<Course>) rows);
+                break;
+            default:
+                panel = new GradePanel((PagedTableModel.Prefetched<Grade>) rows);
+                break;
+        }
+        holder.add(panel, BorderLayout.CENTER);
+        holder.revalidate();
+        StartupTimer.record(TAB_TITLES[index] + " tab built", build);
+    }
+    
+    /**
+     * Record the first paint of the window for the startup report
+     */
+    @Override
+    public void paint(Graphics g) {
+        super.paint(g);
+        if (!painted) {
+            painted = true;
+            StartupTimer.mark("First paint");
+            startupStepDone();
+        }
+    }
+    
+    /**
+     * Log the startup report once the window is painted and the database is open
+     */
+    private void startupStepDone() {
+        if (--startupStepsLeft == 0) {
+            Log.info(StartupTimer.report());
+        }
+    }
+    
+    /**
+     * Boot Derby and the connection pool off the EDT
+     */
+    private void openDatabase() {
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() throws Exception {
+                DBHelper.getPool();
+                return null;
+            }
+            
+            @Override
+            protected void done() {
+                try {
+                    get();
+                    startupStepDone();
+                } catch (InterruptedException | ExecutionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    JOptionPane.showMessageDialog(MainFrame.this,
+                        "Could not open the database: " + cause.getMessage(),
+                        "Database Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+    
     /**
      * Setup frame properties
      */
@@ -81,11 +264,21 @@ public class MainFrame extends JFrame {
         refreshItem.setMnemonic('R');
         refreshItem.addActionListener(e -> refreshAllPanels());
         
+        JMenuItem importItem = new JMenuItem("Import CSV...");
+        importItem.setMnemonic('I');
+        importItem.addActionListener(e -> importCsv());
+        
+        JMenuItem exportItem = new JMenuItem("Export CSV...");
+        exportItem.setMnemonic('E');
+        exportItem.addActionListener(e -> exportCsv());
+        
         JMenuItem exitItem = new JMenuItem("Exit");
         exitItem.setMnemonic('x');
         exitItem.addActionListener(e -> exitApplication());
         
         fileMenu.add(refreshItem);
+        fileMenu.add(importItem);
+        fileMenu.add(exportItem);
         fileMenu.addSeparator();
         fileMenu.add(exitItem);
         
@@ -101,7 +294,13 @@ public class MainFrame extends JFrame {
         userGuideItem.setMnemonic('U');
         userGuideItem.addActionListener(e -> showUserGuide());
         
+        JMenuItem timingItem = new JMenuItem("Startup Timing");
+        timingItem.setMnemonic('S');
+        timingItem.addActionListener(e -> JOptionPane.showMessageDialog(this,
+            StartupTimer.report(), "Startup Timing", JOptionPane.INFORMATION_MESSAGE));
+        
         helpMenu.add(userGuideItem);
+        helpMenu.add(timingItem);
         helpMenu.add(aboutItem);
         
         menuBar.add(fileMenu);
@@ -110,14 +309,121 @@ public class MainFrame extends JFrame {
     }
     
     /**
-     * Refresh all data panels
+     * Reload every open panel, and the entity caches, from the database
+     * Use after the database was changed outside this application
      */
     private void refreshAllPanels() {
-        // This would trigger refresh in all panels
-        JOptionPane.showMessageDialog(this,
-            "All panels refreshed successfully!",
-            "Refresh Complete",
-            JOptionPane.INFORMATION_MESSAGE);
+        EntityEventBus bus = EntityEventBus.shared();
+        bus.invalidate(EntityEventBus.Topic.STUDENTS);
+        bus.invalidate(EntityEventBus.Topic.COURSES);
+        bus.invalidate(EntityEventBus.Topic.GRADES);
+    }
+    
+    /**
+     * Import a CSV file into one of the tables in the background
+     */
+    private void importCsv() {
+        String[] tables = {"Students", "Courses", "Grades"};
+        int choice = JOptionPane.showOptionDialog(this,
+            "Which table does the file contain?\n" +
+            "Columns must match the table layout, e.g.\n" +
+            CsvSchema.STUDENTS.getHeader() + "\n" +
+            CsvSchema.COURSES.getHeader() + "\n" +
+            CsvSchema.GRADES.getHeader(),
+            "Import CSV", JOptionPane.DEFAULT_OPTION, JOptionPane.QUESTION_MESSAGE,
+            null, tables, tables[0]);
+        if (choice < 0) return;
+        
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        File file = chooser.getSelectedFile();
+        
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        new SwingWorker<ImportReport, Void>() {
+            @Override
+            protected ImportReport doInBackground() throws Exception {
+                switch (choice) {
+                    case 0:
+                        return new CsvImporter<>(new StudentManager(), CsvSchema.STUDENTS).importFile(file.toPath());
+                    case 1:
+                        return new CsvImporter<>(new CourseManager(), CsvSchema.COURSES).importFile(file.toPath());
+                    default:
+                        return new CsvImporter<>(new GradeManager(), CsvSchema.GRADES).importFile(file.toPath());
+                }
+            }
+            
+            @Override
+            protected void done() {
+                setCursor(Cursor.getDefaultCursor());
+                try {
+                    showImportReport(get());
+                } catch (InterruptedException | ExecutionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    JOptionPane.showMessageDialog(MainFrame.this,
+                        "Import failed: " + cause.getMessage(),
+                        "Import Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+    
+    /**
+     * Show the outcome of an import, including the first rejected rows
+     */
+    private void showImportReport(ImportReport report) {
+        StringBuilder message = new StringBuilder(report.toString());
+        int shown = 0;
+        for (ImportReport.Rejection r : report.getRejections()) {
+            if (shown++ == 10) {
+                message.append("\n...");
+                break;
+            }
+            message.append("\n").append(r);
+        }
+        JOptionPane.showMessageDialog(this, message.toString(), "Import Complete",
+            report.getRejected() == 0 ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.WARNING_MESSAGE);
+    }
+    
+    /**
+     * Export one of the tables to a CSV file in the background
+     * File names ending in .gz are written gzip-compressed
+     */
+    private void exportCsv() {
+        CsvSchema<?>[] schemas = {CsvSchema.STUDENTS, CsvSchema.COURSES, CsvSchema.GRADES};
+        String[] tables = {"Students", "Courses", "Grades"};
+        int choice = JOptionPane.showOptionDialog(this,
+            "Which table do you want to export?\n(Use a .gz file name for compressed output)",
+            "Export CSV", JOptionPane.DEFAULT_OPTION, JOptionPane.QUESTION_MESSAGE,
+            null, tables, tables[0]);
+        if (choice < 0) return;
+        
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new File(tables[choice].toLowerCase() + ".csv"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        File file = chooser.getSelectedFile();
+        
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        new SwingWorker<Long, Void>() {
+            @Override
+            protected Long doInBackground() throws Exception {
+                return new CsvExporter().export(schemas[choice], file.toPath());
+            }
+            
+            @Override
+            protected void done() {
+                setCursor(Cursor.getDefaultCursor());
+                try {
+                    JOptionPane.showMessageDialog(MainFrame.this,
+                        get() + " rows exported to " + file.getName(),
+                        "Export Complete", JOptionPane.INFORMATION_MESSAGE);
+                } catch (InterruptedException | ExecutionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    JOptionPane.showMessageDialog(MainFrame.this,
+                        "Export failed: " + cause.getMessage(),
+                        "Export Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
     }
     
     /**
@@ -155,7 +461,7 @@ public class MainFrame extends JFrame {
                       "   - Manage course credits\n\n" +
                       "3. Grades Tab:\n" +
                       "   - Assign grades to students\n" +
-                      "   - Filter by student or course\n" +
+                      "   - Filter by student, course, score range and major\n" +
                       "   - View all grade records\n\n" +
                       "Tips:\n" +
                       "• Add students and courses before adding grades\n" +
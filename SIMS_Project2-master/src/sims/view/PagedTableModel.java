@@ -0,0 +1,567 @@
+package sims.view;
+
+import sims.controller.Criteria;
+import sims.controller.Log;
+import sims.controller.Manager;
+import javax.swing.SwingWorker;
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * Virtual table model that fetches rows a page at a time.
+ * Only the pages JTable actually asks for (the visible viewport) are
+ * loaded, and at most a fixed number of pages are kept in memory.
+ * The next page is fetched by keyset when the previous page is cached,
+ * and by offset when the user jumps elsewhere.
+ *
+ * Counts and pages are loaded on background threads; cells of a page that
+ * is still loading are blank until it arrives. Results that belong to an
+ * older refresh are dropped. A failed count leaves the table empty and is
+ * passed to the count error handler; a failed page stays blank and is
+ * only logged. Like every Swing model it must only be used on the EDT.
+ *
+ * When the model knows the primary key order of its rows, a single insert,
+ * update or delete is applied to the cached pages in place instead of
+ * reloading: the work is bounded by the number of cached rows, not by the
+ * size of the table. Cached pages whose boundary row becomes unknown are
+ * dropped and fetched again when they are next shown.
+ */
+public class PagedTableModel<T> extends AbstractTableModel {
+
+    /**
+     * Source of rows for the model
+     */
+    public interface PageLoader<T> {
+        /**
+         * @return total number of rows
+         */
+        int count();
+
+        /**
+         * @param last last row of the previous page, or null for the first page
+         * @return up to limit rows following last
+         */
+        List<T> loadAfter(T last, int limit);
+
+        /**
+         * @return up to limit rows starting at position offset
+         */
+        List<T> loadAt(int offset, int limit);
+    }
+
+    /**
+     * Loader over rows that are already in memory, e.g. a filtered result
+     */
+    public static <T> PageLoader<T> ofList(List<T> rows) {
+        return new PageLoader<T>() {
+            @Override
+            public int count() {
+                return rows.size();
+            }
+
+            @Override
+            public List<T> loadAfter(T last, int limit) {
+                return loadAt(last == null ? 0 : rows.indexOf(last) + 1, limit);
+            }
+
+            @Override
+            public List<T> loadAt(int offset, int limit) {
+                int from = Math.min(offset, rows.size());
+                return new ArrayList<>(rows.subList(from, Math.min(from + limit, rows.size())));
+            }
+        };
+    }
+
+    /**
+     * Loader over the rows matching the criteria, paged in the database:
+     * by keyset when scrolling on, by offset when jumping
+     */
+    public static <T> PageLoader<T> ofCriteria(Manager<T> manager, Criteria<T> criteria) {
+        Criteria<T> query = criteria.copy();
+        return new PageLoader<T>() {
+            @Override
+            public int count() {
+                return manager.count(query);
+            }
+
+            @Override
+            public List<T> loadAfter(T last, int limit) {
+                return manager.find(query.copy().after(last).limit(limit));
+            }
+
+            @Override
+            public List<T> loadAt(int offset, int limit) {
+                return manager.find(query.copy().offset(offset).limit(limit));
+            }
+        };
+    }
+
+    /**
+     * Read the row count and first page now, so a model built later shows
+     * them without waiting for the database. Call it off the EDT.
+     */
+    public static <T> Prefetched<T> prefetch(PageLoader<T> loader) {
+        return new Prefetched<>(loader, loader.count(), loader.loadAfter(null, DEFAULT_PAGE_SIZE));
+    }
+
+    /**
+     * Loader that answers its first count and first page from rows read in
+     * advance by {@link #prefetch}, and passes every other call through
+     */
+    public static final class Prefetched<T> implements PageLoader<T> {
+        private final PageLoader<T> loader;
+        private final AtomicReference<Integer> count;
+        private final AtomicReference<List<T>> firstPage;
+
+        private Prefetched(PageLoader<T> loader, int count, List<T> firstPage) {
+            this.loader = loader;
+            this.count = new AtomicReference<>(count);
+            this.firstPage = new AtomicReference<>(firstPage);
+        }
+
+        /**
+         * Forget the prefetched rows, e.g. because the table changed since they were read
+         */
+        public void discard() {
+            count.set(null);
+            firstPage.set(null);
+        }
+
+        @Override
+        public int count() {
+            Integer c = count.getAndSet(null);
+            return c != null ? c : loader.count();
+        }
+
+        @Override
+        public List<T> loadAfter(T last, int limit) {
+            if (last == null && limit == DEFAULT_PAGE_SIZE) {
+                List<T> page = firstPage.getAndSet(null);
+                if (page != null) {
+                    return page;
+                }
+            }
+            return loader.loadAfter(last, limit);
+        }
+
+        @Override
+        public List<T> loadAt(int offset, int limit) {
+            return loader.loadAt(offset, limit);
+        }
+    }
+
+    public static final int DEFAULT_PAGE_SIZE = 200;
+    private static final int MAX_CACHED_PAGES = 10;
+
+    private final String[] columns;
+    private final BiFunction<T, Integer, Object> cellValue;
+    private final int pageSize;
+    private final Map<Integer, List<T>> pages;
+    private final Set<Integer> pending = new HashSet<>();
+    private Comparator<? super T> keyOrder;
+    private PageLoader<T> loader;
+    private int rowCount = 0;
+    private int generation = 0;
+    private int pageEpoch = 0;
+    private boolean counting = false;
+    private Consumer<Throwable> onCountError = e -> { };
+
+    /**
+     * @param columns column headers
+     * @param cellValue value of a column for a row object
+     * @param loader initial row source
+     */
+    public PagedTableModel(String[] columns, BiFunction<T, Integer, Object> cellValue, PageLoader<T> loader) {
+        this(columns, cellValue, loader, null, DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * @param keyOrder primary key order the loader returns rows in; enables
+     *                 {@link #rowInserted}, {@link #rowUpdated} and {@link #rowRemoved}
+     */
+    public PagedTableModel(String[] columns, BiFunction<T, Integer, Object> cellValue, PageLoader<T> loader,
+                           Comparator<? super T> keyOrder) {
+        this(columns, cellValue, loader, keyOrder, DEFAULT_PAGE_SIZE);
+    }
+
+    public PagedTableModel(String[] columns, BiFunction<T, Integer, Object> cellValue,
+                           PageLoader<T> loader, Comparator<? super T> keyOrder, int pageSize) {
+        this.columns = columns.clone();
+        this.keyOrder = keyOrder;
+        this.cellValue = cellValue;
+        this.loader = loader;
+        this.pageSize = pageSize;
+        this.pages = new LinkedHashMap<Integer, List<T>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<T>> eldest) {
+                return size() > MAX_CACHED_PAGES;
+            }
+        };
+    }
+
+    /**
+     * @param onCountError receives the failure on the EDT when the row count
+     *                     cannot be read, e.g. to tell the user
+     */
+    public void setCountErrorHandler(Consumer<Throwable> onCountError) {
+        this.onCountError = onCountError;
+    }
+
+    /**
+     * Switch to another row source and reload
+     */
+    public void setLoader(PageLoader<T> loader) {
+        this.loader = loader;
+        refresh();
+    }
+
+    /**
+     * Switch to another row source whose rows come in another order and reload
+     * @param keyOrder primary key order of the new loader's rows, or null if they
+     *                 are sorted otherwise; single-row changes then reload instead
+     */
+    public void setLoader(PageLoader<T> loader, Comparator<? super T> keyOrder) {
+        this.keyOrder = keyOrder;
+        setLoader(loader);
+    }
+
+    /**
+     * Drop all cached pages and re-read the row count in the background
+     */
+    public void refresh() {
+        int gen = ++generation;
+        pages.clear();
+        pending.clear();
+        counting = true;
+        PageLoader<T> source = loader;
+        new SwingWorker<Integer, Void>() {
+            @Override
+            protected Integer doInBackground() {
+                return source.count();
+            }
+
+            @Override
+            protected void done() {
+                if (gen != generation) {
+                    return;
+                }
+                counting = false;
+                Throwable failure = null;
+                try {
+                    rowCount = get();
+                } catch (InterruptedException | ExecutionException e) {
+                    failure = e.getCause() != null ? e.getCause() : e;
+                    Log.warn("✗ Could not count rows: " + failure.getMessage(), failure);
+                    rowCount = 0;
+                }
+                fireTableDataChanged();
+                if (failure != null) {
+                    onCountError.accept(failure);
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * @return the row object at a model index, or null if it does not exist or is still loading
+     */
+    public T getRow(int row) {
+        if (row < 0 || row >= rowCount) {
+            return null;
+        }
+        List<T> page = page(row / pageSize);
+        int i = row % pageSize;
+        return i < page.size() ? page.get(i) : null;
+    }
+
+    /**
+     * Get a cached page, starting a background load if it is missing
+     * @return the page, or an empty list while it loads
+     */
+    private List<T> page(int index) {
+        List<T> page = pages.get(index);
+        if (page != null) {
+            return page;
+        }
+        if (pending.add(index)) {
+            List<T> previous = index > 0 ? pages.get(index - 1) : null;
+            T after = previous != null && previous.size() == pageSize ? previous.get(pageSize - 1) : null;
+            int gen = generation;
+            int epoch = pageEpoch;
+            PageLoader<T> source = loader;
+            new SwingWorker<List<T>, Void>() {
+                @Override
+                protected List<T> doInBackground() {
+                    if (index == 0) {
+                        return source.loadAfter(null, pageSize);
+                    }
+                    return after != null
+                        ? source.loadAfter(after, pageSize)
+                        : source.loadAt(index * pageSize, pageSize);
+                }
+
+                @Override
+                protected void done() {
+                    if (gen != generation || epoch != pageEpoch) {
+                        return; // The table changed while the page was loading
+                    }
+                    pending.remove(index);
+                    try {
+                        pages.put(index, get());
+                    } catch (InterruptedException | ExecutionException e) {
+                        // Cache the failure as an empty page so repaints do not retry in a loop
+                        Throwable cause = e.getCause() != null ? e.getCause() : e;
+                        Log.warn("✗ Could not load rows " + index * pageSize + " to "
+                            + ((index + 1) * pageSize - 1) + ": " + cause.getMessage(), cause);
+                        pages.put(index, Collections.<T>emptyList());
+                        return;
+                    }
+                    int first = index * pageSize;
+                    if (first < rowCount) {
+                        fireTableRowsUpdated(first, Math.min(first + pageSize, rowCount) - 1);
+                    }
+                }
+            }.execute();
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Show a row that was just added to the underlying table, at its key position
+     */
+    public void rowInserted(T row) {
+        if (!beginChange() || replaceCached(row)) {
+            return; // Already shown, e.g. deleted and re-created
+        }
+        int from = -1;
+        int offset = -1; // Index within page from, or -1 if the row goes before an unknown boundary
+        int maxCached = -1;
+        for (int j : cachedPages()) {
+            List<T> page = pages.get(j);
+            maxCached = j;
+            if (from >= 0 || page.isEmpty() || keyOrder.compare(row, page.get(page.size() - 1)) > 0) {
+                continue;
+            }
+            int i = insertionIndex(page, row);
+            from = j;
+            offset = i > 0 || j == 0 || pages.containsKey(j - 1) ? i : -1;
+        }
+        if (from < 0) {
+            // After every cached row: only the table's last page can take it
+            int last = rowCount == 0 ? 0 : (rowCount - 1) / pageSize;
+            List<T> page = pages.get(last);
+            if (rowCount == 0 || page != null && page.size() == rowCount - last * pageSize) {
+                from = rowCount / pageSize;
+                offset = rowCount % pageSize;
+            }
+        }
+        rowCount++;
+        if (from < 0) {
+            fireTableDataChanged(); // Somewhere beyond the cached pages
+            return;
+        }
+
+        T carry = row;
+        boolean known = offset >= 0;
+        for (int m = from; m <= maxCached; m++) {
+            List<T> page = pages.get(m);
+            if (page == null || page.isEmpty()) {
+                pages.remove(m);
+                known = false; // Its last row, which page m + 1 receives, is unknown
+                continue;
+            }
+            List<T> copy = new ArrayList<>(page);
+            if (m == from && offset >= 0) {
+                copy.add(offset, row);
+            } else if (known) {
+                copy.add(0, carry);
+            } else {
+                pages.remove(m); // Its new first row is unknown
+                carry = page.get(page.size() - 1);
+                known = page.size() == pageSize;
+                if (!known) {
+                    break;
+                }
+                continue;
+            }
+            if (copy.size() <= pageSize) {
+                pages.put(m, copy);
+                break;
+            }
+            carry = copy.remove(copy.size() - 1);
+            pages.put(m, copy);
+        }
+        if (offset >= 0) {
+            int position = from * pageSize + offset;
+            fireTableRowsInserted(position, position);
+        } else {
+            fireTableDataChanged();
+        }
+    }
+
+    /**
+     * Replace the cached copy of a row whose non-key columns changed
+     */
+    public void rowUpdated(T row) {
+        if (beginChange()) {
+            replaceCached(row);
+        }
+    }
+
+    /**
+     * @return true if a cached row with the same key was found and replaced
+     */
+    private boolean replaceCached(T row) {
+        for (int j : cachedPages()) {
+            List<T> page = pages.get(j);
+            int i = Collections.binarySearch(page, row, keyOrder);
+            if (i >= 0) {
+                List<T> copy = new ArrayList<>(page);
+                copy.set(i, row);
+                pages.put(j, copy);
+                fireTableRowsUpdated(j * pageSize + i, j * pageSize + i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Take out a row that was just deleted from the underlying table
+     * @param row the deleted row; only its key is used
+     */
+    public void rowRemoved(T row) {
+        if (!beginChange()) {
+            return;
+        }
+        int from = -1;
+        int offset = -1; // Index within page from, or -1 if the row was before an unknown boundary
+        int maxCached = -1;
+        boolean absent = false;
+        for (int j : cachedPages()) {
+            List<T> page = pages.get(j);
+            maxCached = j;
+            if (from >= 0 || absent || page.isEmpty() || keyOrder.compare(row, page.get(page.size() - 1)) > 0) {
+                continue;
+            }
+            int i = Collections.binarySearch(page, row, keyOrder);
+            if (i >= 0) {
+                from = j;
+                offset = i;
+            } else if (-i - 1 == 0 && j > 0 && !pages.containsKey(j - 1)) {
+                from = j;
+            } else {
+                absent = true; // Between two cached rows, so never part of this view
+            }
+        }
+        if (absent) {
+            return;
+        }
+        if (from < 0) {
+            int last = rowCount == 0 ? 0 : (rowCount - 1) / pageSize;
+            List<T> page = pages.get(last);
+            if (rowCount == 0 || page != null && page.size() == rowCount - last * pageSize) {
+                return; // After the last row of the view
+            }
+        }
+        rowCount = Math.max(0, rowCount - 1);
+        if (from < 0) {
+            fireTableDataChanged();
+            return;
+        }
+
+        int needsTail = -1; // Page that is one row short and takes the next page's first row
+        for (int m = from; m <= maxCached; m++) {
+            List<T> page = pages.get(m);
+            if (page == null || page.isEmpty()) {
+                if (needsTail >= 0) {
+                    pages.remove(needsTail);
+                }
+                pages.remove(m);
+                needsTail = -1;
+                continue;
+            }
+            List<T> copy = new ArrayList<>(page);
+            T first = copy.remove(m == from && offset >= 0 ? offset : 0);
+            if (needsTail >= 0 && !(m == from && offset >= 0)) {
+                pages.get(needsTail).add(first);
+            }
+            pages.put(m, copy);
+            if (page.size() < pageSize) {
+                needsTail = -1;
+                break;
+            }
+            needsTail = m;
+        }
+        if (needsTail >= 0 && rowCount - needsTail * pageSize >= pageSize) {
+            pages.remove(needsTail); // Its new last row is on a page that is not cached
+        }
+        if (offset >= 0) {
+            int position = from * pageSize + offset;
+            fireTableRowsDeleted(position, position);
+        } else {
+            fireTableDataChanged();
+        }
+    }
+
+    /**
+     * Prepare for an in-place change: page loads already in flight may have
+     * read the table before the change, so their results are discarded
+     * @return false if the change was handled by a full refresh instead
+     */
+    private boolean beginChange() {
+        if (keyOrder == null || counting) {
+            refresh();
+            return false;
+        }
+        pageEpoch++;
+        pending.clear();
+        return true;
+    }
+
+    /**
+     * @return indexes of the cached pages in ascending order
+     */
+    private List<Integer> cachedPages() {
+        List<Integer> indexes = new ArrayList<>(pages.keySet());
+        Collections.sort(indexes);
+        return indexes;
+    }
+
+    private int insertionIndex(List<T> page, T row) {
+        int i = Collections.binarySearch(page, row, keyOrder);
+        return i >= 0 ? i : -i - 1;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columns[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        T item = getRow(row);
+        return item == null ? "" : cellValue.apply(item, column);
+    }
+}
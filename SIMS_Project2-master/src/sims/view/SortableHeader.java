@@ -0,0 +1,92 @@
+package sims.view;
+
+import javax.swing.*;
+import javax.swing.table.JTableHeader;
+import javax.swing.table.TableCellRenderer;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.function.BiConsumer;
+
+/**
+ * Column-header sorting for tables whose rows are sorted by the database.
+ * Unlike a RowSorter it never touches the rows: a click cycles the column
+ * through ascending, descending and unsorted, draws the arrow and tells the
+ * panel, which reloads its model with the new ORDER BY.
+ *
+ * Must be used on the EDT.
+ */
+final class SortableHeader {
+
+    private final JTable table;
+    private final boolean[] sortable;
+    private final BiConsumer<Integer, SortOrder> listener;
+    private int column = -1;
+    private SortOrder order = SortOrder.UNSORTED;
+
+    private SortableHeader(JTable table, boolean[] sortable, BiConsumer<Integer, SortOrder> listener) {
+        this.table = table;
+        this.sortable = sortable.clone();
+        this.listener = listener;
+    }
+
+    /**
+     * @param sortable per model column, whether clicking its header sorts
+     * @param listener receives the model column and its new order; UNSORTED means the default order
+     */
+    static SortableHeader install(JTable table, boolean[] sortable, BiConsumer<Integer, SortOrder> listener) {
+        SortableHeader h = new SortableHeader(table, sortable, listener);
+        JTableHeader header = table.getTableHeader();
+        TableCellRenderer base = header.getDefaultRenderer();
+        header.setDefaultRenderer((t, value, selected, focused, row, viewColumn) -> {
+            Component c = base.getTableCellRendererComponent(t, value, selected, focused, row, viewColumn);
+            if (c instanceof JLabel) {
+                JLabel label = (JLabel) c;
+                boolean sorted = h.order != SortOrder.UNSORTED && t.convertColumnIndexToModel(viewColumn) == h.column;
+                label.setIcon(!sorted ? null : UIManager.getIcon(h.order == SortOrder.ASCENDING
+                    ? "Table.ascendingSortIcon" : "Table.descendingSortIcon"));
+                label.setHorizontalTextPosition(SwingConstants.LEADING);
+            }
+            return c;
+        });
+        header.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (SwingUtilities.isLeftMouseButton(e) && header.getResizingColumn() == null) {
+                    int viewColumn = header.columnAtPoint(e.getPoint());
+                    if (viewColumn >= 0) {
+                        h.toggle(table.convertColumnIndexToModel(viewColumn));
+                    }
+                }
+            }
+        });
+        return h;
+    }
+
+    /**
+     * Show the default order again without notifying the listener
+     */
+    void clear() {
+        column = -1;
+        order = SortOrder.UNSORTED;
+        table.getTableHeader().repaint();
+    }
+
+    private void toggle(int modelColumn) {
+        if (modelColumn >= sortable.length || !sortable[modelColumn]) {
+            return;
+        }
+        if (modelColumn != column) {
+            column = modelColumn;
+            order = SortOrder.ASCENDING;
+        } else if (order == SortOrder.ASCENDING) {
+            order = SortOrder.DESCENDING;
+        } else if (order == SortOrder.DESCENDING) {
+            order = SortOrder.UNSORTED;
+        } else {
+            order = SortOrder.ASCENDING;
+        }
+        table.getTableHeader().repaint();
+        listener.accept(column, order);
+    }
+}
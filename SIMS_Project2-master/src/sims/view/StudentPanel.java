@@ -1,18 +1,29 @@
 package sims.view;
 
+import sims.controller.BatchResult;
+import sims.controller.EntityEventBus;
+import sims.controller.EntityEventBus.Topic;
 import sims.controller.StudentManager;
 import sims.model.Student;
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
-import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 
 /**
  * Student Management Panel with CRUD operations
  */
 public class StudentPanel extends JPanel {
     
+    /** Most search results shown in the table */
+    private static final int MAX_MATCHES = 200;
+    /** Database column of each table column, for sorting */
+    private static final String[] SORT_FIELDS = {"stuID", "name", "gender", "major", "year"};
+    private static final Comparator<Student> KEY_ORDER = Comparator.comparing(Student::getStuID);
+    
     private StudentManager studentManager;
+    private AsyncRunner runner;
     
     // Input fields
     private JTextField txtStudentID;
@@ -20,6 +31,7 @@ public class StudentPanel extends JPanel {
     private JComboBox<String> cmbGender;
     private JTextField txtMajor;
     private JTextField txtYear;
+    private JTextField txtFind;
     
     // Buttons
     private JButton btnAdd;
@@ -31,12 +43,33 @@ public class StudentPanel extends JPanel {
     
     // Table
     private JTable table;
-    private DefaultTableModel tableModel;
+    private PagedTableModel<Student> tableModel;
+    private PagedTableModel.PageLoader<Student> allStudents;
+    // Words of the search shown in the table, null while all students are shown
+    private String findText;
+    private SortableHeader sortHeader;
+    // Column the database sorts by, null for stuID order
+    private String sortField;
+    private boolean sortAscending = true;
     
     public StudentPanel() {
+        this(null);
+    }
+    
+    /**
+     * @param firstRows count and first page read ahead by {@link #prefetch()}, or null to read them now
+     */
+    StudentPanel(PagedTableModel.Prefetched<Student> firstRows) {
         studentManager = new StudentManager();
+        runner = new AsyncRunner(this);
         initComponents();
-        loadTableData();
+        if (firstRows != null) {
+            tableModel.setLoader(firstRows);
+        } else {
+            loadTableData();
+        }
+        // Rows changed anywhere in the application are applied as they are committed
+        EntityEventBus.shared().subscribe(Topic.STUDENTS, SwingUtilities::invokeLater, this::applyChanges);
     }
     
     private void initComponents() {
@@ -95,21 +128,29 @@ public class StudentPanel extends JPanel {
         txtYear = new JTextField(15);
         panel.add(txtYear, gbc);
         
+        // Full-text search over names and majors
+        gbc.gridx = 2; gbc.gridy = 2;
+        panel.add(new JLabel("Find:"), gbc);
+        gbc.gridx = 3;
+        txtFind = new JTextField(15);
+        txtFind.setToolTipText("Words of a name or major, e.g. Li Computer Science");
+        txtFind.addActionListener(e -> searchStudent());
+        panel.add(txtFind, gbc);
+        
         return panel;
     }
     
     private JScrollPane createTablePanel() {
         String[] columns = {"Student ID", "Name", "Gender", "Major", "Year"};
-        tableModel = new DefaultTableModel(columns, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        allStudents = allStudents(studentManager);
+        tableModel = new PagedTableModel<>(columns, StudentPanel::cellValue, allStudents, KEY_ORDER);
+        tableModel.setCountErrorHandler(e -> JOptionPane.showMessageDialog(this,
+            "Error counting students: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
         
         table = new JTable(tableModel);
         table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         table.getTableHeader().setReorderingAllowed(false);
+        sortHeader = SortableHeader.install(table, new boolean[]{true, true, true, true, true}, this::sortBy);
         
         // Add selection listener
         table.getSelectionModel().addListSelectionListener(e -> {
@@ -145,6 +186,7 @@ public class StudentPanel extends JPanel {
         panel.add(btnSearch);
         panel.add(btnRefresh);
         panel.add(btnClear);
+        panel.add(runner.getIndicator());
         
         return panel;
     }
@@ -160,11 +202,12 @@ public class StudentPanel extends JPanel {
             txtYear.getText().trim()
         );
         
-        studentManager.add(student);
-        loadTableData();
-        clearFields();
-        JOptionPane.showMessageDialog(this, "Student added successfully!", 
-            "Success", JOptionPane.INFORMATION_MESSAGE);
+        runner.run(null, () -> studentManager.addAll(Collections.singletonList(student)), result -> {
+            if (!succeeded(result, "adding")) return;
+            clearFields();
+            JOptionPane.showMessageDialog(this, "Student added successfully!", 
+                "Success", JOptionPane.INFORMATION_MESSAGE);
+        });
     }
     
     private void updateStudent() {
@@ -184,11 +227,12 @@ public class StudentPanel extends JPanel {
             txtYear.getText().trim()
         );
         
-        studentManager.update(student);
-        loadTableData();
-        clearFields();
-        JOptionPane.showMessageDialog(this, "Student updated successfully!", 
-            "Success", JOptionPane.INFORMATION_MESSAGE);
+        runner.run(null, () -> studentManager.updateAll(Collections.singletonList(student)), result -> {
+            if (!succeeded(result, "updating")) return;
+            clearFields();
+            JOptionPane.showMessageDialog(this, "Student updated successfully!", 
+                "Success", JOptionPane.INFORMATION_MESSAGE);
+        });
     }
     
     private void deleteStudent() {
@@ -203,52 +247,164 @@ public class StudentPanel extends JPanel {
             "Confirm Delete", JOptionPane.YES_NO_OPTION);
         
         if (confirm == JOptionPane.YES_OPTION) {
-            String studentID = txtStudentID.getText().trim();
-            studentManager.delete(studentID);
-            loadTableData();
-            clearFields();
-            JOptionPane.showMessageDialog(this, "Student deleted successfully!", 
-                "Success", JOptionPane.INFORMATION_MESSAGE);
+            Student deleted = tableModel.getRow(table.getSelectedRow());
+            if (deleted == null) return;
+            runner.run(null, () -> studentManager.deleteAll(Collections.singletonList(deleted.getStuID())), result -> {
+                if (!succeeded(result, "deleting")) return;
+                clearFields();
+                JOptionPane.showMessageDialog(this, "Student deleted successfully!", 
+                    "Success", JOptionPane.INFORMATION_MESSAGE);
+            });
         }
     }
     
     private void searchStudent() {
+        String text = txtFind.getText().trim();
+        if (!text.isEmpty()) {
+            // Matches are shown best first
+            sortField = null;
+            sortHeader.clear();
+            showMatches(text, true);
+            return;
+        }
         String studentID = txtStudentID.getText().trim();
         if (studentID.isEmpty()) {
-            JOptionPane.showMessageDialog(this, "Please enter a Student ID to search!", 
+            JOptionPane.showMessageDialog(this, "Please enter a Student ID or words to find!", 
                 "Warning", JOptionPane.WARNING_MESSAGE);
             return;
         }
         
-        Student student = studentManager.search(studentID);
-        if (student != null) {
-            txtName.setText(student.getName());
-            cmbGender.setSelectedItem(student.getGender());
-            txtMajor.setText(student.getMajor());
-            txtYear.setText(student.getYear());
-        } else {
-            JOptionPane.showMessageDialog(this, "Student not found!", 
-                "Not Found", JOptionPane.INFORMATION_MESSAGE);
+        // Keyed so a newer search replaces one that is still running
+        runner.run("search", () -> studentManager.search(studentID), student -> {
+            if (student != null) {
+                txtName.setText(student.getName());
+                cmbGender.setSelectedItem(student.getGender());
+                txtMajor.setText(student.getMajor());
+                txtYear.setText(student.getYear());
+            } else {
+                JOptionPane.showMessageDialog(this, "Student not found!", 
+                    "Not Found", JOptionPane.INFORMATION_MESSAGE);
+            }
+        });
+    }
+    
+    /**
+     * Show the students matching the words, best match first
+     * @param report tell the user when nothing matches
+     */
+    private void showMatches(String text, boolean report) {
+        findText = text;
+        runner.run("search", () -> studentManager.searchByText(text, MAX_MATCHES), students -> {
+            tableModel.setLoader(PagedTableModel.ofList(students));
+            if (report && students.isEmpty()) {
+                JOptionPane.showMessageDialog(this, "No students match \"" + text + "\".", 
+                    "Not Found", JOptionPane.INFORMATION_MESSAGE);
+            }
+        });
+    }
+    
+    /**
+     * Report a failed change; the table is left as it is
+     * @return true if the change was applied
+     */
+    private boolean succeeded(BatchResult result, String action) {
+        if (result.getFailed() == 0) {
+            return true;
+        }
+        JOptionPane.showMessageDialog(this, "Error " + action + " student: " + result.getFailures().get(0).getMessage(),
+            "Error", JOptionPane.ERROR_MESSAGE);
+        return false;
+    }
+    
+    /**
+     * Apply committed changes to the table without reloading it
+     */
+    private void applyChanges(List<EntityEventBus.Event<Student>> events) {
+        if (findText != null) {
+            // Search results are ranked, so run the search again rather than patching rows in
+            showMatches(findText, false);
+            return;
+        }
+        for (EntityEventBus.Event<Student> e : events) {
+            switch (e.getKind()) {
+                case CREATED:
+                    tableModel.rowInserted(e.getValue());
+                    break;
+                case UPDATED:
+                    tableModel.rowUpdated(e.getValue());
+                    break;
+                case DELETED:
+                    tableModel.rowRemoved(new Student(e.getKey(), null, null, null, null));
+                    break;
+                default:
+                    loadTableData();
+                    return;
+            }
         }
     }
     
     private void loadTableData() {
-        tableModel.setRowCount(0);
-        ArrayList<Student> students = studentManager.getAllStudents();
-        for (Student s : students) {
-            tableModel.addRow(new Object[]{
-                s.getStuID(), s.getName(), s.getGender(), s.getMajor(), s.getYear()
-            });
+        // Only the row count is read here; rows are fetched page by page as they scroll into view
+        findText = null;
+        if (sortField == null) {
+            tableModel.setLoader(allStudents, KEY_ORDER);
+        } else {
+            // Derby sorts and pages by (column, stuID) using the index on both
+            tableModel.setLoader(PagedTableModel.ofCriteria(studentManager,
+                studentManager.criteria().orderBy(sortField, sortAscending)), null);
+        }
+    }
+    
+    private void sortBy(int column, SortOrder order) {
+        sortField = order == SortOrder.UNSORTED ? null : SORT_FIELDS[column];
+        sortAscending = order != SortOrder.DESCENDING;
+        loadTableData();
+    }
+    
+    /**
+     * Read the row count and first page of the table off the EDT, before the panel is built
+     */
+    static PagedTableModel.Prefetched<Student> prefetch() {
+        return PagedTableModel.prefetch(allStudents(new StudentManager()));
+    }
+    
+    private static PagedTableModel.PageLoader<Student> allStudents(StudentManager studentManager) {
+        return new PagedTableModel.PageLoader<Student>() {
+            @Override
+            public int count() {
+                return studentManager.countStudents();
+            }
+            
+            @Override
+            public List<Student> loadAfter(Student last, int limit) {
+                return studentManager.getStudentsAfter(last == null ? null : last.getStuID(), limit);
+            }
+            
+            @Override
+            public List<Student> loadAt(int offset, int limit) {
+                return studentManager.getStudentsPage(offset, limit);
+            }
+        };
+    }
+    
+    private static Object cellValue(Student s, int column) {
+        switch (column) {
+            case 0: return s.getStuID();
+            case 1: return s.getName();
+            case 2: return s.getGender();
+            case 3: return s.getMajor();
+            default: return s.getYear();
         }
     }
     
     private void fillFieldsFromTable() {
-        int row = table.getSelectedRow();
-        txtStudentID.setText(tableModel.getValueAt(row, 0).toString());
-        txtName.setText(tableModel.getValueAt(row, 1).toString());
-        cmbGender.setSelectedItem(tableModel.getValueAt(row, 2).toString());
-        txtMajor.setText(tableModel.getValueAt(row, 3).toString());
-        txtYear.setText(tableModel.getValueAt(row, 4).toString());
+        Student s = tableModel.getRow(table.getSelectedRow());
+        if (s == null) return;
+        txtStudentID.setText(s.getStuID());
+        txtName.setText(s.getName());
+        cmbGender.setSelectedItem(s.getGender());
+        txtMajor.setText(s.getMajor());
+        txtYear.setText(s.getYear());
     }
     
     private void clearFields() {
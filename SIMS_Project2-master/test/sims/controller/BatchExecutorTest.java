@@ -0,0 +1,191 @@
+package sims.controller;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import sims.controller.BatchResult.RowOutcome;
+import sims.controller.BatchResult.Status;
+import sims.model.Grade;
+import sims.model.Student;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the managers' batch writes against an in-memory Derby database and
+ * checks that each row's reported outcome matches what was committed.
+ */
+public class BatchExecutorTest {
+
+    private static TestDatabase db;
+
+    @BeforeAll
+    public static void openDatabase() throws SQLException {
+        db = TestDatabase.open("batchExecutor");
+        // Fail fast on a row another connection holds locked
+        db.execute("CALL SYSCS_UTIL.SYSCS_SET_DATABASE_PROPERTY('derby.locks.waitTimeout', '1')");
+    }
+
+    @AfterAll
+    public static void closeDatabase() {
+        if (db != null) {
+            db.close();
+        }
+    }
+
+    @BeforeEach
+    public void clearTables() throws SQLException {
+        db.clear();
+    }
+
+    private static Student student(String id) {
+        return new Student(id, "Name " + id, "Female", "CS", "2024");
+    }
+
+    @Test
+    public void lockTimeoutFailsEveryRow() throws SQLException {
+        try (Connection other = db.connect()) {
+            other.setAutoCommit(false);
+            try (PreparedStatement ps = other.prepareStatement(
+                    "INSERT INTO Students (stuID, name) VALUES ('K', 'Held')")) {
+                ps.executeUpdate();
+            }
+            // Derby rolls back the whole transaction on a lock timeout, not just the row
+            BatchResult result = new StudentManager().addAll(Arrays.asList(
+                student("X1"), student("X2"), student("K"), student("X3")));
+            other.rollback();
+
+            assertEquals(4, result.count(Status.FAILED), result.getOutcomes().toString());
+            for (RowOutcome o : result.getOutcomes()) {
+                assertTrue(o.getMessage().startsWith("Rolled back"), o.toString());
+            }
+        }
+        assertEquals(new ArrayList<String>(), ids());
+    }
+
+    @Test
+    public void upsertUpdatesExistingRowsAndInsertsTheRest() throws SQLException {
+        db.execute("INSERT INTO Students (stuID, name) VALUES ('S1', 'Old'), ('S3', 'Old')");
+        StudentManager manager = new StudentManager();
+        manager.setBatchSize(2); // Crosses a chunk boundary
+        BatchResult result = manager.upsertAll(Arrays.asList(
+            named("S1", "New"), named("S2", "New"), named("S3", "New"), named("S4", "New"), named("S5", "New")));
+
+        assertEquals(Arrays.asList(Status.UPDATED, Status.INSERTED, Status.UPDATED, Status.INSERTED, Status.INSERTED),
+            statuses(result));
+        assertEquals(Arrays.asList("S1", "S2", "S3", "S4", "S5"), ids());
+        assertEquals(Arrays.asList("New", "New", "New", "New", "New"), names());
+    }
+
+    @Test
+    public void upsertUpdatesARowInsertedEarlierInTheSameBatch() throws SQLException {
+        // Both miss the UPDATE; the second insert is a duplicate of the first and is updated again
+        BatchResult result = new StudentManager().upsertAll(Arrays.asList(
+            named("S1", "First"), named("S2", "Other"), named("S1", "Second")));
+
+        assertEquals(Arrays.asList(Status.INSERTED, Status.INSERTED, Status.UPDATED), statuses(result));
+        assertEquals(Arrays.asList("S1", "S2"), ids());
+        assertEquals(Arrays.asList("Second", "Other"), names());
+    }
+
+    @Test
+    public void upsertReportsFailedRowsAndKeepsTheOthers() throws SQLException {
+        db.execute("INSERT INTO Students (stuID, name) VALUES ('S1', 'Ann'), ('S2', 'Bo')",
+            "INSERT INTO Courses (courseID, courseName, credit) VALUES ('C1', 'Databases', 3)",
+            "INSERT INTO Grades (stuID, courseID, score) VALUES ('S1', 'C1', 50)");
+        BatchResult result = new GradeManager().upsertAll(Arrays.asList(
+            new Grade("S1", "C1", 75), new Grade("NOBODY", "C1", 60), new Grade("S2", "C1", 90)));
+
+        assertEquals(Arrays.asList(Status.UPDATED, Status.FAILED, Status.INSERTED), statuses(result));
+        assertEquals("Referenced record does not exist", result.getOutcomes().get(1).getMessage());
+        assertEquals(Arrays.asList("S1-C1=75.0", "S2-C1=90.0"), grades());
+    }
+
+    @Test
+    public void addReportsDuplicatesAndKeepsTheOthers() throws SQLException {
+        db.execute("INSERT INTO Students (stuID, name) VALUES ('S2', 'Old')");
+        BatchResult result = new StudentManager().addAll(Arrays.asList(
+            student("S1"), student("S2"), student("S3"), named("S4", null)));
+
+        assertEquals(Arrays.asList(Status.INSERTED, Status.DUPLICATE, Status.INSERTED, Status.FAILED), statuses(result));
+        assertEquals(Arrays.asList("S1", "S2", "S3"), ids());
+        assertEquals("Old", names().get(1));
+    }
+
+    @Test
+    public void lockTimeoutFailsEveryUpsertedRow() throws SQLException {
+        db.execute("INSERT INTO Students (stuID, name) VALUES ('S1', 'Old'), ('K', 'Old')");
+        try (Connection other = db.connect()) {
+            other.setAutoCommit(false);
+            try (PreparedStatement ps = other.prepareStatement("UPDATE Students SET name = 'Held' WHERE stuID = 'K'")) {
+                ps.executeUpdate();
+            }
+            BatchResult result = new StudentManager().upsertAll(Arrays.asList(
+                named("S1", "New"), named("K", "New"), named("S2", "New")));
+            other.rollback();
+
+            assertEquals(3, result.count(Status.FAILED), result.getOutcomes().toString());
+        }
+        assertEquals(Arrays.asList("K", "S1"), ids());
+        assertEquals(Arrays.asList("Old", "Old"), names());
+    }
+
+    private static Student named(String id, String name) {
+        return new Student(id, name, "Female", "CS", "2024");
+    }
+
+    private static List<Status> statuses(BatchResult result) {
+        List<Status> statuses = new ArrayList<>();
+        for (RowOutcome o : result.getOutcomes()) {
+            statuses.add(o.getStatus());
+        }
+        return statuses;
+    }
+
+    /**
+     * @return the committed student IDs, in order
+     */
+    private static List<String> ids() throws SQLException {
+        return column("SELECT stuID FROM Students ORDER BY stuID");
+    }
+
+    /**
+     * @return the committed student names, in ID order
+     */
+    private static List<String> names() throws SQLException {
+        return column("SELECT name FROM Students ORDER BY stuID");
+    }
+
+    /**
+     * @return the committed grades as stuID-courseID=score, in key order
+     */
+    private static List<String> grades() throws SQLException {
+        List<String> grades = new ArrayList<>();
+        try (Connection conn = db.connect();
+             PreparedStatement ps = conn.prepareStatement("SELECT stuID, courseID, score FROM Grades ORDER BY stuID, courseID");
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                grades.add(rs.getString(1) + "-" + rs.getString(2) + "=" + rs.getDouble(3));
+            }
+        }
+        return grades;
+    }
+
+    private static List<String> column(String sql) throws SQLException {
+        List<String> values = new ArrayList<>();
+        try (Connection conn = db.connect();
+             PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                values.add(rs.getString(1));
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,228 @@
+package sims.controller;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import sims.model.Course;
+import sims.model.Grade;
+import sims.model.Student;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the SQL and parameters that criteria render for the managers'
+ * tables, without a database: the parameters must line up with the
+ * placeholders in the order the SQL uses them.
+ */
+public class CriteriaTest {
+
+    private static final Student LI = new Student("S042", "Li", "Female", "Physics", "2024");
+    private static final Student NO_MAJOR = new Student("S043", "Wu", "Male", null, null);
+
+    private static Criteria<Student> students() {
+        return new StudentManager().criteria();
+    }
+
+    private static Criteria<Grade> grades() {
+        return new GradeManager().criteria();
+    }
+
+    private static void assertStatement(String sql, List<?> params, Criteria.Statement st) {
+        assertEquals(sql, st.sql);
+        assertEquals(params, st.params);
+    }
+
+    @Test
+    public void selectOrdersByPrimaryKeyWithoutConditions() {
+        assertStatement("SELECT * FROM Students ORDER BY stuID ASC", Collections.emptyList(),
+            students().select(null, -1));
+        assertStatement("SELECT * FROM Grades ORDER BY stuID ASC, courseID ASC", Collections.emptyList(),
+            grades().select(null, -1));
+    }
+
+    @Test
+    public void conditionsAreAndedWithParametersInOrder() {
+        Criteria<Grade> c = grades().eq("courseID", "CS101").between("score", 60, 90).ne("stuID", "S1");
+        assertStatement("SELECT * FROM Grades WHERE courseID = ? AND score >= ? AND score <= ? AND stuID <> ?"
+                + " ORDER BY stuID ASC, courseID ASC",
+            Arrays.asList("CS101", 60, 90, "S1"), c.select(null, -1));
+    }
+
+    @Test
+    public void keyFollowsSortColumnsInTheLastDirection() {
+        assertStatement("SELECT * FROM Grades ORDER BY score DESC, stuID DESC, courseID DESC FETCH NEXT ? ROWS ONLY",
+            Collections.singletonList(20), grades().orderBy("score", false).select(null, 20));
+        // A key column that is sorted on is not repeated
+        assertStatement("SELECT * FROM Grades ORDER BY courseID DESC, score ASC, stuID ASC",
+            Collections.emptyList(), grades().orderBy("courseID", false).orderBy("score", true).select(null, -1));
+    }
+
+    @Test
+    public void offsetAndFetchAreParameters() {
+        assertStatement("SELECT * FROM Students WHERE major = ? ORDER BY stuID ASC OFFSET ? ROWS FETCH NEXT ? ROWS ONLY",
+            Arrays.asList("Physics", 400, 200), students().eq("major", "Physics").offset(400).select(null, 200));
+    }
+
+    @Test
+    public void reservedColumnIsQuoted() {
+        assertStatement("SELECT * FROM Students WHERE \"YEAR\" = ? ORDER BY \"YEAR\" ASC, stuID ASC",
+            Collections.singletonList("2024"), students().eq("year", "2024").orderBy("year", true).select(null, -1));
+    }
+
+    @Test
+    public void startsWithEscapesLikeWildcards() {
+        assertStatement("SELECT * FROM Students WHERE name LIKE ? ESCAPE '\\' ORDER BY stuID ASC",
+            Collections.singletonList("Li%"), students().startsWith("name", "Li").select(null, -1));
+        assertEquals(Collections.singletonList("50\\%\\_off\\\\%"),
+            students().startsWith("name", "50%_off\\").select(null, -1).params);
+    }
+
+    @Test
+    public void inListsOnePlaceholderPerValue() {
+        assertStatement("SELECT * FROM Students WHERE major IN (?, ?, ?) ORDER BY stuID ASC",
+            Arrays.asList("CS", "Math", "Physics"),
+            students().in("major", Arrays.asList("CS", "Math", "Physics")).select(null, -1));
+    }
+
+    @Test
+    public void emptyInMatchesNoRows() {
+        assertStatement("SELECT * FROM Students WHERE 1 = 0 AND major = ? ORDER BY stuID ASC",
+            Collections.singletonList("CS"),
+            students().in("stuID", Collections.emptyList()).eq("major", "CS").select(null, -1));
+    }
+
+    @Test
+    public void isNullHasNoParameter() {
+        assertStatement("SELECT COUNT(*) FROM Students WHERE gender IS NULL", Collections.emptyList(),
+            students().isNull("gender").count());
+    }
+
+    @Test
+    public void lookupFieldsBecomeSubqueries() {
+        Criteria<Grade> c = grades().eq("courseID", "CS101").eq("major", "Physics").ge("credit", 3);
+        assertStatement("SELECT * FROM Grades WHERE courseID = ?"
+                + " AND stuID IN (SELECT stuID FROM Students WHERE major = ?)"
+                + " AND courseID IN (SELECT courseID FROM Courses WHERE credit >= ?)"
+                + " ORDER BY stuID ASC, courseID ASC",
+            Arrays.asList("CS101", "Physics", 3), c.select(null, -1));
+    }
+
+    @Test
+    public void countIgnoresOrderPagingAndLimit() {
+        Criteria<Grade> c = grades().startsWith("courseID", "CS").eq("major", "Physics")
+            .orderBy("score", false).offset(10).limit(5);
+        assertStatement("SELECT COUNT(*) FROM Grades WHERE courseID LIKE ? ESCAPE '\\'"
+                + " AND stuID IN (SELECT stuID FROM Students WHERE major = ?)",
+            Arrays.asList("CS%", "Physics"), c.count());
+        assertStatement("SELECT COUNT(*) FROM Courses", Collections.emptyList(), new CourseManager().criteria().count());
+    }
+
+    @Test
+    public void keysetWithoutRowStartsAtTheBeginning() {
+        assertEquals(Collections.singletonList(null), students().keysetParts());
+    }
+
+    @Test
+    public void keysetOnPrimaryKeyOnly() {
+        List<Criteria.Statement> parts = students().after(LI).keysetParts();
+        assertEquals(1, parts.size());
+        assertStatement("stuID > ?", Collections.singletonList("S042"), parts.get(0));
+        assertStatement("SELECT * FROM Students WHERE stuID > ? ORDER BY stuID ASC FETCH NEXT ? ROWS ONLY",
+            Arrays.asList("S042", 50), students().after(LI).select(parts.get(0), 50));
+    }
+
+    @Test
+    public void keysetOnAscendingColumn() {
+        List<Criteria.Statement> parts = students().orderBy("name", true).after(LI).keysetParts();
+        assertEquals(1, parts.size());
+        assertStatement("name >= ? AND (name > ? OR (name = ? AND ((stuID > ?))))",
+            Arrays.asList("Li", "Li", "Li", "S042"), parts.get(0));
+    }
+
+    @Test
+    public void keysetOnDescendingColumn() {
+        List<Criteria.Statement> parts = students().orderBy("name", false).after(LI).keysetParts();
+        assertEquals(1, parts.size());
+        assertStatement("name <= ? AND (name < ? OR (name = ? AND ((stuID < ?))))",
+            Arrays.asList("Li", "Li", "Li", "S042"), parts.get(0));
+    }
+
+    @Test
+    public void keysetOnCompositeKey() {
+        List<Criteria.Statement> parts = grades().after(new Grade("S1", "C2", 80)).keysetParts();
+        assertStatement("stuID >= ? AND (stuID > ? OR (stuID = ? AND ((courseID > ?))))",
+            Arrays.asList("S1", "S1", "S1", "C2"), parts.get(0));
+    }
+
+    @Test
+    public void keysetOnAscendingNullableColumnReadsTheNullsLast() {
+        // Derby sorts NULL after every value ascending
+        List<Criteria.Statement> parts = students().orderBy("major", true).after(LI).keysetParts();
+        assertEquals(2, parts.size());
+        assertStatement("major >= ? AND (major > ? OR (major = ? AND ((stuID > ?))))",
+            Arrays.asList("Physics", "Physics", "Physics", "S042"), parts.get(0));
+        assertStatement("major IS NULL", Collections.emptyList(), parts.get(1));
+
+        parts = students().orderBy("major", true).after(NO_MAJOR).keysetParts();
+        assertEquals(1, parts.size());
+        assertStatement("major IS NULL AND ((stuID > ?))", Collections.singletonList("S043"), parts.get(0));
+    }
+
+    @Test
+    public void keysetOnDescendingNullableColumnReadsTheNullsFirst() {
+        // Derby sorts NULL before every value descending
+        List<Criteria.Statement> parts = students().orderBy("major", false).after(LI).keysetParts();
+        assertEquals(1, parts.size());
+        assertStatement("major <= ? AND (major < ? OR (major = ? AND ((stuID < ?))))",
+            Arrays.asList("Physics", "Physics", "Physics", "S042"), parts.get(0));
+
+        parts = students().orderBy("major", false).after(NO_MAJOR).keysetParts();
+        assertEquals(2, parts.size());
+        assertStatement("major IS NULL AND ((stuID < ?))", Collections.singletonList("S043"), parts.get(0));
+        assertStatement("major IS NOT NULL", Collections.emptyList(), parts.get(1));
+    }
+
+    @Test
+    public void keysetOnSeveralColumnsMixesDirections() {
+        Criteria<Student> c = students().orderBy("major", true).orderBy("year", false);
+        List<Criteria.Statement> parts = c.copy().after(LI).keysetParts();
+        assertStatement("major >= ? AND (major > ? OR (major = ? AND ((\"YEAR\" < ?) OR (\"YEAR\" = ? AND stuID < ?))))",
+            Arrays.asList("Physics", "Physics", "Physics", "2024", "2024", "S042"), parts.get(0));
+        assertStatement("major IS NULL", Collections.emptyList(), parts.get(1));
+
+        // A NULL year: non-null years sort after it descending, then the rest of the NULLs by key
+        parts = c.copy().after(new Student("S044", "Xu", "Male", "Physics", null)).keysetParts();
+        assertStatement("major >= ? AND (major > ? OR (major = ? AND ((\"YEAR\" IS NOT NULL) OR (\"YEAR\" IS NULL AND stuID < ?))))",
+            Arrays.asList("Physics", "Physics", "Physics", "S044"), parts.get(0));
+    }
+
+    @Test
+    public void keysetParametersFollowTheConditions() {
+        Criteria<Student> c = students().eq("gender", "Female").orderBy("name", true).after(LI);
+        assertStatement("SELECT * FROM Students WHERE gender = ? AND name >= ? AND (name > ? OR (name = ? AND ((stuID > ?))))"
+                + " ORDER BY name ASC, stuID ASC FETCH NEXT ? ROWS ONLY",
+            Arrays.asList("Female", "Li", "Li", "Li", "S042", 25), c.select(c.keysetParts().get(0), 25));
+    }
+
+    @Test
+    public void onlyKnownFieldsAreAccepted() {
+        assertThrows(IllegalArgumentException.class, () -> students().eq("password", "x"));
+        assertThrows(IllegalArgumentException.class, () -> students().eq("name; DROP TABLE Students", "x"));
+        assertThrows(IllegalArgumentException.class, () -> students().in("nope", Collections.emptyList()));
+        assertThrows(IllegalArgumentException.class, () -> students().isNull("nope"));
+        assertThrows(IllegalArgumentException.class, () -> students().orderBy("nope", true));
+        assertThrows(IllegalArgumentException.class, () -> grades().startsWith("name", "A"));
+        // Lookups can be filtered on but not sorted
+        assertThrows(IllegalArgumentException.class, () -> grades().orderBy("major", true));
+    }
+
+    @Test
+    public void invalidArgumentsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> students().eq("name", null));
+        assertThrows(IllegalArgumentException.class, () -> students().offset(-1));
+        assertThrows(IllegalArgumentException.class, () -> students().limit(-2));
+        Criteria<Course> c = new CourseManager().criteria().offset(5)
+            .after(new Course("C1", "Databases", 3));
+        assertThrows(IllegalStateException.class, () -> c.select(c.keysetParts().get(0), 10));
+    }
+}
@@ -0,0 +1,79 @@
+package sims.controller;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that what CsvFormat writes reads back as the same fields,
+ * including values with commas, quotes and line breaks, and that records
+ * report the line they start on.
+ */
+public class CsvFormatTest {
+
+    private static List<String> records(String text) throws IOException {
+        CsvFormat.RecordReader reader = new CsvFormat.RecordReader(new StringReader(text));
+        List<String> records = new ArrayList<>();
+        String record;
+        while ((record = reader.next()) != null) {
+            records.add(reader.getLineNumber() + ":" + record);
+        }
+        return records;
+    }
+
+    @Test
+    public void formattedFieldsParseBack() throws IOException {
+        String[][] rows = {
+            {"S1", "Li", "", "CS"},
+            {"S2", "Wu, Jr.", "say \"hi\"", "\"quoted\""},
+            {"S3", "two\nlines", "crlf\r\nline", "cr\ronly"},
+            {"S4", "\n", "\"\n\"", ",\r\n,"},
+        };
+        StringBuilder file = new StringBuilder();
+        for (String[] row : rows) {
+            CsvFormat.appendLine(file, row);
+            file.append('\n');
+        }
+        CsvFormat.RecordReader reader = new CsvFormat.RecordReader(new StringReader(file.toString()));
+        for (String[] row : rows) {
+            assertArrayEquals(row, CsvFormat.parseLine(reader.next()));
+        }
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void nullIsWrittenAsAnEmptyField() {
+        assertEquals("a,,b", CsvFormat.formatLine("a", null, "b"));
+        assertArrayEquals(new String[]{"a", "", "b"}, CsvFormat.parseLine("a,,b"));
+    }
+
+    @Test
+    public void recordsEndAtAnyLineBreakOutsideQuotes() throws IOException {
+        assertEquals(Arrays.asList("1:a,b", "2:c", "3:", "4:d"), records("a,b\nc\r\n\rd"));
+        assertEquals(Arrays.asList("1:a", "2:b"), records("a\r\nb\n"));
+        assertEquals(Arrays.asList(), records(""));
+    }
+
+    @Test
+    public void recordsStartOnTheLineAfterAQuotedLineBreak() throws IOException {
+        assertEquals(Arrays.asList("1:S1,\"a\nb\r\nc\rd\"", "5:S2,x"), records("S1,\"a\nb\r\nc\rd\"\nS2,x\n"));
+        // An escaped quote does not close the value
+        assertEquals(Arrays.asList("1:\"a\"\"\nb\"", "3:c"), records("\"a\"\"\nb\"\nc"));
+    }
+
+    @Test
+    public void quotesInsideAPlainValueAreLiteral() throws IOException {
+        assertEquals(Arrays.asList("1:a\"b,c", "2:d"), records("a\"b,c\nd"));
+        assertArrayEquals(new String[]{"a\"b", "c"}, CsvFormat.parseLine("a\"b,c"));
+    }
+
+    @Test
+    public void unterminatedQuoteRunsToTheEnd() throws IOException {
+        assertEquals(Arrays.asList("1:S1,\"open\nS2,x\n"), records("S1,\"open\nS2,x\n"));
+        assertThrows(IllegalArgumentException.class, () -> CsvFormat.parseLine("S1,\"open\nS2,x\n"));
+    }
+}
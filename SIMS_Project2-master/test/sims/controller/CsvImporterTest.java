@@ -0,0 +1,100 @@
+package sims.controller;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import sims.model.Student;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Exports tables with CsvExporter and imports them again with CsvImporter
+ * against an in-memory Derby database: the rows must come back unchanged,
+ * also when a value holds a line break.
+ */
+public class CsvImporterTest {
+
+    private static TestDatabase db;
+
+    @BeforeAll
+    public static void openDatabase() throws SQLException {
+        db = TestDatabase.open("csvImporter");
+    }
+
+    @AfterAll
+    public static void closeDatabase() {
+        if (db != null) {
+            db.close();
+        }
+    }
+
+    @BeforeEach
+    public void clearTables() throws SQLException {
+        db.clear();
+    }
+
+    @Test
+    public void exportedStudentsImportUnchanged() throws Exception {
+        List<Student> students = Arrays.asList(
+            new Student("S1", "Li", "Female", "CS", "2024"),
+            new Student("S2", "Wu, \"Jr.\"", null, "Math", null),
+            new Student("S3", "Anne\nMarie", "Female", "Physics\r\nand Astronomy", "2023"),
+            new Student("S4", "Bo", "Male", "Art\rHistory", "2022"));
+        assertEquals(students.size(), new StudentManager().addAll(students).getSucceeded());
+
+        String csv = export(CsvSchema.STUDENTS);
+        db.clear();
+        ImportReport report = new CsvImporter<>(new StudentManager(), CsvSchema.STUDENTS)
+            .setWorkers(2).setChunkSize(2)
+            .importFrom(new StringReader(csv));
+
+        assertEquals(students.size(), report.getRowsRead());
+        assertEquals(students.size(), report.getImported());
+        assertEquals(0, report.getRejected());
+        assertEquals(csv, export(CsvSchema.STUDENTS));
+        assertEquals(describe(students), describe(new StudentManager().getAllStudents()));
+    }
+
+    @Test
+    public void rejectionsReportTheLineTheRecordStartsOn() throws IOException {
+        String csv = "StudentID,Name,Gender,Major,Year\n"
+            + "S1,\"Anne\nMarie\",Female,CS,2024\n"
+            + "S2,,Male,CS,2024\n"
+            + "S3,\"Bo\r\n\r\nLi\",Male\n"
+            + "S1,Again,Male,CS,2024\n";
+        ImportReport report = new CsvImporter<>(new StudentManager(), CsvSchema.STUDENTS)
+            .setWorkers(1).setChunkSize(3)
+            .importFrom(new StringReader(csv));
+
+        assertEquals(4, report.getRowsRead());
+        assertEquals(1, report.getImported());
+        List<String> rejections = new ArrayList<>();
+        for (ImportReport.Rejection r : report.getRejections()) {
+            rejections.add(r.getLineNumber() + " " + r.getLine());
+        }
+        assertEquals(Arrays.asList("4 S2,,Male,CS,2024", "5 S3,\"Bo\r\n\r\nLi\",Male", "8 S1,Again,Male,CS,2024"),
+            rejections);
+    }
+
+    private static String export(CsvSchema<?> schema) throws IOException, SQLException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new CsvExporter().export(schema, out, false);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static List<String> describe(List<Student> students) {
+        List<String> rows = new ArrayList<>();
+        for (Student s : students) {
+            rows.add(String.join("|", s.getStuID(), s.getName(), s.getGender(), s.getMajor(), s.getYear()));
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,168 @@
+package sims.controller;
+
+import java.util.ArrayList;
+import java.util.List;
+import sims.controller.EntityEventBus.Event;
+import sims.controller.EntityEventBus.Kind;
+import sims.controller.EntityEventBus.Topic;
+import sims.model.Student;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks how EntityEventBus coalesces the events that are pending for a
+ * subscriber. Deliveries are queued and only run when the test says so,
+ * the way invokeLater holds them until the EDT gets to them.
+ */
+public class EntityEventBusTest {
+
+    private final List<Runnable> queued = new ArrayList<>();
+    private final List<List<Event<Student>>> delivered = new ArrayList<>();
+    private final EntityEventBus bus = new EntityEventBus(EntityEventBus.DEFAULT_MAX_DELTAS);
+
+    private EntityEventBus.Subscription subscribe() {
+        return bus.subscribe(Topic.STUDENTS, queued::add, delivered::add);
+    }
+
+    private void publish(Kind kind, String id, String name) {
+        bus.publish(Topic.STUDENTS, kind, id, name == null ? null : new Student(id, name, "Female", "CS", "2024"));
+    }
+
+    /**
+     * Run the queued deliveries
+     * @return the one batch they delivered, or null if they delivered none
+     */
+    private List<Event<Student>> deliver() {
+        List<Runnable> run = new ArrayList<>(queued);
+        queued.clear();
+        run.forEach(Runnable::run);
+        assertTrue(delivered.size() <= 1, "one batch per delivery: " + delivered);
+        List<Event<Student>> batch = delivered.isEmpty() ? null : delivered.get(0);
+        delivered.clear();
+        return batch;
+    }
+
+    private static void assertEvent(Kind kind, String key, String name, Event<Student> event) {
+        assertEquals(kind, event.getKind());
+        assertEquals(key, event.getKey());
+        assertEquals(name, event.getValue() == null ? null : event.getValue().getName());
+    }
+
+    @Test
+    public void createdThenDeletedCancelOut() {
+        subscribe();
+        publish(Kind.CREATED, "S1", "Ann");
+        publish(Kind.DELETED, "S1", null);
+        assertNull(deliver());
+    }
+
+    @Test
+    public void deletedThenCreatedBecomesUpdated() {
+        subscribe();
+        publish(Kind.DELETED, "S1", null);
+        publish(Kind.CREATED, "S1", "Bo");
+        List<Event<Student>> batch = deliver();
+        assertEquals(1, batch.size());
+        assertEvent(Kind.UPDATED, "S1", "Bo", batch.get(0));
+    }
+
+    @Test
+    public void createdThenUpdatedStaysCreatedWithTheNewRow() {
+        subscribe();
+        publish(Kind.CREATED, "S1", "Ann");
+        publish(Kind.UPDATED, "S1", "Anne");
+        List<Event<Student>> batch = deliver();
+        assertEquals(1, batch.size());
+        assertEvent(Kind.CREATED, "S1", "Anne", batch.get(0));
+    }
+
+    @Test
+    public void updatedThenDeletedIsDeleted() {
+        subscribe();
+        publish(Kind.UPDATED, "S1", "Ann");
+        publish(Kind.UPDATED, "S1", "Anne");
+        publish(Kind.DELETED, "S1", null);
+        List<Event<Student>> batch = deliver();
+        assertEquals(1, batch.size());
+        assertEvent(Kind.DELETED, "S1", null, batch.get(0));
+    }
+
+    @Test
+    public void keysKeepTheOrderTheyWereFirstPublishedIn() {
+        subscribe();
+        publish(Kind.CREATED, "S2", "Bo");
+        publish(Kind.UPDATED, "S1", "Ann");
+        publish(Kind.UPDATED, "S2", "Bob");
+        publish(Kind.DELETED, "S3", null);
+        List<Event<Student>> batch = deliver();
+        assertEquals(3, batch.size());
+        assertEvent(Kind.CREATED, "S2", "Bob", batch.get(0));
+        assertEvent(Kind.UPDATED, "S1", "Ann", batch.get(1));
+        assertEvent(Kind.DELETED, "S3", null, batch.get(2));
+    }
+
+    @Test
+    public void oneDeliveryIsQueuedUntilItRuns() {
+        subscribe();
+        publish(Kind.CREATED, "S1", "Ann");
+        publish(Kind.CREATED, "S2", "Bo");
+        assertEquals(1, queued.size());
+        assertEquals(2, deliver().size());
+
+        publish(Kind.UPDATED, "S1", "Anne");
+        assertEquals(1, queued.size());
+        assertEquals(1, deliver().size());
+    }
+
+    @Test
+    public void maxDeltasKeysStayDeltas() {
+        subscribe();
+        for (int i = 0; i < EntityEventBus.DEFAULT_MAX_DELTAS; i++) {
+            publish(Kind.CREATED, "S" + i, "Ann");
+        }
+        // Keys already pending do not count again
+        publish(Kind.UPDATED, "S0", "Anne");
+        List<Event<Student>> batch = deliver();
+        assertEquals(EntityEventBus.DEFAULT_MAX_DELTAS, batch.size());
+        assertEvent(Kind.CREATED, "S0", "Anne", batch.get(0));
+    }
+
+    @Test
+    public void moreThanMaxDeltasKeysCollapseIntoInvalidated() {
+        subscribe();
+        for (int i = 0; i <= EntityEventBus.DEFAULT_MAX_DELTAS; i++) {
+            publish(Kind.CREATED, "S" + i, "Ann");
+        }
+        // Nothing more is tracked until the subscriber has reloaded
+        publish(Kind.DELETED, "S0", null);
+        List<Event<Student>> batch = deliver();
+        assertEquals(1, batch.size());
+        assertEvent(Kind.INVALIDATED, null, null, batch.get(0));
+
+        publish(Kind.UPDATED, "S1", "Bo");
+        batch = deliver();
+        assertEquals(1, batch.size());
+        assertEvent(Kind.UPDATED, "S1", "Bo", batch.get(0));
+    }
+
+    @Test
+    public void invalidateDropsThePendingDeltas() {
+        subscribe();
+        publish(Kind.CREATED, "S1", "Ann");
+        bus.invalidate(Topic.STUDENTS);
+        List<Event<Student>> batch = deliver();
+        assertEquals(1, batch.size());
+        assertEvent(Kind.INVALIDATED, null, null, batch.get(0));
+    }
+
+    @Test
+    public void otherTopicsAndClosedSubscriptionsReceiveNothing() {
+        EntityEventBus.Subscription subscription = subscribe();
+        bus.invalidate(Topic.COURSES);
+        assertTrue(queued.isEmpty());
+
+        subscription.close();
+        publish(Kind.CREATED, "S1", "Ann");
+        assertTrue(queued.isEmpty());
+    }
+}
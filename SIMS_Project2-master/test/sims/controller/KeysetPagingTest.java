@@ -0,0 +1,296 @@
+package sims.controller;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import sims.model.Grade;
+import sims.model.Student;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Runs the schema migrations and keyset paging against an in-memory Derby
+ * database. Paging through a sort order page by page must return exactly
+ * the rows one query sorted by Derby returns, including the NULLs, which
+ * Derby sorts last ascending and first descending. Grades are paged by
+ * score, which repeats often and may not be NULL.
+ *
+ * Skipped when Derby is not on the test classpath.
+ */
+public class KeysetPagingTest {
+
+    private static final String URL = "jdbc:derby:memory:keysetPaging";
+    private static final String[] NAMES = {"Ann", "Bo", "Li", "Li", "Wu", "Zoe"};
+    private static final String[] GENDERS = {"Male", "Female", null};
+    private static final String[] MAJORS = {"CS", "Math", "Physics", null};
+    private static final String[] YEARS = {"2022", "2023", "2024", null};
+    private static final double[] SCORES = {55, 60, 72.5, 88, 100};
+
+    private static Connection conn;
+
+    @BeforeAll
+    public static void createDatabase() throws SQLException {
+        try {
+            Class.forName("org.apache.derby.jdbc.EmbeddedDriver");
+        } catch (ClassNotFoundException e) {
+            assumeTrue(false, "Derby is not on the test classpath");
+        }
+        conn = DriverManager.getConnection(URL + ";create=true");
+        assertEquals(SchemaMigrator.MIGRATIONS.size(), new SchemaMigrator().migrate(conn));
+
+        Random random = new Random(25);
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO Students (stuID, name, gender, major, \"YEAR\") VALUES (?, ?, ?, ?, ?)")) {
+            for (int i = 0; i < 90; i++) {
+                ps.setString(1, String.format("S%03d", i));
+                ps.setString(2, NAMES[random.nextInt(NAMES.length)]);
+                ps.setString(3, GENDERS[random.nextInt(GENDERS.length)]);
+                ps.setString(4, MAJORS[random.nextInt(MAJORS.length)]);
+                ps.setString(5, YEARS[random.nextInt(YEARS.length)]);
+                ps.executeUpdate();
+            }
+        }
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO Courses (courseID, courseName, credit) VALUES (?, ?, ?)")) {
+            for (int i = 0; i < 4; i++) {
+                ps.setString(1, "C" + i);
+                ps.setString(2, "Course " + i);
+                ps.setInt(3, 2 + i);
+                ps.executeUpdate();
+            }
+        }
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO Grades (stuID, courseID, score) VALUES (?, ?, ?)")) {
+            for (int i = 0; i < 30; i++) {
+                for (int c = 0; c < 4; c++) {
+                    if (random.nextInt(3) > 0) {
+                        ps.setString(1, String.format("S%03d", i));
+                        ps.setString(2, "C" + c);
+                        ps.setDouble(3, SCORES[random.nextInt(SCORES.length)]);
+                        ps.executeUpdate();
+                    }
+                }
+            }
+        }
+    }
+
+    @AfterAll
+    public static void dropDatabase() {
+        if (conn == null) {
+            return;
+        }
+        try {
+            conn.close();
+            DriverManager.getConnection(URL + ";drop=true");
+        } catch (SQLException e) {
+            // Dropping reports success as an exception
+        }
+    }
+
+    @Test
+    public void migrationsIndexSortColumnsWithTheKey() throws SQLException {
+        SchemaMigrator again = new SchemaMigrator();
+        assertEquals(0, again.migrate(conn));
+        assertEquals(SchemaMigrator.MIGRATIONS.size(), again.getSchemaVersion());
+
+        Map<String, List<String>> students = indexes("STUDENTS");
+        assertEquals(Arrays.asList("MAJOR", "STUID"), students.get("IDX_STUDENTS_MAJOR"));
+        assertEquals(Arrays.asList("NAME", "STUID"), students.get("IDX_STUDENTS_NAME"));
+        assertEquals(Arrays.asList("GENDER", "STUID"), students.get("IDX_STUDENTS_GENDER"));
+        assertEquals(Arrays.asList("YEAR", "STUID"), students.get("IDX_STUDENTS_YEAR"));
+        assertEquals(Arrays.asList("COURSENAME", "COURSEID"), indexes("COURSES").get("IDX_COURSES_NAME"));
+        assertEquals(Arrays.asList("CREDIT", "COURSEID"), indexes("COURSES").get("IDX_COURSES_CREDIT"));
+        assertEquals(Arrays.asList("SCORE", "STUID", "COURSEID"), indexes("GRADES").get("IDX_GRADES_SCORE"));
+        assertEquals(Arrays.asList("COURSEID", "STUID"), indexes("GRADES").get("IDX_GRADES_COURSE"));
+    }
+
+    @Test
+    public void pagesFollowThePrimaryKey() throws SQLException {
+        assertPagesMatch(c -> c);
+    }
+
+    @Test
+    public void pagesFollowAscendingAndDescendingColumns() throws SQLException {
+        assertPagesMatch(c -> c.orderBy("name", true));
+        assertPagesMatch(c -> c.orderBy("name", false));
+    }
+
+    @Test
+    public void pagesFollowNullableColumns() throws SQLException {
+        assertPagesMatch(c -> c.orderBy("major", true));
+        assertPagesMatch(c -> c.orderBy("major", false));
+        assertPagesMatch(c -> c.orderBy("year", false));
+    }
+
+    @Test
+    public void pagesFollowSeveralColumns() throws SQLException {
+        assertPagesMatch(c -> c.orderBy("gender", true).orderBy("year", false));
+        assertPagesMatch(c -> c.orderBy("year", false).orderBy("major", true).orderBy("name", true));
+        assertPagesMatch(c -> c.orderBy("major", false).orderBy("gender", true));
+    }
+
+    @Test
+    public void pagesKeepTheConditions() throws SQLException {
+        assertPagesMatch(c -> c.eq("gender", "Female").orderBy("major", true));
+        assertPagesMatch(c -> c.startsWith("name", "L").orderBy("year", true).orderBy("name", false));
+    }
+
+    @Test
+    public void gradesPageByScore() throws SQLException {
+        assertGradePagesMatch(c -> c.orderBy("score", true));
+        assertGradePagesMatch(c -> c.orderBy("score", false));
+        assertGradePagesMatch(c -> c.eq("courseID", "C2").orderBy("score", false));
+        assertGradePagesMatch(c -> c.orderBy("courseID", true).orderBy("score", false));
+    }
+
+    @Test
+    public void gradesRejectAMissingScore() {
+        SQLException e = assertThrows(SQLException.class, () -> execute(conn,
+            "INSERT INTO Grades (stuID, courseID, score) VALUES ('S080', 'C0', NULL)"));
+        assertEquals("23502", e.getSQLState());
+    }
+
+    @Test
+    public void missingScoresBecomeZeroWhenTheColumnBecomesNotNull() throws SQLException {
+        String url = "jdbc:derby:memory:keysetPagingScores";
+        try (Connection old = DriverManager.getConnection(url + ";create=true")) {
+            new SchemaMigrator(SchemaMigrator.MIGRATIONS.subList(0, 3)).migrate(old);
+            execute(old, "INSERT INTO Students (stuID, name) VALUES ('S1', 'Ann')",
+                "INSERT INTO Courses (courseID, courseName, credit) VALUES ('C1', 'Databases', 3)",
+                "INSERT INTO Grades (stuID, courseID, score) VALUES ('S1', 'C1', NULL)");
+
+            assertEquals(SchemaMigrator.MIGRATIONS.size() - 3, new SchemaMigrator().migrate(old));
+            try (Statement st = old.createStatement();
+                    ResultSet rs = st.executeQuery("SELECT score FROM Grades")) {
+                assertTrue(rs.next());
+                assertEquals(0, rs.getDouble(1));
+                assertFalse(rs.wasNull());
+            }
+        } finally {
+            try {
+                DriverManager.getConnection(url + ";drop=true");
+            } catch (SQLException e) {
+                // Dropping reports success as an exception
+            }
+        }
+    }
+
+    private static void assertPagesMatch(UnaryOperator<Criteria<Student>> query) throws SQLException {
+        assertPagesMatch(query.apply(new StudentManager().criteria()),
+            rs -> new Student(rs.getString("stuID"), rs.getString("name"), rs.getString("gender"),
+                rs.getString("major"), rs.getString("year")),
+            Student::getStuID);
+    }
+
+    private static void assertGradePagesMatch(UnaryOperator<Criteria<Grade>> query) throws SQLException {
+        assertPagesMatch(query.apply(new GradeManager().criteria()),
+            rs -> new Grade(rs.getString("stuID"), rs.getString("courseID"), rs.getDouble("score")),
+            g -> g.getStuID() + "/" + g.getCourseID());
+    }
+
+    /**
+     * Page through the sort order with several page sizes and compare with one sorted query
+     */
+    private static <T> void assertPagesMatch(Criteria<T> criteria, Criteria.RowReader<T> reader,
+            Function<T, String> id) throws SQLException {
+        List<String> expected = ids(read(criteria.select(null, -1), reader), id);
+        assertFalse(expected.isEmpty());
+        for (int pageSize : new int[]{1, 4, 7, 100}) {
+            List<String> paged = new ArrayList<>();
+            T last = null;
+            while (true) {
+                List<T> page = page(criteria.copy().after(last), reader, pageSize);
+                paged.addAll(ids(page, id));
+                if (page.size() < pageSize) {
+                    break;
+                }
+                last = page.get(page.size() - 1);
+            }
+            assertEquals(expected, paged, criteria + " in pages of " + pageSize);
+        }
+    }
+
+    /**
+     * One page the way Table.find reads it: the keyset parts in order until the page is full
+     */
+    private static <T> List<T> page(Criteria<T> criteria, Criteria.RowReader<T> reader, int pageSize)
+            throws SQLException {
+        List<T> rows = new ArrayList<>();
+        for (Criteria.Statement part : criteria.keysetParts()) {
+            int fetch = pageSize - rows.size();
+            if (fetch == 0) {
+                break;
+            }
+            rows.addAll(read(criteria.select(part, fetch), reader));
+        }
+        return rows;
+    }
+
+    private static <T> List<T> read(Criteria.Statement st, Criteria.RowReader<T> reader) throws SQLException {
+        List<T> rows = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(st.sql)) {
+            st.bind(ps);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(reader.read(rs));
+                }
+            }
+        }
+        return rows;
+    }
+
+    private static <T> List<String> ids(List<T> rows, Function<T, String> id) {
+        List<String> ids = new ArrayList<>();
+        for (T row : rows) {
+            ids.add(id.apply(row));
+        }
+        return ids;
+    }
+
+    private static void execute(Connection c, String... sql) throws SQLException {
+        try (Statement st = c.createStatement()) {
+            for (String s : sql) {
+                st.executeUpdate(s);
+            }
+        }
+    }
+
+    /**
+     * @return index name to its columns in order
+     */
+    private static Map<String, List<String>> indexes(String table) throws SQLException {
+        Map<String, List<String>> indexes = new LinkedHashMap<>();
+        DatabaseMetaData meta = conn.getMetaData();
+        try (ResultSet rs = meta.getIndexInfo(null, null, table, false, false)) {
+            while (rs.next()) {
+                String name = rs.getString("INDEX_NAME");
+                if (name == null) {
+                    continue;
+                }
+                List<String> columns = indexes.computeIfAbsent(name.toUpperCase(Locale.ROOT), k -> new ArrayList<>());
+                int position = rs.getShort("ORDINAL_POSITION");
+                while (columns.size() < position) {
+                    columns.add(null);
+                }
+                columns.set(position - 1, rs.getString("COLUMN_NAME"));
+            }
+        }
+        return indexes;
+    }
+}
@@ -0,0 +1,74 @@
+package sims.controller;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Points DBHelper's pool at an in-memory Derby database for the tests of
+ * one class, so they never touch the application's simsDB. The schema is
+ * created by the migrations, as on a real first start.
+ */
+final class TestDatabase {
+
+    private final String name;
+
+    private TestDatabase(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Open the database; the calling test class is skipped when Derby is not on the test classpath
+     */
+    static TestDatabase open(String name) throws SQLException {
+        try {
+            Class.forName("org.apache.derby.jdbc.EmbeddedDriver");
+        } catch (ClassNotFoundException e) {
+            assumeTrue(false, "Derby is not on the test classpath");
+        }
+        // A pool opened by another test class points at another database
+        DBHelper.closeConnection();
+        System.setProperty("sims.db.name", "memory:" + name);
+        DBHelper.getPool();
+        return new TestDatabase(name);
+    }
+
+    /**
+     * @return a connection of its own, outside the pool, e.g. to hold locks the code under test runs into
+     */
+    Connection connect() throws SQLException {
+        return DriverManager.getConnection("jdbc:derby:memory:" + name);
+    }
+
+    void execute(String... sql) throws SQLException {
+        try (Connection conn = connect(); Statement stmt = conn.createStatement()) {
+            for (String s : sql) {
+                stmt.execute(s);
+            }
+        }
+    }
+
+    /**
+     * Delete every row, children first
+     */
+    void clear() throws SQLException {
+        execute("DELETE FROM Grades", "DELETE FROM Students", "DELETE FROM Courses");
+    }
+
+    /**
+     * Close the pool and drop the database
+     */
+    void close() {
+        DBHelper.closeConnection();
+        System.clearProperty("sims.db.name");
+        try {
+            // Shutting Derby down deregistered the driver
+            Class.forName("org.apache.derby.jdbc.EmbeddedDriver").getDeclaredConstructor().newInstance();
+            DriverManager.getConnection("jdbc:derby:memory:" + name + ";drop=true");
+        } catch (ReflectiveOperationException | SQLException e) {
+            // Dropping reports success as an exception
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package sims.controller;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import sims.model.Student;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks which words TextIndex matches and how it ranks the rows, on an
+ * index built the way StudentManager builds its own: names weigh twice as
+ * much as majors.
+ */
+public class TextIndexTest {
+
+    private static TextIndex<Student> index(Student... rows) {
+        TextIndex<Student> index = new TextIndex<>(Student::getStuID,
+            s -> new Student(s.getStuID(), s.getName(), s.getGender(), s.getMajor(), s.getYear()),
+            TextIndex.Field.of("name", Student::getName, 2),
+            TextIndex.Field.of("major", Student::getMajor, 1));
+        index.replaceAll(Arrays.asList(rows));
+        return index;
+    }
+
+    private static Student student(String id, String name, String major) {
+        return new Student(id, name, "Female", major, "2024");
+    }
+
+    private static List<String> ids(List<TextIndex.Hit<Student>> hits) {
+        List<String> ids = new ArrayList<>();
+        for (TextIndex.Hit<Student> hit : hits) {
+            ids.add(hit.getValue().getStuID());
+        }
+        return ids;
+    }
+
+    private static List<String> search(TextIndex<Student> index, String text) {
+        return ids(index.search(text, 10));
+    }
+
+    @Test
+    public void editDistanceCountsInsertsDeletesAndChanges() {
+        assertEquals(0, TextIndex.editDistance("harold", "harold", 2));
+        assertEquals(1, TextIndex.editDistance("harold", "harld", 2));
+        assertEquals(1, TextIndex.editDistance("harold", "haroldo", 2));
+        assertEquals(1, TextIndex.editDistance("harold", "herold", 2));
+        // A swap of two letters is two edits
+        assertEquals(2, TextIndex.editDistance("harold", "harodl", 2));
+        assertEquals(3, TextIndex.editDistance("kitten", "sitting", 3));
+    }
+
+    @Test
+    public void editDistanceStopsPastTheMaximum() {
+        assertEquals(2, TextIndex.editDistance("harold", "harodl", 1));
+        assertEquals(2, TextIndex.editDistance("abcdef", "uvwxyz", 1));
+        assertEquals(3, TextIndex.editDistance("kitten", "sitting", 2));
+        assertEquals(2, TextIndex.editDistance("a", "abc", 1));
+    }
+
+    @Test
+    public void sevenLetterWordsMayHaveTwoMistakes() {
+        TextIndex<Student> index = index(student("S1", "Harold", "Science"));
+        // Six letters: one mistake only
+        assertEquals(Collections.singletonList("S1"), search(index, "harld"));
+        assertEquals(Collections.singletonList("S1"), search(index, "herold"));
+        assertEquals(Collections.emptyList(), search(index, "harodl"));
+        // Seven letters: two mistakes
+        assertEquals(Collections.singletonList("S1"), search(index, "sceince"));
+        assertEquals(Collections.singletonList("S1"), search(index, "scienze"));
+        assertEquals(Collections.emptyList(), search(index, "sxeinse"));
+    }
+
+    @Test
+    public void shortWordsAreOnlyMatchedExactlyOrAsAPrefix() {
+        TextIndex<Student> index = index(student("S1", "Wu", "Law"));
+        assertEquals(Collections.singletonList("S1"), search(index, "wu"));
+        assertEquals(Collections.singletonList("S1"), search(index, "la"));
+        assertEquals(Collections.emptyList(), search(index, "xu"));
+        assertEquals(Collections.singletonList("S1"), search(index, "lam"));
+    }
+
+    @Test
+    public void mistakesMustKeepTheFirstLetter() {
+        TextIndex<Student> index = index(student("S1", "Kathy", "Math"), student("S2", "Cathy", "Art"));
+        // Each name is one edit from the other, but only in the first letter
+        assertEquals(1, TextIndex.editDistance("kathy", "cathy", 1));
+        assertEquals(Collections.singletonList("S1"), search(index, "kathy"));
+        assertEquals(Collections.singletonList("S2"), search(index, "cathy"));
+        assertEquals(Collections.singletonList("S1"), search(index, "kathi"));
+        assertEquals(Collections.emptyList(), search(index, "bath"));
+    }
+
+    @Test
+    public void everyWordMustMatch() {
+        TextIndex<Student> index = index(
+            student("S1", "Li Na", "Computer Science"),
+            student("S2", "Li Wei", "Mathematics"),
+            student("S3", "Zhang Wei", "Computer Science"));
+        assertEquals(Arrays.asList("S1", "S2"), search(index, "li"));
+        assertEquals(Collections.singletonList("S1"), search(index, "li computer"));
+        assertEquals(Collections.singletonList("S2"), search(index, "wei math"));
+        assertEquals(Collections.emptyList(), search(index, "li biology"));
+        assertEquals(Collections.emptyList(), search(index, "zhang mathematics"));
+        // Repeating a word does not ask for it twice
+        assertEquals(Collections.singletonList("S1"), search(index, "li li na"));
+    }
+
+    @Test
+    public void exactBeatsPrefixBeatsMistake() {
+        TextIndex<Student> index = index(
+            student("S1", "Ana", "History"),
+            student("S2", "Ann", "History"),
+            student("S3", "Annabel", "History"),
+            student("S4", "Anna", "History"));
+        // Exact ann, then the prefixes annabel and anna, then ana at one edit
+        List<TextIndex.Hit<Student>> hits = index.search("ann", 10);
+        assertEquals(Arrays.asList("S2", "S3", "S4", "S1"), ids(hits));
+        assertTrue(hits.get(0).getScore() > hits.get(1).getScore());
+        assertEquals(hits.get(1).getScore(), hits.get(2).getScore());
+        assertTrue(hits.get(2).getScore() > hits.get(3).getScore());
+    }
+
+    @Test
+    public void namesOutweighMajors() {
+        TextIndex<Student> index = index(
+            student("S1", "Wei", "Art"),
+            student("S2", "Art", "History"));
+        assertEquals(Arrays.asList("S2", "S1"), search(index, "art"));
+    }
+
+    @Test
+    public void rareWordsOutweighCommonOnes() {
+        TextIndex<Student> index = index(
+            student("S1", "Li", "Physics"),
+            student("S2", "Li", "Physics"),
+            student("S3", "Li", "Physics"),
+            student("S4", "Liu", "Physics"));
+        // Liu is only a prefix match, but it tells the rows apart better than Li
+        assertEquals(Arrays.asList("S4", "S1", "S2", "S3"), search(index, "li"));
+    }
+
+    @Test
+    public void tiesAreInKeyOrderAndTheLimitKeepsTheBest() {
+        TextIndex<Student> index = index(
+            student("S5", "Lin", "Physics"),
+            student("S2", "Liu", "Physics"),
+            student("S9", "Li", "Physics"),
+            student("S4", "Lim", "Physics"),
+            student("S1", "Wu", "Physics"));
+        assertEquals(Arrays.asList("S9", "S2", "S4", "S5"), search(index, "li"));
+
+        List<TextIndex.Hit<Student>> top = index.search("li", 3);
+        assertEquals(Arrays.asList("S9", "S2", "S4"), ids(top));
+        assertTrue(top.get(0).getScore() > top.get(1).getScore());
+        assertEquals(top.get(1).getScore(), top.get(2).getScore());
+        assertEquals(Collections.singletonList("S9"), ids(index.search("li", 1)));
+        assertEquals(Collections.emptyList(), ids(index.search("li", 0)));
+        assertEquals(Collections.emptyList(), search(index, " "));
+    }
+
+    @Test
+    public void changedAndRemovedRowsAreSearchedAsTheyAreNow() {
+        TextIndex<Student> index = index(student("S1", "Harold", "Law"), student("S2", "Maria", "Law"));
+        index.put(student("S1", "Henry", "Law"));
+        assertEquals(Collections.emptyList(), search(index, "harold"));
+        assertEquals(Collections.singletonList("S1"), search(index, "henry"));
+
+        index.remove("S2");
+        assertEquals(Collections.singletonList("S1"), search(index, "law"));
+        assertEquals(1, index.size());
+        assertEquals(2, index.terms());
+    }
+}
@@ -0,0 +1,101 @@
+package sims.model;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that the compact records share their repeated values when loaded
+ * the way JDBC delivers them: every column value arrives as a fresh String.
+ * The beans keep one copy per row; the records keep one per distinct value,
+ * which is where their heap saving comes from.
+ */
+public class ModelFootprintTest {
+
+    private static final int ROWS = 10_000;
+    private static final String[] MAJORS = {"Computer Science", "Software Engineering", "Mathematics", "Physics"};
+    private static final String[] GENDERS = {"Male", "Female", "Other"};
+
+    /** Simulates a value read from a result set */
+    private static String fresh(String s) {
+        return new String(s.toCharArray());
+    }
+
+    private static String stuID(int i) {
+        return String.format("S%07d", i);
+    }
+
+    private static String courseID(int i) {
+        return String.format("C%04d", i);
+    }
+
+    @Test
+    public void studentRecordsShareLowCardinalityValues() {
+        List<Student> beans = rows(i -> new Student(stuID(i), "Student " + i, fresh(GENDERS[i % 3]),
+                fresh(MAJORS[i % 4]), fresh(String.valueOf(2020 + i % 5))));
+        List<StudentRecord> records = rows(i -> new StudentRecord(stuID(i), "Student " + i, fresh(GENDERS[i % 3]),
+                fresh(MAJORS[i % 4]), fresh(String.valueOf(2020 + i % 5))));
+
+        assertEquals(ROWS, instances(beans, Student::getMajor));
+        assertEquals(MAJORS.length, instances(records, StudentRecord::major));
+        assertEquals(GENDERS.length, instances(records, StudentRecord::gender));
+        assertEquals(5, instances(records, StudentRecord::year));
+    }
+
+    @Test
+    public void gradeRecordsShareIDs() {
+        // 5 grades per student over 200 courses, the way getAllGrades returns them
+        List<Grade> beans = rows(i -> new Grade(fresh(stuID(i / 5)), fresh(courseID(i % 200)), i % 101));
+        StringPool ids = new StringPool(Integer.MAX_VALUE);
+        List<GradeRecord> records = rows(i -> GradeRecord.of(fresh(stuID(i / 5)), fresh(courseID(i % 200)), i % 101, ids));
+
+        assertEquals(ROWS, instances(beans, Grade::getCourseID));
+        assertEquals(ROWS / 5, instances(records, GradeRecord::stuID));
+        assertEquals(200, instances(records, GradeRecord::courseID));
+    }
+
+    @Test
+    public void recordsConvertToAndFromBeans() {
+        Student s = new Student("S1", "Ann", "Female", "CS", "2024");
+        StudentRecord r = StudentRecord.of(s);
+        assertEquals("Female", r.toStudent().getGender());
+        assertSame(r.major(), StudentRecord.of(new Student("S2", "Bob", "Male", fresh("CS"), "2024")).major());
+
+        Grade g = new Grade("S1", "C1", 88.5);
+        assertEquals(g.toString(), GradeRecord.of(g).toGrade().toString());
+        Course c = new Course("C1", "Databases", 15);
+        assertEquals(c.toString(), CourseRecord.of(c).toCourse().toString());
+    }
+
+    @Test
+    public void recordsKeepStoredText() {
+        // Values outside the form's choices come back unchanged, as getStudent shows them
+        StudentRecord r = new StudentRecord("S1", "Ann", "unspecified", "CS", "2024");
+        assertEquals("unspecified", r.gender());
+        assertEquals("unspecified", r.toStudent().getGender());
+        assertEquals("female", new StudentRecord("S2", "Bea", "female", "CS", "2024").gender());
+        assertNull(new StudentRecord("S3", "Cy", null, "CS", "2024").gender());
+    }
+
+    private static <T> List<T> rows(IntFunction<T> factory) {
+        return IntStream.range(0, ROWS).mapToObj(factory).collect(Collectors.toList());
+    }
+
+    /**
+     * @return number of distinct String objects (not values) the rows hold in one field
+     */
+    private static <T> int instances(List<T> rows, Function<T, String> field) {
+        Set<String> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (T row : rows) {
+            seen.add(field.apply(row));
+        }
+        return seen.size();
+    }
+}
@@ -0,0 +1,205 @@
+package sims.view;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.swing.SwingUtilities;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Drives the in-place edits of PagedTableModel against a sorted reference
+ * list that plays the database: the model reads its pages from the list
+ * through {@link PagedTableModel#ofList}, and every row the model has
+ * cached must equal the list's row at the same position.
+ *
+ * Pages are small so a few dozen rows span more pages than the model
+ * caches, and edits land next to evicted pages and page loads that are
+ * still in flight.
+ */
+public class PagedTableModelTest {
+
+    private static final int PAGE_SIZE = 5;
+
+    private final List<Integer> table = new CopyOnWriteArrayList<>();
+    private PagedTableModel<Integer> model;
+
+    private void open(int rows) throws Exception {
+        for (int i = 0; i < rows; i++) {
+            table.add(i * 2);
+        }
+        onEdt(() -> {
+            model = new PagedTableModel<>(new String[]{"Key"}, (row, column) -> row,
+                PagedTableModel.ofList(table), Comparator.naturalOrder(), PAGE_SIZE);
+            model.refresh();
+        });
+        // Edits made while the first count runs only refresh the model
+        long deadline = System.currentTimeMillis() + 10_000;
+        int[] count = {0};
+        while (count[0] != rows && System.currentTimeMillis() < deadline) {
+            settle();
+            onEdt(() -> count[0] = model.getRowCount());
+        }
+        assertEquals(rows, count[0], "initial row count");
+    }
+
+    @Test
+    public void insertAtEveryPosition() throws Exception {
+        open(30);
+        showAll();
+        for (int key : new int[]{-1, 1, 9, 11, 29, 59, 61, 100}) {
+            insert(key);
+            assertMatchesTable();
+            showAll();
+            assertMatchesTable();
+        }
+    }
+
+    @Test
+    public void removeAtEveryPosition() throws Exception {
+        open(30);
+        showAll();
+        for (int key : new int[]{0, 8, 10, 28, 58, 12, 14, 16, 18, 20}) {
+            remove(key);
+            assertMatchesTable();
+            showAll();
+            assertMatchesTable();
+        }
+        remove(1); // Never in the table
+        assertMatchesTable();
+    }
+
+    @Test
+    public void randomEditsAndPageLoads() throws Exception {
+        open(60);
+        Random random = new Random(20);
+        for (int step = 0; step < 3000; step++) {
+            int action = random.nextInt(10);
+            if (action < 4) {
+                int key = random.nextInt(400) - 20;
+                if (Collections.binarySearch(table, key) < 0) {
+                    insert(key);
+                }
+            } else if (action < 8) {
+                if (!table.isEmpty()) {
+                    remove(table.get(random.nextInt(table.size())));
+                }
+            } else {
+                // Bring some pages into the cache; others get evicted
+                int first = random.nextInt(Math.max(1, table.size()));
+                onEdt(() -> {
+                    for (int i = first; i < Math.min(first + 3 * PAGE_SIZE, model.getRowCount()); i++) {
+                        model.getRow(i);
+                    }
+                });
+            }
+            if (random.nextInt(4) == 0) {
+                settle(); // Otherwise the next edit overtakes the page loads in flight
+            }
+            assertMatchesTable();
+        }
+    }
+
+    @Test
+    public void failedCountIsPassedToTheHandler() throws Exception {
+        List<Throwable> failures = new CopyOnWriteArrayList<>();
+        PagedTableModel.PageLoader<Integer> broken = new PagedTableModel.PageLoader<Integer>() {
+            @Override
+            public int count() {
+                throw new IllegalStateException("no connection");
+            }
+
+            @Override
+            public List<Integer> loadAfter(Integer last, int limit) {
+                return Collections.emptyList();
+            }
+
+            @Override
+            public List<Integer> loadAt(int offset, int limit) {
+                return Collections.emptyList();
+            }
+        };
+        onEdt(() -> {
+            model = new PagedTableModel<>(new String[]{"Key"}, (row, column) -> row, broken);
+            model.setCountErrorHandler(failures::add);
+            model.refresh();
+        });
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (failures.isEmpty() && System.currentTimeMillis() < deadline) {
+            settle();
+        }
+        assertEquals(1, failures.size());
+        assertEquals("no connection", failures.get(0).getMessage());
+        onEdt(() -> assertEquals(0, model.getRowCount()));
+    }
+
+    private void insert(int key) throws Exception {
+        onEdt(() -> {
+            int i = Collections.binarySearch(table, key);
+            table.add(-i - 1, key);
+            model.rowInserted(key);
+        });
+    }
+
+    private void remove(int key) throws Exception {
+        onEdt(() -> {
+            table.remove((Integer) key);
+            model.rowRemoved(key);
+        });
+    }
+
+    /**
+     * Ask for every row so each page is loaded, and wait for the loads
+     */
+    private void showAll() throws Exception {
+        onEdt(() -> {
+            for (int i = 0; i < model.getRowCount(); i++) {
+                model.getRow(i);
+            }
+        });
+        settle();
+    }
+
+    /**
+     * The row count matches and every cached row is the table's row at that position.
+     * Rows that are not cached read as null and are not compared.
+     */
+    private void assertMatchesTable() throws Exception {
+        onEdt(() -> {
+            List<Integer> expected = new ArrayList<>(table);
+            assertEquals(expected.size(), model.getRowCount(), "row count");
+            for (int i = 0; i < expected.size(); i++) {
+                Integer row = model.getRow(i);
+                if (row != null) {
+                    assertEquals(expected.get(i), row, "row " + i);
+                }
+            }
+            assertNull(model.getRow(expected.size()));
+        });
+    }
+
+    /**
+     * Let the background page loads finish and deliver their pages on the EDT
+     */
+    private static void settle() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            Thread.sleep(5);
+            onEdt(() -> { });
+        }
+    }
+
+    private static void onEdt(Runnable r) throws Exception {
+        try {
+            SwingUtilities.invokeAndWait(r);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw (Exception) e.getCause();
+        }
+    }
+}